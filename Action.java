@@ -0,0 +1,25 @@
+package Tetris;
+
+/**
+ * This enum models the things a player can do, one for each key that
+ * KeyHandler handles. Turning key presses into Actions lets the rest of the
+ * game (the InputController, and anything that plays the game without a
+ * keyboard) work without knowing about KeyCodes.
+ */
+public enum Action {
+	LEFT, RIGHT, DOWN, ROTATE, DROP, PAUSE;
+
+	/*
+	 * Kept so that an Action can be looked up from its ordinal without making a
+	 * new array each time, which values() would do.
+	 */
+	private static final Action[] ACTIONS = Action.values();
+
+	/**
+	 * Returns the Action with the given ordinal.
+	 */
+	public static Action fromOrdinal(int ordinal) {
+		return ACTIONS[ordinal];
+	}
+
+}
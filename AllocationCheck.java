@@ -0,0 +1,169 @@
+package Tetris;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * This is the AllocationCheck class. It is a main class that checks that the
+ * game's tick allocates no memory at all once a game is under way, since every
+ * object made on every tick is garbage that a young collection has to clear up
+ * sooner or later, and those pauses show up as dropped frames. It plays one
+ * long seeded game after another, with no window, running every tick with the
+ * same GameTicker that Game's TimeHandler uses: seeded random key presses and
+ * releases go through an InputQueue and InputController, the GameEngine ticks,
+ * rewind snapshots are kept, every change is published into a FrameRing
+ * (which is drained straight away), and pieces are spawned and locked with the
+ * same Metrics and GameEvents. The Bot is left off, since its search is not
+ * part of the tick. After a warm up, the bytes this thread allocates over the
+ * rest of the ticks are read from the JVM's per thread allocation counter, and
+ * the check fails, with an exit status of 1, unless there were none.
+ *
+ * The options are:
+ *   --ticks N       ticks to check (default 5000000)
+ *   --warmup N      ticks to play first, while the JIT compiles (default 2000000)
+ *   --presses N     key presses per second (default 5)
+ *   --mode M        uniform, seven_bag or history (default seven_bag)
+ *   --seed S        seed of the first game and of the key presses (default 1)
+ */
+public class AllocationCheck {
+	private static final Action[] KEYS = { Action.LEFT, Action.RIGHT, Action.DOWN, Action.ROTATE, Action.DROP };
+
+	private long _ticks;
+	private long _warmup;
+	private double _pressChance;
+	private long _seed;
+	private GameEngine _engine;
+	private InputQueue _queue;
+	private InputController _input;
+	private InputController _botInput;
+	private RewindBuffer _rewind;
+	private FrameRing _frames;
+	private GameTicker _ticker;
+	private SplittableRandom _script;
+	private long _games;
+
+	/**
+	 * Constructor for the AllocationCheck. Reads the options from the command line
+	 * arguments and makes everything the games are played with, so that none of
+	 * it is made while the ticks are being checked.
+	 */
+	public AllocationCheck(String[] argv) {
+		_ticks = 5000000;
+		_warmup = 2000000;
+		int presses = 5;
+		GeneratorMode mode = GeneratorMode.SEVEN_BAG;
+		_seed = 1;
+		for (int i = 0; i < argv.length; i++) {
+			switch (argv[i]) {
+			case "--ticks":
+				_ticks = Long.parseLong(argv[++i]);
+				break;
+			case "--warmup":
+				_warmup = Long.parseLong(argv[++i]);
+				break;
+			case "--presses":
+				presses = Integer.parseInt(argv[++i]);
+				break;
+			case "--mode":
+				mode = GeneratorMode.valueOf(argv[++i].toUpperCase());
+				break;
+			case "--seed":
+				_seed = Long.parseLong(argv[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + argv[i]);
+			}
+		}
+		_pressChance = (double) presses / Constants.TICKS_PER_SECOND;
+		_engine = new GameEngine(mode, _seed);
+		_queue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_input = new InputController(_queue);
+		InputQueue botQueue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_botInput = new InputController(botQueue);
+		_rewind = new RewindBuffer(Constants.REWIND_SLOTS);
+		_frames = new FrameRing(Constants.FRAME_RING_SIZE, mode);
+		_ticker = new GameTicker(_engine, _input, _botInput, new Bot(botQueue), _rewind, _frames);
+		_script = new SplittableRandom(_seed);
+		_games = 0;
+	}
+
+	/**
+	 * Plays the warm up and the checked ticks, and prints the result. Returns
+	 * whether no bytes were allocated.
+	 */
+	public boolean run() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("This JVM cannot count allocated bytes, so nothing was checked.");
+			return true;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		this.newGame();
+		this.play(_warmup);
+		long gamesBefore = _games;
+		long before = threads.getCurrentThreadAllocatedBytes();
+		this.play(_ticks);
+		long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+		long p99 = _ticker.getTickTimes().getPercentile(0.99);
+		System.out.printf("%d ticks, %d games, %d bytes allocated (%.4f per tick), p99 tick %d ns%n", _ticks,
+				_games - gamesBefore, allocated, (double) allocated / _ticks, p99);
+		return allocated == 0;
+	}
+
+	/**
+	 * This private helper method plays the given number of ticks, starting a new
+	 * game whenever one ends.
+	 */
+	private void play(long ticks) {
+		for (long i = 0; i < ticks; i++) {
+			if (_script.nextDouble() < _pressChance) {
+				Action key = KEYS[_script.nextInt(KEYS.length)];
+				long now = System.nanoTime();
+				_queue.offer(key, true, now);
+				_queue.offer(key, false, now);
+			}
+			boolean isPlaying = _ticker.tick();
+			this.drainFrames();
+			if (!isPlaying) {
+				this.newGame();
+			}
+		}
+	}
+
+	/**
+	 * This private helper method throws away the frames that were published,
+	 * since there is no renderer to hand them to.
+	 */
+	private void drainFrames() {
+		while (!_frames.isEmpty()) {
+			_frames.remove();
+		}
+	}
+
+	/**
+	 * This private helper method starts the next game from the next seed, the
+	 * same way as Game's NewGame.
+	 */
+	private void newGame() {
+		_input.reset();
+		_botInput.reset();
+		_engine.reset(_seed + _games);
+		_rewind.clear();
+		_frames.publish(FrameRing.RESET, _engine);
+		_ticker.spawn();
+		_games++;
+	}
+
+	/*
+	 * Here is the mainline for the AllocationCheck.
+	 */
+	public static void main(String[] argv) {
+		if (!new AllocationCheck(argv).run()) {
+			System.out.println("FAILED: the tick allocated memory.");
+			System.exit(1);
+		}
+		System.out.println("Passed.");
+	}
+
+}
@@ -1,5 +1,6 @@
 package Tetris;
 
+import java.nio.file.Paths;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -18,10 +19,14 @@ public class App extends Application {
 
 	/**
 	 * The top level object is created here, the scene is set up with reference to
-	 * the root pane, and the stage is shown.
+	 * the root pane, and the stage is shown. If Constants says so, the game's
+	 * metrics are written to a file when the program exits.
 	 */
 	@Override
 	public void start(Stage stage) {
+		if (Constants.DUMP_METRICS) {
+			Metrics.dumpOnExit(Paths.get(Constants.METRICS_FILE));
+		}
 		PaneOrganizer organizer = new PaneOrganizer();
 		Scene scene = new Scene(organizer.getRoot(), Constants.APP_WIDTH, Constants.APP_HEIGHT);
 		stage.setScene(scene);
@@ -0,0 +1,101 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class generates pieces with the 7-bag system: all 7 piece types are put
+ * in a bag in a random order, and dealt out one at a time until the bag is
+ * empty, and then a new bag is shuffled. Every piece comes up exactly once in
+ * every 7, so there are never long droughts of one piece or floods of another.
+ */
+public class BagGenerator implements PieceGenerator {
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private SplitMix64 _random;
+	private PieceType[] _bag;
+	private int _index;
+
+	/**
+	 * Constructor for the BagGenerator. The sequence starts from a seed of 0 until
+	 * it is reset.
+	 */
+	public BagGenerator() {
+		_bag = new PieceType[TYPES.length];
+		_random = new SplitMix64(0);
+		this.reset(0);
+	}
+
+	/**
+	 * The bag is put back in order too, since each shuffle starts from the order
+	 * the last one left it in.
+	 */
+	@Override
+	public void reset(long seed) {
+		_random.setState(seed);
+		System.arraycopy(TYPES, 0, _bag, 0, TYPES.length);
+		_index = _bag.length; // The first call to next shuffles a new bag.
+	}
+
+	@Override
+	public PieceType next() {
+		if (_index == _bag.length) {
+			this.shuffle();
+			_index = 0;
+		}
+		PieceType type = _bag[_index];
+		_index++;
+		return type;
+	}
+
+	/**
+	 * The state is the state of the random number generator, the order of the
+	 * current bag, and how far through it the generator is.
+	 */
+	@Override
+	public void save(ByteBuffer buffer) {
+		buffer.putLong(_random.getState());
+		for (int i = 0; i < _bag.length; i++) {
+			buffer.put((byte) _bag[i].ordinal());
+		}
+		buffer.put((byte) _index);
+	}
+
+	@Override
+	public void load(ByteBuffer buffer) {
+		_random.setState(buffer.getLong());
+		for (int i = 0; i < _bag.length; i++) {
+			_bag[i] = TYPES[buffer.get()];
+		}
+		_index = buffer.get();
+	}
+
+	/**
+	 * Every piece in the bag has to be a real piece type, and the generator can't
+	 * be further through the bag than its end.
+	 */
+	@Override
+	public boolean isValid(ByteBuffer buffer, int start) {
+		for (int i = 0; i < _bag.length; i++) {
+			int code = buffer.get(start + 8 + i);
+			if (code < 0 || code >= TYPES.length) {
+				return false;
+			}
+		}
+		int index = buffer.get(start + 8 + _bag.length);
+		return index >= 0 && index <= _bag.length;
+	}
+
+	/**
+	 * This private helper method shuffles the bag in place with a Fisher-Yates
+	 * shuffle.
+	 */
+	private void shuffle() {
+		for (int i = _bag.length - 1; i > 0; i--) {
+			int j = _random.nextInt(i + 1);
+			PieceType temp = _bag[i];
+			_bag[i] = _bag[j];
+			_bag[j] = temp;
+		}
+	}
+
+}
@@ -0,0 +1,393 @@
+package Tetris;
+
+import java.util.SplittableRandom;
+
+/**
+ * This is the Benchmarks class. It is a main class that times the parts of the
+ * game that run the most often, so that a change that slows one of them down
+ * can be caught before it is merged. It has no dependencies, so it runs the
+ * same way as the Simulator: compile the tree and run this class.
+ *
+ * Each benchmark is run on boards filled to several densities (the chance that
+ * each cell in the bottom half of the board is filled, with at least one gap
+ * left in every row so that no row starts out full). For every benchmark and
+ * density, a few warmup rounds are run and thrown away so that the JIT compiler
+ * has finished with the code, and then the average time per operation over the
+ * measured rounds is printed, along with the fastest round. Every result is
+ * added into a sink that is printed at the end, so the JIT cannot remove work
+ * whose result is never used.
+ *
+ * The benchmarks are:
+ *   collides    one bitmask collision check, at a random place on the board
+ *   rotate      one rotation of a spawned piece (4 in a row is a full turn)
+ *   drop        spawning a piece and hard dropping it from the spawn row
+ *   copy        copying a board, which the clear benchmarks include
+ *   clear0..4   locking a piece that fills in 0 to 4 rows, and removing them
+ *   cycle       spawn, drop and lock of the next piece, as one game tick
+ *   score       scoring one placement for the Bot, by probing the board
+ *   table       storing a result in the Bot's TranspositionTable and looking
+ *               it up again
+ *
+ * The options are:
+ *   --warmup N      warmup rounds (default 5)
+ *   --rounds N      measured rounds (default 10)
+ *   --ops N         operations per round (default 1000000)
+ *   --only NAME     only run the benchmark with this name
+ *   --width N       columns of the boards (default Constants.BOARD_WIDTH)
+ *   --height N      rows of the boards (default Constants.BOARD_HEIGHT)
+ */
+public class Benchmarks {
+	private static final double[] DENSITIES = { 0.0, 0.25, 0.5, 0.75 };
+	private static final String[] NAMES = { "collides", "rotate", "drop", "copy", "clear0", "clear1", "clear2",
+			"clear3", "clear4", "cycle", "score", "table" };
+	private static final int NUM_POSITIONS = 1024;
+	private static final long SEED = 42;
+
+	private int _warmup;
+	private int _rounds;
+	private int _ops;
+	private String _only;
+	private int _width;
+	private int _height;
+	private long _sink;
+
+	private Board _fixture;
+	private Board _scratch;
+	private Board[] _clearFixtures;
+	private int[][] _clearRows;
+	private PieceType[] _types;
+	private int[] _rotations;
+	private int[] _positionRows;
+	private int[] _positionCols;
+	private GameEngine _engine;
+	private BoardFeatures _features;
+	private TranspositionTable _table;
+
+	/**
+	 * Constructor for the Benchmarks. Reads the options from the command line
+	 * arguments.
+	 */
+	public Benchmarks(String[] argv) {
+		_warmup = 5;
+		_rounds = 10;
+		_ops = 1000000;
+		_only = null;
+		_width = Constants.BOARD_WIDTH;
+		_height = Constants.BOARD_HEIGHT;
+		for (int i = 0; i < argv.length; i++) {
+			switch (argv[i]) {
+			case "--warmup":
+				_warmup = Integer.parseInt(argv[++i]);
+				break;
+			case "--rounds":
+				_rounds = Integer.parseInt(argv[++i]);
+				break;
+			case "--ops":
+				_ops = Integer.parseInt(argv[++i]);
+				break;
+			case "--only":
+				_only = argv[++i];
+				break;
+			case "--width":
+				_width = Integer.parseInt(argv[++i]);
+				break;
+			case "--height":
+				_height = Integer.parseInt(argv[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + argv[i]);
+			}
+		}
+		_scratch = new Board(_width, _height);
+		_clearFixtures = new Board[Constants.NUM_SQUARES + 1];
+		_clearRows = new int[Constants.NUM_SQUARES + 1][];
+		_engine = new GameEngine(GeneratorMode.SEVEN_BAG, SEED, _width, _height);
+		_features = new BoardFeatures();
+		_table = new TranspositionTable(Constants.BOT_TABLE_SIZE, Constants.BOT_EVICTION_POLICY);
+	}
+
+	/**
+	 * Runs every benchmark at every density and prints the results.
+	 */
+	public void run() {
+		System.out.printf("%-10s %8s %12s %12s%n", "benchmark", "density", "avg ns/op", "best ns/op");
+		for (String name : NAMES) {
+			if (_only != null && !_only.equals(name)) {
+				continue;
+			}
+			for (double density : DENSITIES) {
+				this.setUp(density);
+				for (int i = 0; i < _warmup; i++) {
+					this.time(name);
+				}
+				long total = 0;
+				long best = Long.MAX_VALUE;
+				for (int i = 0; i < _rounds; i++) {
+					long elapsed = this.time(name);
+					total = total + elapsed;
+					best = Math.min(best, elapsed);
+				}
+				System.out.printf("%-10s %8.2f %12.2f %12.2f%n", name, density, (double) total / _rounds / _ops,
+						(double) best / _ops);
+			}
+		}
+		System.out.println("(sink " + _sink + ")");
+	}
+
+	/**
+	 * This private helper method builds the boards and random positions for one
+	 * density. The same seed is used every time, so every run measures the same
+	 * boards.
+	 */
+	private void setUp(double density) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		_fixture = this.makeBoard(random, density);
+		for (int k = 0; k <= Constants.NUM_SQUARES; k++) {
+			this.setUpClear(k);
+		}
+		PieceType[] values = PieceType.values();
+		_types = new PieceType[NUM_POSITIONS];
+		_rotations = new int[NUM_POSITIONS];
+		_positionRows = new int[NUM_POSITIONS];
+		_positionCols = new int[NUM_POSITIONS];
+		for (int i = 0; i < NUM_POSITIONS; i++) {
+			_types[i] = values[random.nextInt(values.length)];
+			_rotations[i] = random.nextInt(PieceType.NUM_ROTATIONS);
+			_positionRows[i] = random.nextInt(Constants.BOARD_LOW_CUTOFF + 1, _fixture.getEndingRow() - 1);
+			_positionCols[i] = random.nextInt(Constants.BOARD_LOW_CUTOFF + 1, _fixture.getEndingCol() - 1);
+		}
+		_engine.reset(SEED);
+		_engine.getBoard().copyFrom(_fixture);
+	}
+
+	/**
+	 * This private helper method builds a board filled to the given density in
+	 * its bottom half. One random cell in every row is left empty.
+	 */
+	private Board makeBoard(SplittableRandom random, double density) {
+		Board board = new Board(_width, _height);
+		int top = (Constants.BOARD_LOW_CUTOFF + board.getEndingRow()) / 2;
+		for (int row = board.getEndingRow() - 1; row >= top; row--) {
+			int gap = Constants.BOARD_LOW_CUTOFF + random.nextInt(_width);
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < board.getEndingCol(); col++) {
+				if (col != gap && random.nextDouble() < density) {
+					board.fill(row, col, PieceType.TWO);
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * This private helper method builds the board for clearing k rows. A
+	 * vertical long piece will be locked into the leftmost column of the bottom 4
+	 * rows, so those cells are left empty. The bottom k of those rows are filled
+	 * in everywhere else, and the others are left with a second gap, so locking
+	 * the piece fills exactly k rows. The rest of the board is the fixture.
+	 */
+	private void setUpClear(int k) {
+		Board board = new Board(_width, _height);
+		int bottom = board.getEndingRow() - 1;
+		for (int row = Constants.BOARD_LOW_CUTOFF; row <= bottom; row++) {
+			boolean isPieceRow = row > bottom - Constants.NUM_SQUARES;
+			boolean isFullRow = row > bottom - k;
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < board.getEndingCol(); col++) {
+				boolean isFilled = _fixture.isFilled(row, col);
+				if (isPieceRow) {
+					isFilled = col != Constants.BOARD_LOW_CUTOFF
+							&& (isFullRow || (isFilled && col != Constants.BOARD_LOW_CUTOFF + 1));
+				}
+				if (isFilled) {
+					board.fill(row, col, PieceType.TWO);
+				}
+			}
+		}
+		_clearFixtures[k] = board;
+		_clearRows[k] = new int[Constants.NUM_SQUARES];
+	}
+
+	/**
+	 * This private helper method runs one round of a benchmark and returns how
+	 * long it took in nanoseconds.
+	 */
+	private long time(String name) {
+		long start = System.nanoTime();
+		switch (name) {
+		case "collides":
+			_sink = _sink + this.benchCollides();
+			break;
+		case "rotate":
+			_sink = _sink + this.benchRotate();
+			break;
+		case "drop":
+			_sink = _sink + this.benchDrop();
+			break;
+		case "copy":
+			_sink = _sink + this.benchCopy();
+			break;
+		case "cycle":
+			_sink = _sink + this.benchCycle();
+			break;
+		case "score":
+			_sink = _sink + this.benchScore();
+			break;
+		case "table":
+			_sink = _sink + this.benchTable();
+			break;
+		default:
+			_sink = _sink + this.benchClear(name.charAt(name.length() - 1) - '0');
+			break;
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * This private helper method checks a piece against the board at each of the
+	 * random positions in turn. This is the check behind every move, rotation and
+	 * step of gravity.
+	 */
+	private long benchCollides() {
+		long hits = 0;
+		for (int i = 0; i < _ops; i++) {
+			int p = i & (NUM_POSITIONS - 1);
+			PieceType type = _types[p];
+			int rotation = _rotations[p];
+			if (_fixture.collides(type.getMasks(rotation), type.getMaskRows(rotation),
+					_positionRows[p] + type.getMaskTop(rotation), _positionCols[p] + type.getMaskLeft(rotation))) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * This private helper method rotates a freshly spawned long piece over and
+	 * over.
+	 */
+	private long benchRotate() {
+		_engine.getBoard().copyFrom(_fixture);
+		_engine.spawnPiece(PieceType.ONE);
+		long rotated = 0;
+		for (int i = 0; i < _ops; i++) {
+			if (_engine.tryRotate()) {
+				rotated++;
+			}
+		}
+		return rotated;
+	}
+
+	/**
+	 * This private helper method spawns a piece and hard drops it, over and over.
+	 * The piece is never locked, so the board stays the same.
+	 */
+	private long benchDrop() {
+		_engine.getBoard().copyFrom(_fixture);
+		long rows = 0;
+		for (int i = 0; i < _ops; i++) {
+			_engine.spawnPiece(_types[i & (NUM_POSITIONS - 1)]);
+			rows = rows + _engine.drop();
+		}
+		return rows;
+	}
+
+	/**
+	 * This private helper method copies the fixture board over and over, so that
+	 * its cost can be taken away from the clear benchmarks.
+	 */
+	private long benchCopy() {
+		for (int i = 0; i < _ops; i++) {
+			_scratch.copyFrom(_fixture);
+		}
+		return _scratch.getTopRow();
+	}
+
+	/**
+	 * This private helper method copies the board for k rows, locks a vertical
+	 * long piece into it, and removes the full rows, the same way the GameEngine
+	 * does when a piece lands.
+	 */
+	private long benchClear(int k) {
+		long lines = 0;
+		int[] rows = _clearRows[k];
+		int bottom = _scratch.getEndingRow() - 1;
+		for (int i = 0; i < _ops; i++) {
+			_scratch.copyFrom(_clearFixtures[k]);
+			int numRows = 0;
+			for (int row = bottom - Constants.NUM_SQUARES + 1; row <= bottom; row++) {
+				_scratch.fill(row, Constants.BOARD_LOW_CUTOFF, PieceType.ONE);
+				if (_scratch.isRowFull(row)) {
+					rows[numRows] = row;
+					numRows++;
+				}
+			}
+			_scratch.removeRows(rows, numRows);
+			lines = lines + numRows;
+		}
+		return lines;
+	}
+
+	/**
+	 * This private helper method plays pieces from the queue by hard dropping
+	 * them where they spawn and ticking once to lock them. When the stack reaches
+	 * the top, the board is set back to the fixture.
+	 */
+	private long benchCycle() {
+		long locked = 0;
+		for (int i = 0; i < _ops; i++) {
+			if (!_engine.spawnNextPiece() || _engine.isGameOver()) {
+				_engine.reset();
+				_engine.getBoard().copyFrom(_fixture);
+				continue;
+			}
+			_engine.drop();
+			if ((_engine.tick() & GameEngine.TICK_LOCKED) != 0) {
+				locked++;
+			}
+		}
+		return locked;
+	}
+
+	/**
+	 * This private helper method scores placements the way the Bot does: a random
+	 * piece at a random column is dropped from its spawn row, and the board it
+	 * would leave is scored, without the fixture being changed. Positions where
+	 * the piece doesn't fit at the spawn row are skipped, as the Bot skips them.
+	 */
+	private long benchScore() {
+		long total = 0;
+		for (int i = 0; i < _ops; i++) {
+			int p = i & (NUM_POSITIONS - 1);
+			PieceType type = _types[p];
+			int rotation = _rotations[p];
+			int row = type.getSpawnRow();
+			if (!_fixture.collides(type.getMasks(rotation), type.getMaskRows(rotation), row + type.getMaskTop(rotation),
+					_positionCols[p] + type.getMaskLeft(rotation))) {
+				total = total + (long) PlacementSearch.score(_fixture, type, rotation, row, _positionCols[p], _features);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * This private helper method stores a result under a new key and then looks
+	 * the key up, over and over. The keys are spread over the whole table, so
+	 * once it fills up, most stores replace an entry.
+	 */
+	private long benchTable() {
+		long total = 0;
+		for (int i = 0; i < _ops; i++) {
+			long key = SplitMix64.mix64(_fixture.getHash() + i);
+			_table.store(key, i, i & 3, i & 0xff, 1 + (i & 3));
+			total = total + TranspositionTable.getCol(_table.probe(key));
+		}
+		return total;
+	}
+
+	/*
+	 * Here is the mainline for the Benchmarks.
+	 */
+	public static void main(String[] argv) {
+		new Benchmarks(argv).run();
+	}
+
+}
@@ -0,0 +1,936 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class models the Tetris board without any graphics. The board can be
+ * any width and height up to Constants.MAX_BOARD_WIDTH by MAX_BOARD_HEIGHT,
+ * chosen when it is made; the board shown in the window is
+ * Constants.BOARD_WIDTH by BOARD_HEIGHT. Each row of the board is stored as a
+ * bitmask made of one or more longs (words), where bit c of the row is set if
+ * column c is filled, so a row of up to 64 columns is a single word. Just like
+ * the original 2D array of TetrisSquares, the border is part of the board, so
+ * a piece collides with the border the same way it collides with pieces that
+ * have already landed, and the bits past the right border count as filled too.
+ *
+ * The board also keeps a count of the filled cells in each row and the highest
+ * row that has anything in it, so that clearing lines only has to look at the
+ * rows a piece touched. So that the board can be drawn without any other
+ * record of it, the type of piece that filled each cell is kept as well, one
+ * byte per cell. Those bytes are not kept in board order: each row's bytes are
+ * in a slot, and the board keeps a table of which slot each row is in, so that
+ * clearing lines only has to move entries in that table and a word for every
+ * 64 columns, rather than every cell of every row above. Finally, the board
+ * keeps the surface of each column, which is the highest filled row in it, so
+ * that how far a piece can fall can be found without testing it against every
+ * row on the way down. Checking, dropping and locking a piece therefore costs
+ * the same on any size of board.
+ *
+ * The board also keeps the features that a computer player scores a board by
+ * (see BoardFeatures) up to date as cells are filled and rows are removed, so
+ * reading them costs nothing. Filling a cell only looks at its four neighbours
+ * and, if it raises its column, at the columns next to it, and removing rows
+ * takes one pass over the columns. probe works out what the features would be
+ * if a piece were locked somewhere, without changing or copying the board.
+ *
+ * Finally, the board keeps a 64 bit hash of its row bitmasks (see Zobrist),
+ * so that a computer player can tell when it has seen a board before. Filling
+ * a cell changes one word, so it takes out that word's old hashed value and
+ * puts in the new one. Removing rows hashes the rows that moved again.
+ */
+public class Board {
+	private static final int WINDOW_SIZE = Constants.NUM_SQUARES + 2;
+	private static final int NUM_TYPES = PieceType.values().length;
+
+	private int _width;
+	private int _height;
+	private int _numRows;
+	private int _numCols;
+	private int _words;
+	private long[] _rows;
+	private byte[] _cells;
+	private int[] _counts;
+	private int[] _slots;
+	private int[] _freeSlots;
+	private int[] _surfaces;
+	private int _topRow;
+	private int _numFilled;
+	private int _aggregateHeight;
+	private int _rowTransitions;
+	private int _colTransitions;
+	private int _wellDepths;
+	private int _bumpiness;
+	private long[] _fullRow;
+	private long[] _borderRow;
+	private long[] _emptyRows;
+	private int[] _emptySlots;
+	private long[] _keys;
+	private long _hash;
+	private long _emptyHash;
+	private int[] _placedRows;
+
+	/**
+	 * Constructor for the Board. Makes a board the size of the one shown in the
+	 * window.
+	 */
+	public Board() {
+		this(Constants.BOARD_WIDTH, Constants.BOARD_HEIGHT);
+	}
+
+	/**
+	 * Constructor for the Board. Takes in the number of columns and rows inside
+	 * the border. The masks for a completely full row and for an empty row (which
+	 * only has its border columns filled), and the masks and slots of a whole
+	 * empty board, are worked out once here, so that resetting the board is only
+	 * a few straight copies, and then the board is reset so that only the border
+	 * is filled, and the hash of the empty board is kept. There is always room for
+	 * a piece's worth of columns past the right border, so a piece that sticks out
+	 * past it is still checked against filled bits.
+	 */
+	public Board(int width, int height) {
+		if (width < Constants.NUM_SQUARES || width > Constants.MAX_BOARD_WIDTH || height < Constants.NUM_SQUARES
+				|| height > Constants.MAX_BOARD_HEIGHT) {
+			throw new IllegalArgumentException("Board size out of range: " + width + " by " + height);
+		}
+		_width = width;
+		_height = height;
+		_numRows = height + 2 * Constants.BOARD_LOW_CUTOFF;
+		_numCols = width + 2 * Constants.BOARD_LOW_CUTOFF;
+		_words = (_numCols + Constants.NUM_SQUARES + 63) >>> 6;
+		_rows = new long[_numRows * _words];
+		_cells = new byte[_numRows * _numCols];
+		_counts = new int[_numRows];
+		_slots = new int[_numRows];
+		_freeSlots = new int[Constants.NUM_SQUARES];
+		_surfaces = new int[_numCols];
+		_fullRow = new long[_words];
+		_borderRow = new long[_words];
+		Arrays.fill(_fullRow, -1L);
+		Arrays.fill(_borderRow, -1L);
+		for (int col = Constants.BOARD_LOW_CUTOFF; col < this.getEndingCol(); col++) {
+			_borderRow[col >>> 6] = _borderRow[col >>> 6] & ~(1L << col);
+		}
+		_emptyRows = new long[_numRows * _words];
+		_emptySlots = new int[_numRows];
+		for (int row = 0; row < _numRows; row++) {
+			if (row < Constants.BOARD_LOW_CUTOFF || row >= this.getEndingRow()) {
+				System.arraycopy(_fullRow, 0, _emptyRows, row * _words, _words);
+			} else {
+				System.arraycopy(_borderRow, 0, _emptyRows, row * _words, _words);
+			}
+			_emptySlots[row] = row;
+		}
+		_keys = Zobrist.makeWordKeys(_numRows * _words);
+		_placedRows = new int[Constants.NUM_SQUARES];
+		this.reset();
+		_emptyHash = this.hashRows(0, _numRows - 1);
+		_hash = _emptyHash;
+	}
+
+	/**
+	 * Makes this board an exact copy of another board of the same size. This lets
+	 * a computer player try out a move on a scratch board without changing the
+	 * real one.
+	 */
+	public void copyFrom(Board other) {
+		System.arraycopy(other._rows, 0, _rows, 0, _rows.length);
+		System.arraycopy(other._cells, 0, _cells, 0, _cells.length);
+		System.arraycopy(other._counts, 0, _counts, 0, _counts.length);
+		System.arraycopy(other._slots, 0, _slots, 0, _slots.length);
+		System.arraycopy(other._surfaces, 0, _surfaces, 0, _surfaces.length);
+		_topRow = other._topRow;
+		_numFilled = other._numFilled;
+		_aggregateHeight = other._aggregateHeight;
+		_rowTransitions = other._rowTransitions;
+		_colTransitions = other._colTransitions;
+		_wellDepths = other._wellDepths;
+		_bumpiness = other._bumpiness;
+		_hash = other._hash;
+	}
+
+	/**
+	 * Returns how many bytes save writes for a board with the given number of
+	 * columns and rows inside the border.
+	 */
+	public static int getStateBytes(int width, int height) {
+		return (width + 2 * Constants.BOARD_LOW_CUTOFF) * (height + 2 * Constants.BOARD_LOW_CUTOFF);
+	}
+
+	/**
+	 * Writes the board at the buffer's position: the piece type in every cell,
+	 * row by row from the top. The bitmasks, fill counts, surfaces and top row
+	 * can all be worked out from these, so they are not written.
+	 */
+	public void save(ByteBuffer buffer) {
+		for (int row = 0; row < _numRows; row++) {
+			buffer.put(_cells, _slots[row] * _numCols, _numCols);
+		}
+	}
+
+	/**
+	 * Returns whether the bytes starting at the given index of the buffer are a
+	 * board that load can read: every cell inside the border holds nothing or a
+	 * real piece type, and every cell of the border holds nothing. The buffer is
+	 * not changed.
+	 */
+	public boolean isValid(ByteBuffer buffer, int start) {
+		for (int row = 0; row < _numRows; row++) {
+			for (int col = 0; col < _numCols; col++) {
+				int cell = buffer.get(start + row * _numCols + col);
+				boolean isInside = row >= Constants.BOARD_LOW_CUTOFF && row < this.getEndingRow()
+						&& col >= Constants.BOARD_LOW_CUTOFF && col < this.getEndingCol();
+				if (cell < 0 || cell > NUM_TYPES || (cell != 0 && !isInside)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a board written by save from the buffer's position, and then works
+	 * out the bitmasks, the fill counts, the surface of each column, the top row,
+	 * the features and the hash again. The board must be valid (see isValid).
+	 */
+	public void load(ByteBuffer buffer) {
+		this.reset();
+		buffer.get(_cells);
+		for (int row = Constants.BOARD_LOW_CUTOFF; row < this.getEndingRow(); row++) {
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < this.getEndingCol(); col++) {
+				if (_cells[row * _numCols + col] != 0) {
+					_rows[row * _words + (col >>> 6)] |= 1L << col;
+					_counts[row]++;
+					_surfaces[col] = Math.min(_surfaces[col], row);
+					_topRow = Math.min(_topRow, row);
+					_numFilled++;
+				}
+			}
+		}
+		this.countTransitions();
+		this.sumColumns();
+		_hash = this.hashRows(0, _numRows - 1);
+	}
+
+	/**
+	 * Empties the board. The top and bottom border rows are completely filled,
+	 * and every other row only has its border columns filled. The fill counts only
+	 * count the cells inside the border. Every row's cells go back to the slot
+	 * with the same number. An empty row has a transition at each border, and an
+	 * empty column has one at the floor.
+	 */
+	public void reset() {
+		System.arraycopy(_emptyRows, 0, _rows, 0, _rows.length);
+		System.arraycopy(_emptySlots, 0, _slots, 0, _slots.length);
+		Arrays.fill(_counts, 0);
+		Arrays.fill(_cells, (byte) 0);
+		Arrays.fill(_surfaces, this.getEndingRow());
+		_topRow = this.getEndingRow();
+		_numFilled = 0;
+		_aggregateHeight = 0;
+		_rowTransitions = 2 * _height;
+		_colTransitions = _width;
+		_wellDepths = 0;
+		_bumpiness = 0;
+		_hash = _emptyHash;
+	}
+
+	/**
+	 * Returns whether the cell at the given row and column is filled, either by
+	 * the border or by a landed piece.
+	 */
+	public boolean isFilled(int row, int col) {
+		return (_rows[row * _words + (col >>> 6)] & (1L << col)) != 0;
+	}
+
+	/**
+	 * This private helper method returns 1 if the cell at the given row and
+	 * column is filled, and 0 if it is not.
+	 */
+	private int getBit(int row, int col) {
+		return (int) (_rows[row * _words + (col >>> 6)] >>> col) & 1;
+	}
+
+	/**
+	 * Returns what fills the cell at the given row and column: 0 if it is empty or
+	 * part of the border, or else one more than the ordinal of the PieceType of
+	 * the piece that landed there.
+	 */
+	public int getCell(int row, int col) {
+		return _cells[_slots[row] * _numCols + col];
+	}
+
+	/**
+	 * Fills the cell at the given row and column with a square of the given piece
+	 * type. This is used when a piece lands. Each of the cell's neighbours that
+	 * is empty gains a transition with it, and each that is filled loses one. The
+	 * space above the top row counts as empty.
+	 */
+	public void fill(int row, int col, PieceType type) {
+		int sides = this.getBit(row, col - 1) + this.getBit(row, col + 1);
+		int above = row > Constants.BOARD_LOW_CUTOFF ? this.getBit(row - 1, col) : 0;
+		_rowTransitions = _rowTransitions + 2 - 2 * sides;
+		_colTransitions = _colTransitions + 2 - 2 * (above + this.getBit(row + 1, col));
+		int index = row * _words + (col >>> 6);
+		long word = _rows[index];
+		_rows[index] = word | (1L << col);
+		_hash = _hash ^ Zobrist.hashWord(_keys[index], word) ^ Zobrist.hashWord(_keys[index], _rows[index]);
+		_cells[_slots[row] * _numCols + col] = (byte) (type.ordinal() + 1);
+		_counts[row]++;
+		_numFilled++;
+		if (row < _surfaces[col]) {
+			this.raiseColumn(col, row);
+		}
+		_topRow = Math.min(_topRow, row);
+	}
+
+	/**
+	 * This private helper method moves the surface of a column up to the given
+	 * row, and updates the aggregate height, and the bumpiness and well depths of
+	 * the column and its neighbours.
+	 */
+	private void raiseColumn(int col, int surface) {
+		int old = _surfaces[col];
+		int left = col > Constants.BOARD_LOW_CUTOFF ? _surfaces[col - 1] : Integer.MIN_VALUE;
+		int right = col < this.getEndingCol() - 1 ? _surfaces[col + 1] : Integer.MIN_VALUE;
+		_aggregateHeight = _aggregateHeight + old - surface;
+		_surfaces[col] = surface;
+		_wellDepths = _wellDepths + Board.getWellDepth(left, surface, right) - Board.getWellDepth(left, old, right);
+		if (left != Integer.MIN_VALUE) {
+			int farLeft = col > Constants.BOARD_LOW_CUTOFF + 1 ? _surfaces[col - 2] : Integer.MIN_VALUE;
+			_bumpiness = _bumpiness + Math.abs(surface - left) - Math.abs(old - left);
+			_wellDepths = _wellDepths + Board.getWellDepth(farLeft, left, surface)
+					- Board.getWellDepth(farLeft, left, old);
+		}
+		if (right != Integer.MIN_VALUE) {
+			int farRight = col < this.getEndingCol() - 2 ? _surfaces[col + 2] : Integer.MIN_VALUE;
+			_bumpiness = _bumpiness + Math.abs(surface - right) - Math.abs(old - right);
+			_wellDepths = _wellDepths + Board.getWellDepth(surface, right, farRight)
+					- Board.getWellDepth(old, right, farRight);
+		}
+	}
+
+	/**
+	 * Returns whether a shape would intersect any filled cell. The shape is given
+	 * as one bitmask per row, where bit 0 of each mask is the shape's leftmost
+	 * column. topRow and leftCol say where the shape's first row and leftmost
+	 * column would be on the board. Each row of the shape costs one shift and one
+	 * AND against the word of the board row it falls in, and a second one in the
+	 * rare case that it straddles two words.
+	 */
+	public boolean collides(int[] masks, int numRows, int topRow, int leftCol) {
+		if (leftCol < 0) {
+			return true; // Past the left border.
+		}
+		int shift = leftCol & 63;
+		boolean isStraddling = shift > 64 - Constants.NUM_SQUARES;
+		int index = topRow * _words + (leftCol >>> 6);
+		for (int i = 0; i < numRows; i++) {
+			long mask = masks[i];
+			if (((mask << shift) & _rows[index]) != 0) {
+				return true;
+			}
+			if (isStraddling && ((mask >>> (64 - shift)) & _rows[index + 1]) != 0) {
+				return true;
+			}
+			index = index + _words;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether every column inside the border of the given row is filled.
+	 */
+	public boolean isRowFull(int row) {
+		return _counts[row] == _width;
+	}
+
+	/**
+	 * Removes the given rows and moves the rows above them down in a single pass.
+	 * The rows must be listed from top to bottom. Only the rows between the
+	 * lowest cleared row and the highest filled row are moved, and moving one
+	 * only copies its words, its fill count and the number of the slot its cells
+	 * are in, so it costs one word for every 64 columns. The slots of the cleared
+	 * rows are emptied and used for the same number of empty rows at the top of
+	 * the stack. Afterwards, the surface of each column is moved down by the
+	 * number of rows cleared, unless its top cell was in a cleared row, in which
+	 * case the new surface is found below it. The top row is the highest of the
+	 * new surfaces.
+	 *
+	 * A full row has no row transitions and the empty row that replaces it has
+	 * two. In each column, the cells above and below a run of cleared rows end
+	 * up next to each other, which loses the two transitions they had with the
+	 * run if they were both empty, and changes nothing otherwise. The rows from
+	 * the old top row down to the lowest cleared row are hashed before and after
+	 * they move, and the difference is the change in the hash.
+	 */
+	public void removeRows(int[] rows, int numRows) {
+		if (numRows == 0) {
+			return; // Most pieces don't clear anything, so this is kept small enough to inline.
+		}
+		_numFilled = _numFilled - numRows * _width;
+		_rowTransitions = _rowTransitions + 2 * numRows;
+		for (int i = 0; i < numRows; i++) {
+			int start = rows[i];
+			while (i + 1 < numRows && rows[i + 1] == rows[i] + 1) {
+				i++; // The run carries on to the next row.
+			}
+			_colTransitions = _colTransitions - 2 * this.countEmptyPairs(start - 1, rows[i] + 1);
+		}
+		int top = _topRow;
+		long hash = this.hashRows(top, rows[numRows - 1]);
+		this.moveRows(rows, numRows);
+		_hash = _hash ^ hash ^ this.hashRows(top, rows[numRows - 1]);
+		this.updateSurfaces(rows, numRows);
+	}
+
+	/**
+	 * This private helper method returns the exclusive or of the hashed values of
+	 * every word of the rows from the first given row to the second, inclusive.
+	 */
+	private long hashRows(int fromRow, int toRow) {
+		long hash = 0;
+		for (int index = fromRow * _words; index < (toRow + 1) * _words; index++) {
+			hash = hash ^ Zobrist.hashWord(_keys[index], _rows[index]);
+		}
+		return hash;
+	}
+
+	/**
+	 * Locks a piece of the given type and rotation state with its center at the
+	 * given row and column, and then removes any rows it filled, the same way the
+	 * GameEngine locks the falling piece. The piece must not overlap any filled
+	 * cell. Returns the number of rows removed. A computer player uses this to
+	 * look further ahead than probe can, on a copy of the real board.
+	 */
+	public int place(PieceType type, int rotation, int row, int col) {
+		int[] masks = type.getMasks(rotation);
+		int top = row + type.getMaskTop(rotation);
+		int leftCol = col + type.getMaskLeft(rotation);
+		int numFull = 0;
+		for (int i = 0; i < type.getMaskRows(rotation); i++) {
+			for (int bits = masks[i]; bits != 0; bits = bits & (bits - 1)) {
+				this.fill(top + i, leftCol + Integer.numberOfTrailingZeros(bits), type);
+			}
+			if (this.isRowFull(top + i)) {
+				_placedRows[numFull] = top + i;
+				numFull++;
+			}
+		}
+		this.removeRows(_placedRows, numFull);
+		return numFull;
+	}
+
+	/**
+	 * This private helper method counts the columns where the cells in both of
+	 * the given rows are empty, a word at a time. A row above the top row counts
+	 * as empty.
+	 */
+	private int countEmptyPairs(int above, int below) {
+		int count = 0;
+		for (int word = 0; word < _words; word++) {
+			long filled = _rows[below * _words + word] | _borderRow[word];
+			if (above >= Constants.BOARD_LOW_CUTOFF) {
+				filled = filled | _rows[above * _words + word];
+			}
+			count = count + Long.bitCount(~filled);
+		}
+		return count;
+	}
+
+	/**
+	 * This private helper method moves the rows above the given full rows down
+	 * over them, and puts empty rows in the cleared rows' slots at the top of the
+	 * stack.
+	 */
+	private void moveRows(int[] rows, int numRows) {
+		for (int i = 0; i < numRows; i++) {
+			_freeSlots[i] = _slots[rows[i]];
+		}
+		int next = numRows - 1;
+		int write = rows[next];
+		for (int read = write; read >= _topRow; read--) {
+			if (next >= 0 && read == rows[next]) {
+				next--; // This row is cleared, so it is not copied.
+			} else {
+				for (int word = 0; word < _words; word++) {
+					_rows[write * _words + word] = _rows[read * _words + word];
+				}
+				_counts[write] = _counts[read];
+				_slots[write] = _slots[read];
+				write--;
+			}
+		}
+		for (int i = 0; i < numRows; i++) {
+			int row = _topRow + i;
+			int slot = _freeSlots[i];
+			for (int word = 0; word < _words; word++) {
+				_rows[row * _words + word] = _borderRow[word];
+			}
+			_counts[row] = 0;
+			Arrays.fill(_cells, slot * _numCols, (slot + 1) * _numCols, (byte) 0);
+			_slots[row] = slot;
+		}
+	}
+
+	/**
+	 * This private helper method finds the surface of every column, the top row,
+	 * and the features that depend on the heights of the columns, after the given
+	 * rows were removed.
+	 */
+	private void updateSurfaces(int[] rows, int numRows) {
+		_topRow = this.getEndingRow();
+		for (int col = Constants.BOARD_LOW_CUTOFF; col < this.getEndingCol(); col++) {
+			// Every cleared row was full, so no column's surface is below the first one.
+			if (_surfaces[col] < rows[0]) {
+				_surfaces[col] = _surfaces[col] + numRows;
+			} else {
+				int row = rows[0] + numRows;
+				while (!this.isFilled(row, col)) {
+					row++; // This stops at the bottom border row at the latest.
+				}
+				_surfaces[col] = row;
+			}
+			_topRow = Math.min(_topRow, _surfaces[col]);
+		}
+		this.sumColumns();
+	}
+
+	/**
+	 * This private helper method works out the aggregate height, the well depths
+	 * and the bumpiness from the surfaces of all of the columns.
+	 */
+	private void sumColumns() {
+		_aggregateHeight = 0;
+		_wellDepths = 0;
+		_bumpiness = 0;
+		for (int col = Constants.BOARD_LOW_CUTOFF; col < this.getEndingCol(); col++) {
+			_aggregateHeight = _aggregateHeight + this.getEndingRow() - _surfaces[col];
+			_wellDepths = _wellDepths + this.getWellDepth(col);
+			if (col > Constants.BOARD_LOW_CUTOFF) {
+				_bumpiness = _bumpiness + Math.abs(_surfaces[col] - _surfaces[col - 1]);
+			}
+		}
+	}
+
+	/**
+	 * This private helper method counts the row and column transitions of the
+	 * whole board from scratch.
+	 */
+	private void countTransitions() {
+		_rowTransitions = 0;
+		_colTransitions = 0;
+		for (int row = Constants.BOARD_LOW_CUTOFF; row < this.getEndingRow(); row++) {
+			for (int col = Constants.BOARD_LOW_CUTOFF; col <= this.getEndingCol(); col++) {
+				_rowTransitions = _rowTransitions + (this.getBit(row, col - 1) ^ this.getBit(row, col));
+			}
+		}
+		for (int col = Constants.BOARD_LOW_CUTOFF; col < this.getEndingCol(); col++) {
+			_colTransitions = _colTransitions + this.getBit(Constants.BOARD_LOW_CUTOFF, col);
+			for (int row = Constants.BOARD_LOW_CUTOFF + 1; row <= this.getEndingRow(); row++) {
+				_colTransitions = _colTransitions + (this.getBit(row - 1, col) ^ this.getBit(row, col));
+			}
+		}
+	}
+
+	/**
+	 * Returns the column that the center of a new piece of the given type spawns
+	 * in. This is the column it spawns in on the board shown in the window, moved
+	 * over by half of however much wider this board is, so that it is still in the
+	 * middle.
+	 */
+	public int getSpawnCol(PieceType type) {
+		return type.getSpawnCol() + (_width - Constants.BOARD_WIDTH) / 2;
+	}
+
+	/**
+	 * Returns the row that the center of a piece of the given type and rotation
+	 * state would land on if it were dropped straight down from the given row and
+	 * column. For every column the piece covers, the gap between the piece's
+	 * lowest square in that column and the column's surface is how far it could
+	 * fall there, and the smallest gap is how far it can fall. That only works if
+	 * the piece is above the surface in every column. If it has been slid under
+	 * an overhang, it is moved down one row at a time instead.
+	 */
+	public int findLandingRow(PieceType type, int rotation, int row, int col) {
+		int leftCol = col + type.getMaskLeft(rotation);
+		int distance = _numRows;
+		for (int i = 0; i < type.getMaskCols(rotation); i++) {
+			int gap = _surfaces[leftCol + i] - 1 - (row + type.getBottom(rotation, i));
+			if (gap < 0) {
+				int[] masks = type.getMasks(rotation);
+				int top = row + type.getMaskTop(rotation);
+				while (!this.collides(masks, type.getMaskRows(rotation), top + 1, leftCol)) {
+					top++;
+					row++;
+				}
+				return row;
+			}
+			distance = Math.min(distance, gap);
+		}
+		return row + distance;
+	}
+
+	/**
+	 * Works out the features the board would have if a piece of the given type
+	 * and rotation state were locked with its center at the given row and column,
+	 * and any rows it filled were removed, and puts them in the given
+	 * BoardFeatures. The piece must not overlap any filled cell. The board is not
+	 * changed or copied, so any number of threads can probe the same board at
+	 * once, each with its own BoardFeatures.
+	 *
+	 * The transitions change only next to the piece's squares, and the heights
+	 * only in the columns the piece covers, so if no rows are filled this costs a
+	 * few steps for each square and column. If rows are filled, the heights of
+	 * every column are found again below them, the same way removeRows does it,
+	 * so it costs one pass over the columns.
+	 */
+	public void probe(PieceType type, int rotation, int row, int col, BoardFeatures features) {
+		int[] masks = type.getMasks(rotation);
+		int numRows = type.getMaskRows(rotation);
+		int top = row + type.getMaskTop(rotation);
+		int leftCol = col + type.getMaskLeft(rotation);
+		int rightCol = leftCol + type.getMaskCols(rotation) - 1;
+		// Each square gains a transition with each empty neighbour and loses one with
+		// each filled one, except for neighbours that are squares of the piece. The
+		// rows are looked at through windows that start one column left of the piece.
+		int rowTransitions = _rowTransitions;
+		int colTransitions = _colTransitions;
+		int above = top > Constants.BOARD_LOW_CUTOFF ? this.getWindow(top - 1, leftCol - 1) : 0;
+		int bits = this.getWindow(top, leftCol - 1);
+		int lastMask = 0;
+		for (int i = 0; i < numRows; i++) {
+			int mask = masks[i] << 1;
+			int nextMask = i + 1 < numRows ? masks[i + 1] << 1 : 0;
+			int below = this.getWindow(top + i + 1, leftCol - 1);
+			int sides = ((mask << 1) | (mask >>> 1)) & ~mask;
+			int ups = mask & ~lastMask;
+			int downs = mask & ~nextMask;
+			rowTransitions = rowTransitions + Integer.bitCount(sides) - 2 * Integer.bitCount(sides & bits);
+			colTransitions = colTransitions + Integer.bitCount(ups) - 2 * Integer.bitCount(ups & above)
+					+ Integer.bitCount(downs) - 2 * Integer.bitCount(downs & below);
+			above = bits;
+			bits = below;
+			lastMask = mask;
+		}
+		int lines = 0;
+		int fullRows = 0; // Bit i is set if row top + i is filled by the piece.
+		for (int i = 0; i < numRows; i++) {
+			if (_counts[top + i] + Integer.bitCount(masks[i]) == _width) {
+				fullRows = fullRows | (1 << i);
+				lines++;
+			}
+		}
+		if (lines == 0) {
+			// Only the heights of the columns under the piece change, so only the terms
+			// of those columns and their neighbours are worked out again.
+			int heights = _aggregateHeight;
+			int wells = _wellDepths;
+			int bumpiness = _bumpiness;
+			int from = Math.max(leftCol - 1, Constants.BOARD_LOW_CUTOFF);
+			int to = Math.min(rightCol + 1, this.getEndingCol() - 1);
+			int left = from > Constants.BOARD_LOW_CUTOFF ? _surfaces[from - 1] : Integer.MIN_VALUE;
+			int surface = this.getProbeSurface(from, masks, numRows, top, leftCol);
+			for (int c = from; c <= to; c++) {
+				int right = Integer.MIN_VALUE;
+				if (c < this.getEndingCol() - 1) {
+					right = this.getProbeSurface(c + 1, masks, numRows, top, leftCol);
+					if (c <= rightCol) {
+						bumpiness = bumpiness - Math.abs(_surfaces[c] - _surfaces[c + 1]) + Math.abs(surface - right);
+					}
+				}
+				heights = heights + _surfaces[c] - surface;
+				wells = wells - this.getWellDepth(c) + Board.getWellDepth(left, surface, right);
+				left = surface;
+				surface = right;
+			}
+			features.set(heights, heights - _numFilled - Constants.NUM_SQUARES, rowTransitions, colTransitions,
+					wells, bumpiness, 0);
+			return;
+		}
+		for (int i = 0; i < numRows; i++) {
+			if ((fullRows & (1 << i)) != 0) {
+				int start = i;
+				while (i + 1 < numRows && (fullRows & (1 << (i + 1))) != 0) {
+					i++; // The run carries on to the next row.
+				}
+				colTransitions = colTransitions - 2 * this.countProbeEmptyPairs(top + start - 1, top + i + 1, masks,
+						numRows, top, leftCol);
+			}
+		}
+		int numFilled = _numFilled + Constants.NUM_SQUARES - lines * _width;
+		int heights = 0;
+		int wells = 0;
+		int bumpiness = 0;
+		int left = Integer.MIN_VALUE;
+		int surface = this.getProbeClearedSurface(Constants.BOARD_LOW_CUTOFF, masks, numRows, top, leftCol, fullRows,
+				lines);
+		for (int c = Constants.BOARD_LOW_CUTOFF; c < this.getEndingCol(); c++) {
+			int right = Integer.MIN_VALUE;
+			if (c < this.getEndingCol() - 1) {
+				right = this.getProbeClearedSurface(c + 1, masks, numRows, top, leftCol, fullRows, lines);
+				bumpiness = bumpiness + Math.abs(surface - right);
+			}
+			heights = heights + this.getEndingRow() - surface;
+			wells = wells + Board.getWellDepth(left, surface, right);
+			left = surface;
+			surface = right;
+		}
+		features.set(heights, heights - numFilled, rowTransitions + 2 * lines, colTransitions, wells, bumpiness, lines);
+	}
+
+	/**
+	 * This private helper method returns the cells of the given row from the
+	 * given column onwards, as many as a piece and one column on each side of it
+	 * can cover, as a bitmask where bit 0 is the given column. The board always
+	 * has that many bits past any column a piece can be next to.
+	 */
+	private int getWindow(int row, int col) {
+		int index = row * _words + (col >>> 6);
+		int shift = col & 63;
+		long bits = _rows[index] >>> shift;
+		if (shift > 64 - WINDOW_SIZE) {
+			bits = bits | (_rows[index + 1] << (64 - shift)); // The window straddles two words.
+		}
+		return (int) bits & ((1 << WINDOW_SIZE) - 1);
+	}
+
+	/**
+	 * This private helper method returns the surface a column would have with a
+	 * probed piece locked in it.
+	 */
+	private int getProbeSurface(int col, int[] masks, int numRows, int top, int leftCol) {
+		if (col < leftCol) {
+			return _surfaces[col];
+		}
+		for (int i = 0; i < numRows; i++) {
+			if (top + i >= _surfaces[col]) {
+				break;
+			}
+			if (Board.covers(masks, numRows, top, leftCol, top + i, col)) {
+				return top + i;
+			}
+		}
+		return _surfaces[col];
+	}
+
+	/**
+	 * This private helper method returns the surface a column would have with a
+	 * probed piece locked in it and the rows it fills (the set bits of fullRows,
+	 * counting from the piece's top row) removed.
+	 */
+	private int getProbeClearedSurface(int col, int[] masks, int numRows, int top, int leftCol, int fullRows,
+			int lines) {
+		int surface = this.getProbeSurface(col, masks, numRows, top, leftCol);
+		int firstFull = top + Integer.numberOfTrailingZeros(fullRows);
+		if (surface < firstFull) {
+			return surface + lines;
+		}
+		int row = firstFull + 1;
+		while (row < this.getEndingRow() && ((row - top < numRows && (fullRows & (1 << (row - top))) != 0)
+				|| (!this.isFilled(row, col) && !Board.covers(masks, numRows, top, leftCol, row, col)))) {
+			row++;
+		}
+		// The cell moves down by the number of removed rows below it.
+		return row + Integer.bitCount(fullRows >>> Math.min(31, Math.max(0, row - top + 1)));
+	}
+
+	/**
+	 * This private helper method counts the columns where the cells in both of
+	 * the given rows would be empty with a probed piece locked. A row above the
+	 * top row counts as empty.
+	 */
+	private int countProbeEmptyPairs(int above, int below, int[] masks, int numRows, int top, int leftCol) {
+		int count = 0;
+		for (int col = Constants.BOARD_LOW_CUTOFF; col < this.getEndingCol(); col++) {
+			boolean isAboveEmpty = above < Constants.BOARD_LOW_CUTOFF
+					|| (!this.isFilled(above, col) && !Board.covers(masks, numRows, top, leftCol, above, col));
+			if (isAboveEmpty && !this.isFilled(below, col) && !Board.covers(masks, numRows, top, leftCol, below, col)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * This private helper method returns whether a piece given by its row
+	 * bitmasks, with its top row and leftmost column where they are given, covers
+	 * the cell at the given row and column.
+	 */
+	private static boolean covers(int[] masks, int numRows, int top, int leftCol, int row, int col) {
+		int i = row - top;
+		int bit = col - leftCol;
+		return i >= 0 && i < numRows && bit >= 0 && bit < 32 && ((masks[i] >>> bit) & 1) != 0;
+	}
+
+	/**
+	 * Returns the depth of the well in the given column: how much lower it is
+	 * than the lower of its two neighbours, or 0 if it isn't lower than both. The
+	 * border counts as a neighbour that is as high as the board.
+	 */
+	public int getWellDepth(int col) {
+		int left = col > Constants.BOARD_LOW_CUTOFF ? _surfaces[col - 1] : Integer.MIN_VALUE;
+		int right = col < this.getEndingCol() - 1 ? _surfaces[col + 1] : Integer.MIN_VALUE;
+		return Board.getWellDepth(left, _surfaces[col], right);
+	}
+
+	/**
+	 * This private helper method returns the depth of a well from the surfaces of
+	 * a column and its two neighbours, where Integer.MIN_VALUE stands for the
+	 * border.
+	 */
+	private static int getWellDepth(int left, int surface, int right) {
+		return Math.max(0, surface - Math.max(left, right));
+	}
+
+	/**
+	 * Puts the features the board has now into the given BoardFeatures, with no
+	 * lines cleared.
+	 */
+	public void getFeatures(BoardFeatures features) {
+		features.set(_aggregateHeight, this.getHoles(), _rowTransitions, _colTransitions, _wellDepths, _bumpiness, 0);
+	}
+
+	/**
+	 * Accessor method for the height of a column: how many rows there are from
+	 * the bottom of the board up to and including its surface.
+	 */
+	public int getColumnHeight(int col) {
+		return this.getEndingRow() - _surfaces[col];
+	}
+
+	/**
+	 * Accessor method for the aggregate height, the sum of the heights of all of
+	 * the columns.
+	 */
+	public int getAggregateHeight() {
+		return _aggregateHeight;
+	}
+
+	/**
+	 * Returns the number of holes, the empty cells that have a filled cell
+	 * somewhere above them. Every cell below a column's surface that isn't filled
+	 * is one, so this is the aggregate height less the number of filled cells.
+	 */
+	public int getHoles() {
+		return _aggregateHeight - _numFilled;
+	}
+
+	/**
+	 * Accessor method for the row transitions: the number of times a filled cell
+	 * and an empty cell are next to each other across a row, with the border
+	 * counted as filled.
+	 */
+	public int getRowTransitions() {
+		return _rowTransitions;
+	}
+
+	/**
+	 * Accessor method for the column transitions: the number of times a filled
+	 * cell and an empty cell are next to each other down a column, from the empty
+	 * space above the top row down to the filled floor.
+	 */
+	public int getColTransitions() {
+		return _colTransitions;
+	}
+
+	/**
+	 * Accessor method for the sum of the well depths of all of the columns.
+	 */
+	public int getWellDepths() {
+		return _wellDepths;
+	}
+
+	/**
+	 * Accessor method for the bumpiness, the sum of how much the heights of each
+	 * pair of neighbouring columns differ.
+	 */
+	public int getBumpiness() {
+		return _bumpiness;
+	}
+
+	/**
+	 * Accessor method for the hash of the board's rows. Two boards of the same size
+	 * with the same cells filled have the same hash, whatever filled them.
+	 */
+	public long getHash() {
+		return _hash;
+	}
+
+	/**
+	 * Accessor method for one word of the bitmask of a single row. Word w holds
+	 * columns 64w to 64w + 63.
+	 */
+	public long getWord(int row, int word) {
+		return _rows[row * _words + word];
+	}
+
+	/**
+	 * Accessor method for the number of filled cells inside the border of a row.
+	 */
+	public int getCount(int row) {
+		return _counts[row];
+	}
+
+	/**
+	 * Accessor method for the surface of a column, which is the highest row that
+	 * is filled in that column. If the column is empty, this is the bottom border
+	 * row.
+	 */
+	public int getSurface(int col) {
+		return _surfaces[col];
+	}
+
+	/**
+	 * Accessor method for the highest row that has a filled cell inside the
+	 * border. If the board is empty, this is the bottom border row.
+	 */
+	public int getTopRow() {
+		return _topRow;
+	}
+
+	/**
+	 * Accessor method for the number of columns inside the border.
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Accessor method for the number of rows inside the border.
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Accessor method for the number of rows, including the border.
+	 */
+	public int getNumRows() {
+		return _numRows;
+	}
+
+	/**
+	 * Accessor method for the number of columns, including the border.
+	 */
+	public int getNumCols() {
+		return _numCols;
+	}
+
+	/**
+	 * Returns the first row of the bottom border, one past the last row inside
+	 * it.
+	 */
+	public int getEndingRow() {
+		return Constants.BOARD_LOW_CUTOFF + _height;
+	}
+
+	/**
+	 * Returns the first column of the right border, one past the last column
+	 * inside it.
+	 */
+	public int getEndingCol() {
+		return Constants.BOARD_LOW_CUTOFF + _width;
+	}
+
+}
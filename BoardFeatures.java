@@ -0,0 +1,95 @@
+package Tetris;
+
+/**
+ * This class holds the features of a board that a computer player scores it
+ * by. A Board keeps its own features up to date and can copy them into one of
+ * these with getFeatures, or work out what they would be after a piece locked
+ * somewhere with probe. The features are:
+ *   aggregate height  the sum of the heights of all of the columns
+ *   holes             empty cells that have a filled cell somewhere above them
+ *   row transitions   filled cells next to empty ones across a row, with the
+ *                     border counted as filled
+ *   col transitions   filled cells next to empty ones down a column, with the
+ *                     space above the top row counted as empty and the floor
+ *                     counted as filled
+ *   well depths       the sum over the columns of how much lower each one is
+ *                     than the lower of its two neighbours
+ *   bumpiness         the sum of how much each pair of neighbouring columns
+ *                     differ in height
+ *   lines             how many rows the piece that was probed would clear
+ * One of these is meant to be filled in over and over, so that scoring a
+ * placement never allocates anything.
+ */
+public class BoardFeatures {
+	private int _aggregateHeight;
+	private int _holes;
+	private int _rowTransitions;
+	private int _colTransitions;
+	private int _wellDepths;
+	private int _bumpiness;
+	private int _lines;
+
+	/**
+	 * Sets every feature at once. This is called by the Board.
+	 */
+	public void set(int aggregateHeight, int holes, int rowTransitions, int colTransitions, int wellDepths,
+			int bumpiness, int lines) {
+		_aggregateHeight = aggregateHeight;
+		_holes = holes;
+		_rowTransitions = rowTransitions;
+		_colTransitions = colTransitions;
+		_wellDepths = wellDepths;
+		_bumpiness = bumpiness;
+		_lines = lines;
+	}
+
+	/**
+	 * Accessor method for the aggregate height.
+	 */
+	public int getAggregateHeight() {
+		return _aggregateHeight;
+	}
+
+	/**
+	 * Accessor method for the number of holes.
+	 */
+	public int getHoles() {
+		return _holes;
+	}
+
+	/**
+	 * Accessor method for the row transitions.
+	 */
+	public int getRowTransitions() {
+		return _rowTransitions;
+	}
+
+	/**
+	 * Accessor method for the column transitions.
+	 */
+	public int getColTransitions() {
+		return _colTransitions;
+	}
+
+	/**
+	 * Accessor method for the sum of the well depths.
+	 */
+	public int getWellDepths() {
+		return _wellDepths;
+	}
+
+	/**
+	 * Accessor method for the bumpiness.
+	 */
+	public int getBumpiness() {
+		return _bumpiness;
+	}
+
+	/**
+	 * Accessor method for the number of lines cleared.
+	 */
+	public int getLines() {
+		return _lines;
+	}
+
+}
@@ -0,0 +1,39 @@
+package Tetris;
+
+/**
+ * This interface models anything that can draw the game. Game tells its
+ * renderer about every change to the GameEngine, and the renderer decides how
+ * to show it. SquareRenderer draws every square as its own Rectangle node, and
+ * CanvasRenderer draws the whole board into a single Canvas.
+ */
+public interface BoardRenderer {
+
+	/**
+	 * Called when a new piece has been placed at the top of the board.
+	 */
+	void pieceSpawned(GameEngine engine);
+
+	/**
+	 * Called when the falling piece has moved, rotated or dropped.
+	 */
+	void pieceMoved(GameEngine engine);
+
+	/**
+	 * Called when the falling piece has become part of the board, after the
+	 * GameEngine has cleared any lines that it completed.
+	 */
+	void pieceLocked(GameEngine engine);
+
+	/**
+	 * Called when the game is restarted, after the GameEngine has been reset, and
+	 * before the first piece of the new game is spawned.
+	 */
+	void reset(GameEngine engine);
+
+	/**
+	 * Called when the GameEngine has been loaded from a snapshot, so that the
+	 * whole board and the falling piece have to be drawn again from scratch.
+	 */
+	void redraw(GameEngine engine);
+
+}
@@ -0,0 +1,226 @@
+package Tetris;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class is a computer player. Each time a new piece spawns, it finds
+ * every placement the piece can reach with a PlacementFinder, including ones
+ * under overhangs, along with the shortest sequence of moves to each. All of
+ * these placements are scored at once across every core with a
+ * PlacementSearch, and the best one is played by adding the key presses of its
+ * moves to the InputQueue, exactly as if a person had typed them. The moves
+ * are checked with the same row bitmasks the GameEngine uses, so the bot only
+ * ever plans moves the GameEngine will allow. Without a display, the bot can
+ * also play a placement by calling the GameEngine's move and rotate methods
+ * itself.
+ *
+ * The bot can also look ahead at pieces in the preview (see Lookahead), in
+ * which case every board it searches is kept in a TranspositionTable. Many
+ * bots on many threads can share one table. The pieces it looks ahead at are
+ * only dropped straight down (see listCandidates), which is much quicker than
+ * a full search and good enough for judging the piece that is falling now.
+ */
+public class Bot {
+	private InputQueue _queue;
+	private ForkJoinPool _pool;
+	private boolean _isParallel;
+	private PlacementFinder _finder;
+	private Action[] _moves;
+	private int _lookahead;
+	private PieceType[] _upcoming;
+	private TranspositionTable _table;
+
+	/**
+	 * Constructor for the Bot. Takes in the queue that its key presses are added
+	 * to, which can be null if the bot only ever plays with playNow. The
+	 * placements are scored in the common fork/join pool. The list of moves to
+	 * play grows the first time a placement needs more of them. The bot starts
+	 * out not looking ahead at all.
+	 */
+	public Bot(InputQueue queue) {
+		_queue = queue;
+		_pool = ForkJoinPool.commonPool();
+		_isParallel = true;
+		_finder = new PlacementFinder();
+		_moves = new Action[Constants.NUM_COLS];
+		_lookahead = 0;
+		_upcoming = new PieceType[Constants.PREVIEW_SIZE];
+		_table = null;
+	}
+
+	/**
+	 * Finds the best placement for the piece that just spawned, and adds the key
+	 * presses and releases that play it to the Bot's own InputQueue. This has to
+	 * be called on the game loop's thread, the one that ticks the game, since
+	 * that thread is the queue's only producer and also the one that takes the
+	 * key events back out of it.
+	 */
+	public void play(GameEngine engine) {
+		Placement best = this.findPlacement(engine);
+		if (best == null) {
+			return;
+		}
+		int numMoves = this.getMoves(engine.getPieceType(), best);
+		for (int i = 0; i < numMoves; i++) {
+			this.press(_moves[i]);
+		}
+	}
+
+	/**
+	 * Finds the best placement for the piece that just spawned and plays it
+	 * straight away, with the same move, rotate and drop methods the
+	 * InputController uses. Returns whether the piece could go anywhere.
+	 */
+	public boolean playNow(GameEngine engine) {
+		Placement best = this.findPlacement(engine);
+		if (best == null) {
+			return false;
+		}
+		int numMoves = this.getMoves(engine.getPieceType(), best);
+		for (int i = 0; i < numMoves; i++) {
+			switch (_moves[i]) {
+			case LEFT:
+				engine.tryMove(-1, 0);
+				break;
+			case RIGHT:
+				engine.tryMove(1, 0);
+				break;
+			case DOWN:
+				engine.tryMove(0, 1);
+				break;
+			case ROTATE:
+				engine.tryRotate();
+				break;
+			default:
+				engine.drop();
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the best placement for the piece that just spawned, or null if it
+	 * cannot go anywhere.
+	 */
+	public Placement findPlacement(GameEngine engine) {
+		PieceType type = engine.getPieceType();
+		Board board = engine.getBoard();
+		if (_lookahead > 0) {
+			for (int i = 0; i < _lookahead; i++) {
+				_upcoming[i] = engine.getNextPiece(i);
+			}
+			if (_table == null) {
+				_table = new TranspositionTable(Constants.BOT_TABLE_SIZE, Constants.BOT_EVICTION_POLICY);
+			}
+			_table.nextGeneration();
+		}
+		int numCandidates = _finder.find(board, type, engine.isUsingWallKicks());
+		if (numCandidates == 0) {
+			return null;
+		}
+		PlacementSearch search = new PlacementSearch(board, type, _finder.getRotations(type), _finder.getRows(type),
+				_finder.getCols(type), 0, numCandidates, _upcoming, _lookahead, _table);
+		return _isParallel ? _pool.invoke(search) : search.scoreRange();
+	}
+
+	/**
+	 * This private helper method copies the moves that reach the given placement
+	 * into the list of moves to play, making the list bigger first if it needs
+	 * to be, and returns how many there are.
+	 */
+	private int getMoves(PieceType type, Placement placement) {
+		int numMoves = _finder.getNumMoves(type, placement.getIndex());
+		if (_moves.length < numMoves) {
+			_moves = new Action[Math.max(numMoves, 2 * _moves.length)];
+		}
+		return _finder.getMoves(type, placement.getIndex(), _moves);
+	}
+
+	/**
+	 * Sets how many pieces from the preview the bot looks ahead at, up to
+	 * Constants.PREVIEW_SIZE. If the bot looks ahead and has no table by the
+	 * time it first plays, it makes one of Constants.BOT_TABLE_SIZE entries
+	 * then, so a bot that is never turned on never makes one.
+	 */
+	public void setLookahead(int numPieces) {
+		_lookahead = Math.min(numPieces, Constants.PREVIEW_SIZE);
+	}
+
+	/**
+	 * Sets the table that the bot stores searched boards in, so that it can be
+	 * shared with other bots.
+	 */
+	public void setTable(TranspositionTable table) {
+		_table = table;
+	}
+
+	/**
+	 * Sets whether placements are scored in parallel. When many games are already
+	 * being played at once, one on each core, scoring on the calling thread is
+	 * faster.
+	 */
+	public void setParallel(boolean isParallel) {
+		_isParallel = isParallel;
+	}
+
+	/**
+	 * Lists every placement a piece of the given type can reach from where it
+	 * spawns on the given board by only dropping straight down, putting the
+	 * rotation state and column of each into the given arrays, which need room
+	 * for PieceType.NUM_ROTATIONS times the board's number of columns. This is
+	 * what Lookahead uses for the pieces after this one. Returns how many were
+	 * listed. Each rotation state is reached by rotating in place, and it is only
+	 * kept if every turn on the way there fits. From there, the piece can slide
+	 * left and right until it hits something, and each column it can reach is one
+	 * candidate. The square piece looks the same in every state, so only its first
+	 * state is listed.
+	 */
+	public static int listCandidates(Board board, PieceType type, int[] rotations, int[] cols) {
+		int numCandidates = 0;
+		int row = type.getSpawnRow();
+		int col = board.getSpawnCol(type);
+		int numStates = type == PieceType.TWO ? 1 : PieceType.NUM_ROTATIONS;
+		for (int state = 0; state < numStates; state++) {
+			if (Bot.collides(board, type, state, row, col)) {
+				break; // No later state can be reached either.
+			}
+			rotations[numCandidates] = state;
+			cols[numCandidates] = col;
+			numCandidates++;
+			for (int c = col - 1; !Bot.collides(board, type, state, row, c); c--) {
+				rotations[numCandidates] = state;
+				cols[numCandidates] = c;
+				numCandidates++;
+			}
+			for (int c = col + 1; !Bot.collides(board, type, state, row, c); c++) {
+				rotations[numCandidates] = state;
+				cols[numCandidates] = c;
+				numCandidates++;
+			}
+		}
+		return numCandidates;
+	}
+
+	/**
+	 * This private helper method returns whether a piece of the given type and
+	 * rotation state, centered at the given row and column, would intersect the
+	 * border or a landed piece.
+	 */
+	private static boolean collides(Board board, PieceType type, int rotation, int row, int col) {
+		return board.collides(type.getMasks(rotation), type.getMaskRows(rotation), row + type.getMaskTop(rotation),
+				col + type.getMaskLeft(rotation));
+	}
+
+	/**
+	 * This private helper method presses and releases a key. The release is
+	 * needed so that pressing the same key again counts as a new press rather
+	 * than as the key being held.
+	 */
+	private void press(Action action) {
+		long now = System.nanoTime();
+		_queue.offer(action, true, now);
+		_queue.offer(action, false, now);
+	}
+
+}
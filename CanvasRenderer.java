@@ -0,0 +1,286 @@
+package Tetris;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * This class draws the whole game into a single Canvas, so the number of nodes
+ * in the pane stays the same no matter how full the board gets. It remembers
+ * what it last drew in every cell, and each time the GameEngine changes, it
+ * only looks at the cells that could have changed (the old and new squares of
+ * the falling piece, and the rows that a landing or line clear touched). Of
+ * those, only the cells whose contents are different from what is on screen
+ * are repainted. The ghost piece is drawn the same way, as outlined cells, so
+ * it is only repainted when the row the piece would land on changes. How long
+ * repainting after a line clear takes is recorded in Metrics and as a
+ * GameEvents.ClearLinesEvent.
+ */
+public class CanvasRenderer implements BoardRenderer {
+	private static final LatencyHistogram CLEAR_TIMES = Metrics.histogram("render.clear.nanos");
+
+	private Canvas _canvas;
+	private GraphicsContext _gc;
+	private Color[] _colors;
+	private int[] _drawn;
+	private int[] _pieceRows;
+	private int[] _pieceCols;
+	private int[] _ghostRows;
+	private int _pieceCode;
+	private boolean _hasPiece;
+
+	/**
+	 * Constructor for the CanvasRenderer. Takes in the pane that the canvas is
+	 * added to. The colors of the 7 piece types are looked up once, and the border
+	 * is drawn, since it never changes.
+	 */
+	public CanvasRenderer(Pane pane) {
+		_canvas = new Canvas(Constants.NUM_COLS * Constants.SQUARE_SIZE, Constants.NUM_ROWS * Constants.SQUARE_SIZE);
+		_gc = _canvas.getGraphicsContext2D();
+		_gc.setStroke(Color.WHITE);
+		_gc.setLineWidth(Constants.STROKE_WIDTH / 2);
+		PieceType[] types = PieceType.values();
+		_colors = new Color[types.length + 1];
+		for (PieceType type : types) {
+			_colors[type.ordinal() + 1] = Piece.getColor(type);
+		}
+		_drawn = new int[Constants.NUM_ROWS * Constants.NUM_COLS];
+		_pieceRows = new int[Constants.NUM_SQUARES];
+		_pieceCols = new int[Constants.NUM_SQUARES];
+		_ghostRows = new int[Constants.NUM_SQUARES];
+		_hasPiece = false;
+		pane.getChildren().addAll(_canvas);
+		this.drawBorder();
+	}
+
+	/**
+	 * This private helper method draws the 2 cell thick border around the board.
+	 */
+	private void drawBorder() {
+		for (int row = 0; row < Constants.NUM_ROWS; row++) {
+			for (int col = 0; col < Constants.NUM_COLS; col++) {
+				if (row < Constants.BOARD_LOW_CUTOFF || row >= Constants.ENDING_ROW || col < Constants.BOARD_LOW_CUTOFF
+						|| col >= Constants.ENDING_COL) {
+					this.paintSquare(row, col, Color.DARKSLATEBLUE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws the new piece. The old piece has already become part of the board, so
+	 * there is nothing to erase.
+	 */
+	@Override
+	public void pieceSpawned(GameEngine engine) {
+		this.updatePiece(engine);
+	}
+
+	/**
+	 * Repaints the cells the piece left and the cells it moved into.
+	 */
+	@Override
+	public void pieceMoved(GameEngine engine) {
+		this.updatePiece(engine);
+	}
+
+	/**
+	 * Repaints the rows that the landing could have changed. If no lines were
+	 * cleared, that is only the rows the piece covers. If lines were cleared,
+	 * every row from the top of the stack down to the lowest cleared row may have
+	 * moved. The landed piece is now part of the board, so it is forgotten as the
+	 * falling piece. Its ghost was in the rows it landed in, so it is painted over
+	 * as well.
+	 */
+	@Override
+	public void pieceLocked(GameEngine engine) {
+		int numCleared = engine.getNumClearedRows();
+		int top = engine.getSquareRow(0);
+		int bottom = top;
+		for (int i = 1; i < Constants.NUM_SQUARES; i++) {
+			top = Math.min(top, engine.getSquareRow(i));
+			bottom = Math.max(bottom, engine.getSquareRow(i));
+		}
+		if (Constants.SHOW_GHOST_PIECE) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				top = Math.min(top, _ghostRows[i]);
+				bottom = Math.max(bottom, _ghostRows[i]);
+			}
+		}
+		if (numCleared > 0) {
+			top = Math.min(top, engine.getBoard().getTopRow() - numCleared);
+			bottom = Math.max(bottom, engine.getClearedRow(numCleared - 1));
+		}
+		_hasPiece = false;
+		if (numCleared == 0) {
+			this.updateRows(engine.getBoard(), top, bottom);
+			return;
+		}
+		long start = System.nanoTime();
+		GameEvents.ClearLinesEvent event = new GameEvents.ClearLinesEvent();
+		event.begin();
+		this.updateRows(engine.getBoard(), top, bottom);
+		event.rows = numCleared;
+		event.commit();
+		CLEAR_TIMES.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Repaints every cell inside the border, since all of them are empty again.
+	 */
+	@Override
+	public void reset(GameEngine engine) {
+		_hasPiece = false;
+		this.updateRows(engine.getBoard(), Constants.BOARD_LOW_CUTOFF, Constants.ENDING_ROW - 1);
+	}
+
+	/**
+	 * Brings every cell inside the border up to date with the board, which also
+	 * paints over the old piece and ghost, and then draws the falling piece
+	 * unless the game is over. Only the cells that changed are repainted.
+	 */
+	@Override
+	public void redraw(GameEngine engine) {
+		this.reset(engine);
+		if (!engine.isGameOver()) {
+			this.updatePiece(engine);
+		}
+	}
+
+	/**
+	 * This private helper method moves the falling piece and its ghost on the
+	 * canvas. The cells the piece and ghost used to cover are set back to
+	 * whatever the board has there, then the cells the ghost covers now are
+	 * outlined, and then the cells the piece covers now are painted in its color.
+	 * A ghost cell is stored as the negative of the piece's code. Cells that are
+	 * covered both before and after are only painted once, because each cell is
+	 * only repainted if its contents changed.
+	 */
+	private void updatePiece(GameEngine engine) {
+		Board board = engine.getBoard();
+		if (_hasPiece) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				if (!this.isPieceCell(engine, _pieceRows[i], _pieceCols[i])) {
+					this.updateCell(_pieceRows[i], _pieceCols[i], board.getCell(_pieceRows[i], _pieceCols[i]));
+				}
+				if (Constants.SHOW_GHOST_PIECE && !this.isPieceCell(engine, _ghostRows[i], _pieceCols[i])) {
+					this.updateCell(_ghostRows[i], _pieceCols[i], board.getCell(_ghostRows[i], _pieceCols[i]));
+				}
+			}
+		}
+		_pieceCode = engine.getPieceType().ordinal() + 1;
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			_pieceRows[i] = engine.getSquareRow(i);
+			_pieceCols[i] = engine.getSquareCol(i);
+			if (Constants.SHOW_GHOST_PIECE) {
+				_ghostRows[i] = engine.getGhostRow(i);
+			}
+		}
+		if (Constants.SHOW_GHOST_PIECE) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				if (!this.isFallingCell(engine, _ghostRows[i], _pieceCols[i])) {
+					this.updateCell(_ghostRows[i], _pieceCols[i], -_pieceCode);
+				}
+			}
+		}
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			this.updateCell(_pieceRows[i], _pieceCols[i], _pieceCode);
+		}
+		_hasPiece = true;
+	}
+
+	/**
+	 * This private helper method returns whether the falling piece or its ghost
+	 * currently covers the given cell.
+	 */
+	private boolean isPieceCell(GameEngine engine, int row, int col) {
+		if (this.isFallingCell(engine, row, col)) {
+			return true;
+		}
+		if (Constants.SHOW_GHOST_PIECE) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				if (engine.getGhostRow(i) == row && engine.getSquareCol(i) == col) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This private helper method returns whether the falling piece itself
+	 * currently covers the given cell.
+	 */
+	private boolean isFallingCell(GameEngine engine, int row, int col) {
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			if (engine.getSquareRow(i) == row && engine.getSquareCol(i) == col) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This private helper method brings the given rows, from top to bottom, up to
+	 * date with the board.
+	 */
+	private void updateRows(Board board, int top, int bottom) {
+		for (int row = top; row <= bottom; row++) {
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
+				this.updateCell(row, col, board.getCell(row, col));
+			}
+		}
+	}
+
+	/**
+	 * This private helper method repaints a single cell, but only if what should
+	 * be there is different from what was last drawn there. A code of 0 means the
+	 * cell is empty, otherwise it is one more than the ordinal of a PieceType, or
+	 * the negative of that for a ghost cell.
+	 */
+	private void updateCell(int row, int col, int code) {
+		int index = row * Constants.NUM_COLS + col;
+		if (_drawn[index] == code) {
+			return;
+		}
+		_drawn[index] = code;
+		if (code <= 0) {
+			_gc.clearRect(col * Constants.SQUARE_SIZE, row * Constants.SQUARE_SIZE, Constants.SQUARE_SIZE,
+					Constants.SQUARE_SIZE);
+			if (code < 0) {
+				this.paintGhost(row, col, _colors[-code]);
+			}
+		} else {
+			this.paintSquare(row, col, _colors[code]);
+		}
+	}
+
+	/**
+	 * This private helper method paints one square the way a TetrisSquare looks:
+	 * filled with the given color and outlined in white. The outline is drawn
+	 * inside the cell so that repainting a cell never touches its neighbours.
+	 */
+	private void paintSquare(int row, int col, Color color) {
+		double x = col * Constants.SQUARE_SIZE;
+		double y = row * Constants.SQUARE_SIZE;
+		double inset = Constants.STROKE_WIDTH / 4;
+		_gc.setFill(color);
+		_gc.fillRect(x, y, Constants.SQUARE_SIZE, Constants.SQUARE_SIZE);
+		_gc.strokeRect(x + inset, y + inset, Constants.SQUARE_SIZE - 2 * inset, Constants.SQUARE_SIZE - 2 * inset);
+	}
+
+	/**
+	 * This private helper method paints one cell of the ghost piece, which is only
+	 * an outline in the piece's color. The outline is then set back to white for
+	 * the next square.
+	 */
+	private void paintGhost(int row, int col, Color color) {
+		double inset = Constants.STROKE_WIDTH / 4;
+		_gc.setStroke(color);
+		_gc.strokeRect(col * Constants.SQUARE_SIZE + inset, row * Constants.SQUARE_SIZE + inset,
+				Constants.SQUARE_SIZE - 2 * inset, Constants.SQUARE_SIZE - 2 * inset);
+		_gc.setStroke(Color.WHITE);
+	}
+
+}
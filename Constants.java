@@ -10,6 +10,7 @@ public class Constants {
 
 	public static final int APP_WIDTH = 600;
 	public static final int APP_HEIGHT = 1046;
+	public static final int HBOX_SPACING = 14;
 
 	/*
 	 * Constants for the piece array.
@@ -19,20 +20,140 @@ public class Constants {
 	public static final double STROKE_WIDTH = 2.2;
 
 	/*
-	 * Constants for the board 2D array.
+	 * Constants for the board 2D array. The board in the window is BOARD_WIDTH
+	 * columns by BOARD_HEIGHT rows, inside a border BOARD_LOW_CUTOFF cells thick,
+	 * so it is NUM_COLS by NUM_ROWS in all, and the border starts again at
+	 * ENDING_COL and ENDING_ROW. Boards that aren't drawn can be any size up to
+	 * MAX_BOARD_WIDTH by MAX_BOARD_HEIGHT inside the same border.
 	 */
-	public static final int NUM_ROWS = 34;
-	public static final int NUM_COLS = 20;
 	public static final int BOARD_LOW_CUTOFF = 2;
-	public static final int ENDING_ROW = 32;
-	public static final int ENDING_COL = 18;
+	public static final int BOARD_WIDTH = 16;
+	public static final int BOARD_HEIGHT = 30;
+	public static final int NUM_ROWS = BOARD_HEIGHT + 2 * BOARD_LOW_CUTOFF;
+	public static final int NUM_COLS = BOARD_WIDTH + 2 * BOARD_LOW_CUTOFF;
+	public static final int ENDING_ROW = BOARD_LOW_CUTOFF + BOARD_HEIGHT;
+	public static final int ENDING_COL = BOARD_LOW_CUTOFF + BOARD_WIDTH;
+	public static final int MAX_BOARD_WIDTH = 1024;
+	public static final int MAX_BOARD_HEIGHT = 8192;
 
-	public static final double DURATION = 0.5;
-	public static final int HBOX_SPACING = 14;
+	/*
+	 * Constants for the game loop. The game logic runs TICKS_PER_SECOND times a
+	 * second. Gravity is measured in GRAVITY_ONE-ths of a row per tick, with one
+	 * entry for each level: at level 0 the piece falls one row every half second,
+	 * and by the last levels it falls several rows every tick. The level goes up
+	 * every LINES_PER_LEVEL lines. A piece locks LOCK_DELAY_TICKS ticks after it
+	 * comes to rest. Up to FRAME_RING_SIZE frames can wait to be drawn.
+	 */
+	public static final int TICKS_PER_SECOND = 60;
+	public static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+	public static final int MAX_TICKS_PER_FRAME = 8;
+	public static final int FRAME_RING_SIZE = 64;
+	public static final int GRAVITY_ONE = 1 << 16;
+	public static final int[] GRAVITY = { GRAVITY_ONE / 30, GRAVITY_ONE / 26, GRAVITY_ONE / 22, GRAVITY_ONE / 19,
+			GRAVITY_ONE / 16, GRAVITY_ONE / 13, GRAVITY_ONE / 11, GRAVITY_ONE / 9, GRAVITY_ONE / 7, GRAVITY_ONE / 5,
+			GRAVITY_ONE / 4, GRAVITY_ONE / 3, GRAVITY_ONE / 2, GRAVITY_ONE, 2 * GRAVITY_ONE, 3 * GRAVITY_ONE,
+			5 * GRAVITY_ONE, 20 * GRAVITY_ONE };
+	public static final int LINES_PER_LEVEL = 10;
+	public static final int LOCK_DELAY_TICKS = 30;
+
+	/*
+	 * Constants for key input, in ticks. A held left or right key starts repeating
+	 * after DAS_TICKS, and then moves the piece every ARR_TICKS. A held down key
+	 * moves the piece down every SOFT_DROP_TICKS. Up to INPUT_QUEUE_SIZE key
+	 * events can wait between two ticks.
+	 */
+	public static final int DAS_TICKS = 10;
+	public static final int ARR_TICKS = 2;
+	public static final int SOFT_DROP_TICKS = 2;
+	public static final int INPUT_QUEUE_SIZE = 256;
+
+	/*
+	 * Constants for replays. When RECORD_REPLAYS is true, every game is recorded
+	 * to a file in REPLAY_DIRECTORY. A ReplayPlayer keeps a keyframe every
+	 * REPLAY_KEYFRAME_TICKS ticks.
+	 */
+	public static final boolean RECORD_REPLAYS = false;
+	public static final String REPLAY_DIRECTORY = "replays";
+	public static final int REPLAY_KEYFRAME_TICKS = 600;
+
+	/*
+	 * Constants for snapshots. The game is saved to and loaded from SAVE_FILE. A
+	 * snapshot for rewinding is kept every REWIND_INTERVAL_TICKS ticks, and the
+	 * last REWIND_SLOTS of them are kept.
+	 */
+	public static final String SAVE_FILE = "tetris.save";
+	public static final int REWIND_INTERVAL_TICKS = 120;
+	public static final int REWIND_SLOTS = 15;
+
+	/*
+	 * Constants for the GameServer. It listens on SERVER_PORT, and prints its
+	 * statistics every SERVER_STATS_SECONDS seconds. A client that falls more than
+	 * SERVER_SEND_BUFFER_SIZE bytes behind on reading its messages is dropped.
+	 */
+	public static final int SERVER_PORT = 7777;
+	public static final int SERVER_STATS_SECONDS = 5;
+	public static final int SERVER_SEND_BUFFER_SIZE = 1 << 16;
+
+	/*
+	 * When DUMP_METRICS is true, every counter and histogram in Metrics is written
+	 * to METRICS_FILE when the program exits.
+	 */
+	public static final boolean DUMP_METRICS = true;
+	public static final String METRICS_FILE = "metrics.txt";
+
+	/*
+	 * A DeltaEncoder sends a full snapshot of the game at least every
+	 * DELTA_FULL_INTERVAL_TICKS ticks, so that a viewer that missed one can catch
+	 * up.
+	 */
+	public static final int DELTA_FULL_INTERVAL_TICKS = 600;
+
+	/*
+	 * When true, the board is drawn into a single Canvas instead of with one
+	 * Rectangle node per square.
+	 */
+	public static final boolean USE_CANVAS_RENDERER = false;
+
+	/*
+	 * When true, an outline of the falling piece is drawn where it would land if
+	 * it were dropped.
+	 */
+	public static final boolean SHOW_GHOST_PIECE = true;
+
+	/*
+	 * Constants for generating pieces. PREVIEW_SIZE is how many upcoming pieces
+	 * can be looked at. A HistoryGenerator remembers the last HISTORY_SIZE pieces
+	 * and picks up to HISTORY_ROLLS times to avoid them.
+	 */
+	public static final GeneratorMode GENERATOR_MODE = GeneratorMode.SEVEN_BAG;
+	public static final int PREVIEW_SIZE = 5;
+	public static final int HISTORY_SIZE = 4; // At most 7, to fit in PieceGenerator.STATE_BYTES.
+	public static final int HISTORY_ROLLS = 4;
+
+	/*
+	 * Constants for the computer player. Each placement it could make is scored
+	 * by adding up these weights times the features of the board afterwards.
+	 * Placements are scored in parallel in groups of at most BOT_SPLIT_SIZE.
+	 * In the window, the bot looks ahead at BOT_LOOKAHEAD pieces from the
+	 * preview, and keeps the boards it has searched in a table of BOT_TABLE_SIZE
+	 * entries, replacing them by BOT_EVICTION_POLICY. A placement after which a
+	 * piece cannot spawn scores BOT_TOP_OUT_SCORE.
+	 */
+	public static final boolean USE_BOT = false;
+	public static final double BOT_HEIGHT_WEIGHT = -0.510066;
+	public static final double BOT_LINES_WEIGHT = 0.760666;
+	public static final double BOT_HOLES_WEIGHT = -0.35663;
+	public static final double BOT_BUMPINESS_WEIGHT = -0.184483;
+	public static final int BOT_SPLIT_SIZE = 4;
+	public static final int BOT_LOOKAHEAD = 1;
+	public static final int BOT_TABLE_SIZE = 1 << 18;
+	public static final EvictionPolicy BOT_EVICTION_POLICY = EvictionPolicy.SHALLOWEST;
+	public static final double BOT_TOP_OUT_SCORE = -1000000;
 
 	/*
 	 * 2D arrays of coordinates modeling the starting positions of each tetris
-	 * piece.
+	 * piece. On a board wider or narrower than the one in the window, the pieces
+	 * are moved over so that they still spawn in the middle.
 	 */
 	public static final int[][] PIECE_ONE_COORDS = { { 300, 60 }, { 300, 60 + Constants.SQUARE_SIZE },
 			{ 300, 60 + (2 * Constants.SQUARE_SIZE) }, { 300, 60 + (3 * Constants.SQUARE_SIZE) } };
@@ -51,6 +172,17 @@ public class Constants {
 			{ 300 - Constants.SQUARE_SIZE, 60 + Constants.SQUARE_SIZE },
 			{ 300 - Constants.SQUARE_SIZE, 60 + (2 * Constants.SQUARE_SIZE) } };
 
+	/*
+	 * Wall kicks are the extra positions that are tried, in order, when a piece
+	 * cannot rotate where it is. Each entry is a change in column and row. The
+	 * long piece gets to shift two columns since it is four squares long. When
+	 * USE_WALL_KICKS is false, only the first entry (no shift at all) is tried.
+	 */
+	public static final boolean USE_WALL_KICKS = false;
+	public static final int[][] NO_WALL_KICKS = { { 0, 0 } };
+	public static final int[][] WALL_KICKS = { { 0, 0 }, { 1, 0 }, { -1, 0 }, { 0, -1 } };
+	public static final int[][] LONG_WALL_KICKS = { { 0, 0 }, { 1, 0 }, { -1, 0 }, { 2, 0 }, { -2, 0 } };
+
 	/*
 	 * Constants for the Image of the tetris logo.
 	 */
@@ -74,5 +206,6 @@ public class Constants {
 	public static final int SCORE_SIZE = 24;
 	public static final int LABEL_SIZE = 48;
 	public static final int LABEL_Y = 400;
+	public static final int HUD_CACHED_TEXTS = 1024;
 
 }
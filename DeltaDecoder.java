@@ -0,0 +1,156 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class follows a game from the frames written by a DeltaEncoder. It
+ * keeps a GameEngine of its own that is never ticked: each frame is applied to
+ * it directly, so its board, falling piece, score and upcoming pieces are
+ * always exactly those of the game being followed, and it can be drawn with
+ * BoardRenderer.redraw like any other game. DELTA frames are ignored until the
+ * first FULL frame has been read, since there is nothing yet to apply them to.
+ */
+public class DeltaDecoder {
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private GameEngine _engine;
+	private int[] _clearedRows;
+	private boolean _isSynced;
+
+	/**
+	 * Constructor for the DeltaDecoder. Takes in the mode of piece generator of
+	 * the game it will follow.
+	 */
+	public DeltaDecoder(GeneratorMode mode) {
+		_engine = new GameEngine(mode, 0);
+		_clearedRows = new int[Constants.NUM_SQUARES];
+		_isSynced = false;
+	}
+
+	/**
+	 * Reads one frame at the buffer's position and applies it to the game.
+	 * Returns false if the frame couldn't be applied, either because no FULL
+	 * frame has been read yet or because the frame is not one this class knows
+	 * how to read. In that case the game waits for the next FULL frame.
+	 */
+	public boolean apply(ByteBuffer buffer) {
+		int kind = buffer.get();
+		if (kind == DeltaEncoder.FULL) {
+			_isSynced = Snapshot.read(_engine, buffer);
+			return _isSynced;
+		}
+		if (kind != DeltaEncoder.DELTA || !_isSynced) {
+			return false;
+		}
+		long tick = _engine.getTick() + DeltaDecoder.getVarint(buffer);
+		int score = _engine.getScore();
+		int lines = _engine.getLines();
+		int level = _engine.getLevel();
+		boolean isGameOver = _engine.isGameOver();
+		int tag = buffer.get();
+		while (tag != DeltaEncoder.END) {
+			switch (tag) {
+			case DeltaEncoder.MOVE:
+				int colChange = buffer.get();
+				int rowChange = buffer.get();
+				_engine.placePiece(buffer.get(), _engine.getPieceRow() + rowChange,
+						_engine.getPieceCol() + colChange);
+				break;
+			case DeltaEncoder.LOCK:
+				this.applyLock(buffer);
+				break;
+			case DeltaEncoder.CLEAR:
+				int numRows = buffer.get();
+				for (int i = 0; i < numRows; i++) {
+					_clearedRows[i] = buffer.get();
+				}
+				_engine.getBoard().removeRows(_clearedRows, numRows);
+				break;
+			case DeltaEncoder.SCORE:
+				score = buffer.getInt();
+				lines = buffer.getInt();
+				level = buffer.get();
+				break;
+			case DeltaEncoder.SPAWN:
+				PieceType next = _engine.getPieceQueue().next(); // Keeps the upcoming pieces in step.
+				int type = buffer.get();
+				_engine.spawnPiece(type < 0 ? next : TYPES[type]);
+				break;
+			case DeltaEncoder.OVER:
+				isGameOver = true;
+				break;
+			default:
+				_isSynced = false;
+				return false;
+			}
+			tag = buffer.get();
+		}
+		_engine.setStatus(tick, score, lines, level, isGameOver || _engine.isGameOver());
+		return true;
+	}
+
+	/**
+	 * Applies every frame from the buffer's position to its limit, as written by
+	 * one call to DeltaEncoder.encode. Returns false if one of them couldn't be
+	 * applied, in which case the rest are skipped.
+	 */
+	public boolean applyAll(ByteBuffer buffer) {
+		while (buffer.hasRemaining()) {
+			if (!this.apply(buffer)) {
+				buffer.position(buffer.limit());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * This private helper method fills in the cells of a LOCK section with the
+	 * type of the falling piece.
+	 */
+	private void applyLock(ByteBuffer buffer) {
+		Board board = _engine.getBoard();
+		PieceType type = _engine.getPieceType();
+		int top = buffer.get();
+		int numRows = buffer.get();
+		for (int i = 0; i < numRows; i++) {
+			int mask = buffer.getInt();
+			while (mask != 0) {
+				board.fill(top + i, Integer.numberOfTrailingZeros(mask), type);
+				mask = mask & (mask - 1);
+			}
+		}
+		// The board has changed under the piece, so where it would land has too.
+		_engine.placePiece(_engine.getRotation(), _engine.getPieceRow(), _engine.getPieceCol());
+	}
+
+	/**
+	 * This private helper method reads a varint written by DeltaEncoder.
+	 */
+	private static long getVarint(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		int b = buffer.get();
+		while ((b & 0x80) != 0) {
+			value = value | ((long) (b & 0x7F) << shift);
+			shift = shift + 7;
+			b = buffer.get();
+		}
+		return value | ((long) b << shift);
+	}
+
+	/**
+	 * Returns whether a FULL frame has been read, so the game is being followed.
+	 */
+	public boolean isSynced() {
+		return _isSynced;
+	}
+
+	/**
+	 * Accessor method for the GameEngine that follows the game.
+	 */
+	public GameEngine getEngine() {
+		return _engine;
+	}
+
+}
@@ -0,0 +1,240 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class turns a game into a stream of small frames, one for each tick in
+ * which something a viewer can see changed, so that a spectator or a second
+ * renderer can follow the game without being sent the whole board every tick.
+ * A DeltaDecoder reads the frames back into a GameEngine of its own.
+ *
+ * There are two kinds of frame. A FULL frame is a Snapshot of the whole game,
+ * and is sent first and whenever requestFull is called (for example, when a
+ * spectator joins late). Every Constants.DELTA_FULL_INTERVAL_TICKS ticks, a
+ * FULL frame is also sent right after that tick's DELTA frame, so a viewer who
+ * lost track of the game can pick it up again, and one who didn't can check
+ * that they have the same game. A DELTA frame starts with the number of ticks
+ * since the last frame, followed by a list of sections, each starting with its
+ * tag, in the order the changes happened, and then END:
+ *   MOVE   the piece moved: the change in column and row, and its rotation state
+ *   LOCK   the piece locked: its top row and the bitmask of its cells in each row
+ *   CLEAR  rows were cleared: how many, and which ones, from top to bottom
+ *   SCORE  the score, lines and level changed
+ *   SPAWN  a new piece spawned: its type, or -1 if it didn't fit on the board
+ *   OVER   the game is over
+ *
+ * The GameEngine does the lock and spawns the next piece in separate steps, so
+ * pieceLocked must be called after a tick that locks and before the next piece
+ * is spawned, the same as BoardRenderer.pieceLocked. encode is called once at
+ * the end of every tick.
+ */
+public class DeltaEncoder {
+	public static final int FULL = 1;
+	public static final int DELTA = 2;
+
+	public static final int END = 0;
+	public static final int MOVE = 1;
+	public static final int LOCK = 2;
+	public static final int CLEAR = 3;
+	public static final int SCORE = 4;
+	public static final int SPAWN = 5;
+	public static final int OVER = 6;
+
+	// Room for a lock, a clear and everything else in each of several ticks.
+	public static final int MAX_DELTA_SIZE = 512;
+	public static final int MAX_FRAME_SIZE = 1 + Snapshot.SIZE + MAX_DELTA_SIZE;
+
+	private ByteBuffer _sections;
+	private boolean _needsFull;
+	private long _lastTick;
+	private long _lastFullTick;
+	private PieceType _type;
+	private int _rotation;
+	private int _row;
+	private int _col;
+	private int _score;
+	private int _lines;
+	private int _level;
+	private boolean _isGameOver;
+	private boolean _hasLocked;
+
+	/**
+	 * Constructor for the DeltaEncoder. The first frame it writes is FULL.
+	 */
+	public DeltaEncoder() {
+		_sections = ByteBuffer.allocate(MAX_DELTA_SIZE);
+		_needsFull = true;
+	}
+
+	/**
+	 * Makes the next frame FULL.
+	 */
+	public void requestFull() {
+		_needsFull = true;
+	}
+
+	/**
+	 * Records the lock of the falling piece, and the rows it cleared. Any move the
+	 * piece made before it locked is recorded first. If more than one piece locks
+	 * before a frame is written, the pieces in between are recorded in full.
+	 */
+	public void pieceLocked(GameEngine engine) {
+		if (_needsFull) {
+			return;
+		}
+		this.addSpawn(engine);
+		this.addMove(engine);
+		PieceType type = engine.getPieceType();
+		int rotation = engine.getRotation();
+		int[] masks = type.getMasks(rotation);
+		int numRows = type.getMaskRows(rotation);
+		int leftCol = engine.getPieceCol() + type.getMaskLeft(rotation);
+		_sections.put((byte) LOCK);
+		_sections.put((byte) (engine.getPieceRow() + type.getMaskTop(rotation)));
+		_sections.put((byte) numRows);
+		for (int i = 0; i < numRows; i++) {
+			_sections.putInt(masks[i] << leftCol);
+		}
+		int numCleared = engine.getNumClearedRows();
+		if (numCleared > 0) {
+			_sections.put((byte) CLEAR);
+			_sections.put((byte) numCleared);
+			for (int i = 0; i < numCleared; i++) {
+				_sections.put((byte) engine.getClearedRow(i));
+			}
+		}
+		_hasLocked = true;
+	}
+
+	/**
+	 * Writes the frames for the tick that just ran into the buffer, and returns
+	 * whether any were written. The buffer must have room for MAX_FRAME_SIZE
+	 * bytes, which is a DELTA frame followed by a FULL frame.
+	 */
+	public boolean encode(GameEngine engine, ByteBuffer buffer) {
+		if (_needsFull) {
+			this.encodeFull(engine, buffer);
+			return true;
+		}
+		boolean isWritten = this.encodeDelta(engine, buffer);
+		if (engine.getTick() - _lastFullTick >= Constants.DELTA_FULL_INTERVAL_TICKS) {
+			this.encodeFull(engine, buffer);
+			return true;
+		}
+		return isWritten;
+	}
+
+	/**
+	 * This private helper method writes a DELTA frame with everything that
+	 * changed since the last frame, if anything did. Returns whether it was
+	 * written.
+	 */
+	private boolean encodeDelta(GameEngine engine, ByteBuffer buffer) {
+		if (engine.getScore() != _score || engine.getLines() != _lines || engine.getLevel() != _level) {
+			_score = engine.getScore();
+			_lines = engine.getLines();
+			_level = engine.getLevel();
+			_sections.put((byte) SCORE);
+			_sections.putInt(_score);
+			_sections.putInt(_lines);
+			_sections.put((byte) _level);
+		}
+		this.addSpawn(engine);
+		this.addMove(engine);
+		if (engine.isGameOver() && !_isGameOver) {
+			_isGameOver = true;
+			_sections.put((byte) OVER);
+		}
+		if (_sections.position() == 0) {
+			return false;
+		}
+		buffer.put((byte) DELTA);
+		DeltaEncoder.putVarint(buffer, engine.getTick() - _lastTick);
+		_sections.flip();
+		buffer.put(_sections);
+		_sections.clear();
+		buffer.put((byte) END);
+		_lastTick = engine.getTick();
+		return true;
+	}
+
+	/**
+	 * This private helper method writes a FULL frame and remembers everything in
+	 * it, so the next DELTA frame only has what changed after it.
+	 */
+	private void encodeFull(GameEngine engine, ByteBuffer buffer) {
+		buffer.put((byte) FULL);
+		Snapshot.write(engine, buffer);
+		_sections.clear();
+		_needsFull = false;
+		_hasLocked = false;
+		_lastTick = engine.getTick();
+		_lastFullTick = _lastTick;
+		_type = engine.getPieceType();
+		_rotation = engine.getRotation();
+		_row = engine.getPieceRow();
+		_col = engine.getPieceCol();
+		_score = engine.getScore();
+		_lines = engine.getLines();
+		_level = engine.getLevel();
+		_isGameOver = engine.isGameOver();
+	}
+
+	/**
+	 * This private helper method adds a SPAWN section if a piece has locked since
+	 * the last one. If the next piece didn't fit on the board, it was never
+	 * spawned and the locked piece is still where it was, but the piece was still
+	 * taken out of the PieceQueue.
+	 */
+	private void addSpawn(GameEngine engine) {
+		if (!_hasLocked) {
+			return;
+		}
+		_hasLocked = false;
+		if (engine.getPieceType() != _type || engine.getRotation() != _rotation || engine.getPieceRow() != _row
+				|| engine.getPieceCol() != _col) {
+			_type = engine.getPieceType();
+			_rotation = 0;
+			_row = _type.getSpawnRow();
+			_col = engine.getBoard().getSpawnCol(_type);
+			_sections.put((byte) SPAWN);
+			_sections.put((byte) _type.ordinal());
+		} else {
+			_sections.put((byte) SPAWN);
+			_sections.put((byte) -1);
+		}
+	}
+
+	/**
+	 * This private helper method adds a MOVE section if the piece is somewhere
+	 * other than where it was last sent.
+	 */
+	private void addMove(GameEngine engine) {
+		int rotation = engine.getRotation();
+		int row = engine.getPieceRow();
+		int col = engine.getPieceCol();
+		if (rotation == _rotation && row == _row && col == _col) {
+			return;
+		}
+		_sections.put((byte) MOVE);
+		_sections.put((byte) (col - _col));
+		_sections.put((byte) (row - _row));
+		_sections.put((byte) rotation);
+		_rotation = rotation;
+		_row = row;
+		_col = col;
+	}
+
+	/**
+	 * This private helper method writes a long as a varint: 7 bits at a time,
+	 * lowest first, with the top bit of each byte set if more bytes follow.
+	 */
+	private static void putVarint(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value = value >>> 7;
+		}
+		buffer.put((byte) value);
+	}
+
+}
@@ -0,0 +1,15 @@
+package Tetris;
+
+/**
+ * This enum models the ways a TranspositionTable can choose which of the
+ * entries in a full bucket a new entry replaces. ALWAYS_REPLACE replaces the
+ * entry picked out by the new key's own bits, which is the cheapest and
+ * always keeps the newest results. OLDEST replaces the entry stored longest
+ * ago, counted in searches rather than time, so results from earlier moves
+ * give way first. SHALLOWEST replaces the entry that looked ahead at the
+ * fewest pieces, since that took the least work to find, and breaks ties by
+ * age.
+ */
+public enum EvictionPolicy {
+	ALWAYS_REPLACE, OLDEST, SHALLOWEST;
+}
@@ -0,0 +1,108 @@
+package Tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hands frames of the game from the thread that runs the game logic
+ * to the JavaFX thread that draws it, without any locks, in the same way that
+ * an InputQueue hands key events the other way. Each frame is one change that a
+ * BoardRenderer has to be told about (the piece moved, spawned or locked, the
+ * game was reset or loaded, or only the score or game over changed), together
+ * with a copy of the GameEngine as it was right then, so that the HUD can be
+ * brought up to date as well. The copies are made once, when the ring is built,
+ * and are written over in turn, so publishing a frame never allocates, and the
+ * drawing thread can take as long as it likes over a frame without the game
+ * changing under it.
+ *
+ * If the drawing thread falls so far behind that the ring fills up, the logic
+ * thread does not wait for it. Frames are dropped instead, and the next frame
+ * that fits is made a REDRAW, which has the renderer draw everything from
+ * scratch, so nothing that was dropped is lost.
+ */
+public class FrameRing {
+	public static final int MOVED = 0;
+	public static final int SPAWNED = 1;
+	public static final int LOCKED = 2;
+	public static final int RESET = 3;
+	public static final int REDRAW = 4;
+	public static final int STATUS = 5;
+
+	private int[] _kinds;
+	private GameEngine[] _engines;
+	private int _mask;
+	private AtomicLong _head;
+	private AtomicLong _tail;
+	private boolean _hasDropped;
+
+	/**
+	 * Constructor for the FrameRing. The capacity is rounded up to a power of 2
+	 * so that positions can be wrapped with a bitmask. Takes in the mode of piece
+	 * generator of the game, so the copies can hold its PieceQueue.
+	 */
+	public FrameRing(int capacity, GeneratorMode mode) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		_kinds = new int[size];
+		_engines = new GameEngine[size];
+		for (int i = 0; i < size; i++) {
+			_engines[i] = new GameEngine(mode, 0);
+		}
+		_mask = size - 1;
+		_head = new AtomicLong();
+		_tail = new AtomicLong();
+		_hasDropped = false;
+	}
+
+	/**
+	 * Adds a frame of the given kind with a copy of the engine. Only one thread
+	 * may call this. Returns false if the ring was full and the frame was
+	 * dropped.
+	 */
+	public boolean publish(int kind, GameEngine engine) {
+		long tail = _tail.get();
+		if (tail - _head.get() > _mask) {
+			_hasDropped = true;
+			return false;
+		}
+		if (_hasDropped) {
+			kind = REDRAW;
+			_hasDropped = false;
+		}
+		int index = (int) tail & _mask;
+		_kinds[index] = kind;
+		_engines[index].copyFrom(engine);
+		_tail.lazySet(tail + 1); // Publishes the frame to the reading thread.
+		return true;
+	}
+
+	/**
+	 * Returns whether there are any frames waiting. Only the reading thread may
+	 * call this, along with the other methods below.
+	 */
+	public boolean isEmpty() {
+		return _head.get() == _tail.get();
+	}
+
+	/**
+	 * Returns the kind of the oldest frame. The ring must not be empty.
+	 */
+	public int peekKind() {
+		return _kinds[(int) _head.get() & _mask];
+	}
+
+	/**
+	 * Returns the copy of the GameEngine in the oldest frame. It must not be
+	 * changed, and must not be used after the frame is removed. The ring must not
+	 * be empty.
+	 */
+	public GameEngine peekEngine() {
+		return _engines[(int) _head.get() & _mask];
+	}
+
+	/**
+	 * Removes the oldest frame, freeing its slot for the writing thread.
+	 */
+	public void remove() {
+		_head.lazySet(_head.get() + 1);
+	}
+
+}
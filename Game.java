@@ -1,8 +1,10 @@
 package Tetris;
 
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javafx.animation.AnimationTimer;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.control.Button;
@@ -13,65 +15,103 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
-import javafx.util.Duration;
 
 /**
- * This is the Game class. It models all the Tetris Game logic. It handles the
- * animation of the pieces moving along the board via a TimeHandler. It creates
- * and controls the game board, as well as keeps track of where pieces have
- * landed. This class also is responsible for checking move validity, line
- * clearing, and moving all squares down after a line has been cleared. This
- * class controls all key input as well, which includes
- * left/right/down/drop/rotate functions, as well as pausing. For extra credit,
- * I added a Restart Button and a Score Keeping Label. You can restart the game
- * at any time with the button. The score label displays an increased score each
- * time a line is successfully cleared.
+ * This is the Game class. It connects the Tetris Game logic, which lives in the
+ * GameEngine, to the screen. It runs the GameEngine with a fixed timestep
+ * GameLoop, whose TimeHandler runs the logic ticks through a GameTicker on the
+ * loop's own thread, away from the JavaFX thread. Each change that the
+ * BoardRenderer has to be told about is published into a FrameRing along with a
+ * copy of the GameEngine, and a RenderTimer on the JavaFX thread hands the
+ * frames to the renderer once per pulse, so the two threads never share the
+ * GameEngine itself. The renderer is either a SquareRenderer or a
+ * CanvasRenderer, depending on Constants.USE_CANVAS_RENDERER. This class
+ * controls all key input as well, which includes left/right/down/drop/rotate
+ * functions, as well as pausing. Pressing B hands the game to a Bot, which
+ * plays every new piece by adding key presses to an InputQueue of its own, and
+ * pressing B again takes it back. If Constants.RECORD_REPLAYS is true, every
+ * game is recorded to a replay file by a ReplayWriter. Snapshots of the game
+ * are also kept every few seconds so that it can be rewound, and it can be
+ * saved and loaded. How long each tick and each key takes to handle, every
+ * spawn and lock, and the number of nodes in the game pane are recorded in
+ * Metrics and as GameEvents for the flight recorder. For extra credit, I added
+ * a Restart Button and a Score Keeping Label, which is now part of a Hud that
+ * also shows the lines and level. You can restart the game at any time with the
+ * button. The score label displays an increased score each time a line is
+ * successfully cleared.
  */
 public class Game {
+	private static final LatencyHistogram KEY_TIMES = Metrics.histogram("game.key.nanos");
+	private static final LatencyHistogram SCENE_NODES = Metrics.histogram("game.scene.children");
+	private static final LatencyHistogram FRAME_INTERVALS = Metrics.histogram("frame.interval.nanos");
+	private static final LatencyHistogram FRAME_TIMES = Metrics.histogram("frame.nanos");
+	private static final LatencyHistogram FRAME_TICKS = Metrics.histogram("frame.ticks");
+
+	private GameEngine _engine;
 	private Pane _tetrisPane;
-	private TetrisSquare[][] _board;
-	private Piece _piece;
-	private boolean _isEmptyRight;
-	private boolean _isEmptyLeft;
-	private boolean _isEmptyDown;
-	private boolean _isEmptyRotate;
-	private Timeline _timeline;
+	private BoardRenderer _renderer;
+	private GameLoop _loop;
+	private FrameRing _frames;
+	private RenderTimer _renderTimer;
+	private InputQueue _inputQueue;
+	private InputController _input;
+	private InputQueue _botQueue;
+	private InputController _botInput;
+	private GameTicker _ticker;
+	private ReplayWriter _replay;
+	private RewindBuffer _rewind;
+	private GameState _state;
+	private Hud _hud;
 	private Label _pauseLabel;
-	private Label _scoreLabel;
-	private Label _gameOver;
-	private int _score;
 	private HBox _hbox;
 
 	/**
 	 * Constructor for the Game class. Takes in parameter of type HBox, so that it
-	 * can add the Score Label and Restart Button to it (Extra Credit) The board, a
-	 * 2D array of TetrisSquares, is instantiated, as well as _piece, a 1D array of
-	 * TetrisSquares that models a single piece. Various private helper methods are
-	 * called to set up the timeline, set up the board, the restart button, the
-	 * score label, and most importantly, the method that generates the first random
-	 * piece at the top of the screen is called, thus beginning the game.
+	 * can add the Score Label and Restart Button to it (Extra Credit) The
+	 * GameEngine, which holds the rules and the logical board, is instantiated,
+	 * along with the renderer that draws the board. Various private helper methods
+	 * are called to set up the game loop, the restart button, the score label, and
+	 * most importantly, a NewGame is handed to the game loop's thread, which
+	 * generates the first random piece at the top of the screen, thus beginning
+	 * the game.
 	 */
 	public Game(HBox hbox) {
+		_engine = new GameEngine();
 		_tetrisPane = new Pane();
-		_piece = new Piece(_tetrisPane);
+		if (Constants.USE_CANVAS_RENDERER) {
+			_renderer = new CanvasRenderer(_tetrisPane);
+		} else {
+			_renderer = new SquareRenderer(_tetrisPane);
+		}
 		_pauseLabel = new Label("Paused");
-		_board = new TetrisSquare[Constants.NUM_ROWS][Constants.NUM_COLS];
-		_scoreLabel = new Label();
-		_gameOver = new Label();
-		KeyFrame kf = new KeyFrame(Duration.seconds(Constants.DURATION), new TimeHandler());
-		_timeline = new Timeline(kf);
-		_score = 0;
+		_state = new GameState();
+		_loop = new GameLoop(new TimeHandler());
+		_frames = new FrameRing(Constants.FRAME_RING_SIZE, _engine.getPieceQueue().getMode());
+		_renderTimer = new RenderTimer();
+		_inputQueue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_input = new InputController(_inputQueue);
+		_botQueue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_botInput = new InputController(_botQueue);
+		Bot bot = new Bot(_botQueue);
+		bot.setLookahead(Constants.BOT_LOOKAHEAD);
+		_rewind = new RewindBuffer(Constants.REWIND_SLOTS);
+		_ticker = new GameTicker(_engine, _input, _botInput, bot, _rewind, _frames);
+		_ticker.setBotOn(Constants.USE_BOT);
 		_hbox = hbox;
-		_isEmptyRight = false;
-		_isEmptyLeft = false;
-		_isEmptyDown = false;
-		_isEmptyRotate = false;
+		Metrics.register("game.input.latency.nanos", _input.getLatencyHistogram());
 		this.setUpTetrisPane();
-		this.setUpBoard();
-		this.makeRandomPiece();
-		this.setUpTimeline();
-		this.setUpScoreLabel();
+		this.setUpHud();
 		this.setUpRestartButton();
+		_renderTimer.start();
+		_loop.post(new NewGame(false));
+	}
+
+	/**
+	 * Accessor method for the histogram of nanoseconds between a key press and the
+	 * move it caused.
+	 */
+	public LatencyHistogram getInputLatency() {
+		return _input.getLatencyHistogram();
 	}
 
 	/**
@@ -84,296 +124,140 @@ public class Game {
 
 	/**
 	 * private helper method to set up the _tetrisPane. This method associates the
-	 * pane with its KeyHandler, and sets the focus on _tetrisPane.
+	 * pane with its KeyHandlers, one for key presses and one for key releases, and
+	 * sets the focus on _tetrisPane.
 	 */
 	private void setUpTetrisPane() {
-		_tetrisPane.setOnKeyPressed(new KeyHandler());
+		_tetrisPane.setOnKeyPressed(new KeyHandler(true));
+		_tetrisPane.setOnKeyReleased(new KeyHandler(false));
 		_tetrisPane.requestFocus();
 		_tetrisPane.setFocusTraversable(true);
 	}
 
 	/**
-	 * This private helper method sets up the game board, which is a 2D array of
-	 * TetrisSquares. In this setup, a border is added, filling the outer 2
-	 * rows/columns withTetrisSquares, thus creating the border. These TetrisSquares
-	 * are also added graphically.
+	 * This method spawns the next piece through the GameTicker. If the game is
+	 * over, the game loop is stopped, the recording is ended, and the Hud shows
+	 * the game over label once the RenderTimer gets the frame. This is only
+	 * called on the game loop's thread.
 	 */
-	private void setUpBoard() {
-		for (int row = 0; row < Constants.NUM_ROWS; row++) {
-			for (int col = 0; col < Constants.NUM_COLS; col++) {
-				/*
-				 * Graphical placement of the TetrisSquares according to their logical locations
-				 * in the array.
-				 */
-				int xLoc = col * Constants.SQUARE_SIZE;
-				int yLoc = row * Constants.SQUARE_SIZE;
-				if (row < Constants.BOARD_LOW_CUTOFF || row >= Constants.ENDING_ROW || col < Constants.BOARD_LOW_CUTOFF
-						|| col >= Constants.ENDING_COL) {
-					TetrisSquare borderSquare = new TetrisSquare();
-					borderSquare.getTetrisSquare().setFill(Color.DARKSLATEBLUE);
-					_board[row][col] = borderSquare; // logically adding the border squares.
-					borderSquare.getTetrisSquare().setX(xLoc);
-					borderSquare.getTetrisSquare().setY(yLoc);
-					_tetrisPane.getChildren().addAll(_board[row][col].getTetrisSquare()); 															
-				}
-			}
+	private void makeRandomPiece() {
+		if (!_ticker.spawn()) {
+			this.gameOver();
 		}
 	}
 
 	/**
-	 * This method updates the boolean that represents if the piece can legally move
-	 * down (meaning that this boolean only returns true if all 4 squares in the
-	 * piece will not intersect the border/other pieces). This is checked by
-	 * evaluating if the places that the piece would move down into are null or not
-	 * (in the _board array).
+	 * This private helper method ends the game, by stopping the game loop and
+	 * the recording.
 	 */
-	private void checkDown() {
-		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
-			int colChecker = (int) (_piece.getPieceArray()[i].getTetrisSquare().getX() / Constants.SQUARE_SIZE);
-			int rowChecker = (int) (_piece.getPieceArray()[i].getTetrisSquare().getY() / Constants.SQUARE_SIZE);
-			if (_board[rowChecker + 1][colChecker] == null) {
-				_isEmptyDown = true;
-			} else if (_board[rowChecker + 1][colChecker] != null) {
-				_isEmptyDown = false;
-				break;
-			}
-		}
+	private void gameOver() {
+		_loop.stop();
+		this.stopRecording();
 	}
 
 	/**
-	 * This method updates the boolean that represents if the piece can legally move
-	 * right. This is checked by evaluating if the places that the piece would move
-	 * down into are null or not (in the _board array).
+	 * This private helper method starts recording a new game, if replays are
+	 * being recorded. The file is named after the game's seed. If the file can't
+	 * be made, the game is played without being recorded.
 	 */
-	private void checkRight() {
-		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
-			int colChecker = (int) (_piece.getPieceArray()[i].getTetrisSquare().getX() / Constants.SQUARE_SIZE);
-			int rowChecker = (int) (_piece.getPieceArray()[i].getTetrisSquare().getY() / Constants.SQUARE_SIZE);
-			if (_board[rowChecker][colChecker + 1] == null) {
-				_isEmptyRight = true;
-			} else if (_board[rowChecker][colChecker + 1] != null) {
-				_isEmptyRight = false;
-				break;
-			}
+	private void startRecording() {
+		if (!Constants.RECORD_REPLAYS) {
+			return;
 		}
-	}
-
-	/**
-	 * This method updates the boolean that represents if the piece can legally move
-	 * left. This is checked by evaluating if the places that the piece would move
-	 * down into are null or not (in the _board array).
-	 */
-	private void checkLeft() {
-		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
-			int colChecker = (int) (_piece.getPieceArray()[i].getTetrisSquare().getX() / Constants.SQUARE_SIZE);
-			int rowChecker = (int) (_piece.getPieceArray()[i].getTetrisSquare().getY() / Constants.SQUARE_SIZE);
-			if (_board[rowChecker][colChecker - 1] == null) {
-				_isEmptyLeft = true;
-			} else if (_board[rowChecker][colChecker - 1] != null) {
-				_isEmptyLeft = false;
-				break;
-			}
+		PieceQueue pieces = _engine.getPieceQueue();
+		try {
+			Path directory = Paths.get(Constants.REPLAY_DIRECTORY);
+			Files.createDirectories(directory);
+			_replay = new ReplayWriter(directory.resolve(pieces.getSeed() + ".replay"), pieces.getMode(),
+					pieces.getSeed(), _input.getDas(), _input.getArr());
+			_input.setRecorder(_replay, ReplayWriter.KEYBOARD);
+			_botInput.setRecorder(_replay, ReplayWriter.BOT);
+		} catch (IOException e) {
+			System.err.println("Could not record replay: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * This method updates the boolean that represents if the piece can legally
-	 * rotate. This is checked by evaluating if the places that the piece would
-	 * rotate into are null or not (in the _board array). If one or more of the 4
-	 * squares in the piece array will rotate into a section of the board array that
-	 * is not null, this boolean returns false.
+	 * This private helper method ends the recording of the current game, if it is
+	 * being recorded, with its final tick, score and lines.
 	 */
-	private void checkRotate() {
-		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
-			double axisOfRotX = _piece.getPieceArray()[1].getTetrisSquare().getX();
-			double axisOfRotY = _piece.getPieceArray()[1].getTetrisSquare().getY();
-			int colChecker = (int) ((axisOfRotX - axisOfRotY + _piece.getPieceArray()[i].getTetrisSquare().getY())
-					/ Constants.SQUARE_SIZE);
-			int rowChecker = (int) ((axisOfRotY + axisOfRotX - _piece.getPieceArray()[i].getTetrisSquare().getX())
-					/ Constants.SQUARE_SIZE);
-			if (_board[rowChecker][colChecker] == null) {
-				_isEmptyRotate = true;
-			} else if (_board[rowChecker][colChecker] != null) {
-				_isEmptyRotate = false;
-				break;
-			}
+	private void stopRecording() {
+		if (_replay != null) {
+			_replay.finish(_engine.getTick(), _engine.getScore(), _engine.getLines());
+			_input.setRecorder(null, ReplayWriter.KEYBOARD);
+			_botInput.setRecorder(null, ReplayWriter.BOT);
+			_replay = null;
 		}
 	}
 
 	/**
-	 * This method generates a random piece out of seven total options. A piece is
-	 * only created if all 4 spaces that it would occupy are null in the board
-	 * array. (This is checking move validity prior to piece creation). Each piece
-	 * checks if it will intersect non null sections based on the piece's unique
-	 * configuration.
+	 * This private helper method saves the game to Constants.SAVE_FILE.
 	 */
-	private void makeRandomPiece() {
-		int rand = (int) (Math.random() * 7);
-		switch (rand) {
-		case 0:
-			if (this.checkGameOver(Constants.PIECE_ONE_COORDS) == false) {
-				_piece.makePieceOne();
-			}
-			break;
-		case 1:
-			if (this.checkGameOver(Constants.PIECE_TWO_COORDS) == false) {
-				_piece.makePieceTwo();
-			}
-			break;
-		case 2:
-			if (this.checkGameOver(Constants.PIECE_THREE_COORDS) == false) {
-				_piece.makePieceThree();
-			}
-			break;
-		case 3:
-			if (this.checkGameOver(Constants.PIECE_FOUR_COORDS) == false) {
-				_piece.makePieceFour();
-			}
-			break;
-		case 4:
-			if (this.checkGameOver(Constants.PIECE_FIVE_COORDS) == false) {
-				_piece.makePieceFive();
-			}
-			break;
-		case 5:
-			if (this.checkGameOver(Constants.PIECE_SIX_COORDS) == false) {
-				_piece.makePieceSeven();
-			}
-			break;
-		case 6:
-			if (this.checkGameOver(Constants.PIECE_SEVEN_COORDS) == false) {
-				_piece.makePieceOne();
-			}
-			break;
-		default:
-			if (this.checkGameOver(Constants.PIECE_ONE_COORDS) == false) {
-				_piece.makePieceOne();
-			}
+	private void saveGame() {
+		try {
+			Snapshot.save(_engine, Paths.get(Constants.SAVE_FILE));
+		} catch (IOException e) {
+			System.err.println("Could not save game: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * This method checks if a piece has landed, and if it has, it adds it to the
-	 * _board array, and generates a new random piece at the top of the screen that
-	 * is now the new target of manipulation. This method decides if a piece has
-	 * landed or not by checking the boolean that controls move validity for
-	 * downward movement. If the boolean returns false, this means that all 4
-	 * squares in the piece cannot move down. Returning false means the piece is
-	 * landed and can no loner be manipulated. If the newly generated random piece
-	 * cannot move down at all, a game over label is displayed and the timeline is
-	 * stopped.
+	 * This private helper method loads the game saved in Constants.SAVE_FILE, if
+	 * there is one.
 	 */
-	private void checkLanded() {
-		if (_isEmptyDown == false) { // If any of the 4 squares in a piece cannot move down, the piece is landed.
-			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
-				int col = (int) (_piece.getPieceArray()[i].getTetrisSquare().getX() / Constants.SQUARE_SIZE);
-				int row = (int) (_piece.getPieceArray()[i].getTetrisSquare().getY() / Constants.SQUARE_SIZE);
-				_board[row][col] = _piece.getPieceArray()[i]; // Making the piece part of the _board array.
-			}
-			this.makeRandomPiece();
-			this.checkDown();
-			if (_isEmptyDown == false) { // if the newly generated piece cannot move down at all, game is over.
-				_timeline.stop();
-				this.makeEndLabel();
+	private void loadGame() {
+		try {
+			Path path = Paths.get(Constants.SAVE_FILE);
+			if (Files.exists(path) && Snapshot.load(_engine, path)) {
+				this.showLoadedGame();
 			}
-			this.clearLines(); 
+		} catch (IOException e) {
+			System.err.println("Could not load game: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * This method clears lines that are full, and then moves all above squares
-	 * down. Extra credit: the score is also incremented by 10 each time there is a
-	 * full line.
+	 * This private helper method goes back to the last snapshot in the
+	 * RewindBuffer, if there is one.
 	 */
-	private void clearLines() {
-		boolean isFull = false;
-		for (int row = Constants.BOARD_LOW_CUTOFF; row < Constants.ENDING_ROW; row++) {
-			for (int col = 0; col < Constants.ENDING_COL; col++) {
-				if (_board[row][col] == null) {
-					isFull = false; // If at least one square in the row is null, row is deemed not full
-					break;
-				}
-				if (_board[row][col] != null) {
-					isFull = true;
-				}
-			}
-			/*
-			 * When a row is full, it is cleared both graphically and logically, and the
-			 * score is incremented by 10.
-			 */
-			if (isFull == true) {
-				_score = _score + 10;
-				for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
-					_tetrisPane.getChildren().remove(_board[row][col].getTetrisSquare());
-					_board[row][col] = null;
-				}
-				/*
-				 * All squares above the cleared row are moved down both graphically and
-				 * logically.
-				 */
-				for (int r = row; r > Constants.BOARD_LOW_CUTOFF; r--) {
-					for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
-						if (_board[r - 1][col] != null) {
-							_board[r - 1][col].getTetrisSquare()
-									.setY(_board[r - 1][col].getTetrisSquare().getY() + Constants.SQUARE_SIZE);
-						}
-						_board[r][col] = _board[r - 1][col];
-					}
-				}
-			}
+	private void rewind() {
+		if (_rewind.rewind(_engine)) {
+			this.showLoadedGame();
 		}
 	}
 
 	/**
-	 * This method is called when the spacebar is pressed. It moves the piece down a
-	 * row until it can no longer move down anymore, meaning that at least one of
-	 * the 4 squares would have intersected another if it were to keep moving.
+	 * This private helper method is called after the GameEngine has been loaded
+	 * from a snapshot. The loaded game is no longer the game that was being
+	 * recorded, so the recording is stopped. Any held keys are forgotten, a
+	 * REDRAW frame is published so that the board is drawn again from scratch and
+	 * the HUD is brought up to date, and if the game had ended but the loaded one
+	 * hasn't, the game loop is started again.
 	 */
-	private void drop() {
-		this.checkDown();
-		while (_isEmptyDown == true) {
-			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
-				_piece.getPieceArray()[i].getTetrisSquare()
-						.setY(_piece.getPieceArray()[i].getTetrisSquare().getY() + Constants.SQUARE_SIZE);
-				this.checkDown();
-			}
+	private void showLoadedGame() {
+		this.stopRecording();
+		_input.reset();
+		_botInput.reset();
+		_frames.publish(FrameRing.REDRAW, _engine);
+		if (!_loop.isRunning() && !_loop.isPaused() && !_engine.isGameOver()) {
+			_loop.start();
 		}
 	}
 
 	/**
-	 * This method checks if the game is over or not. This method is used to foresee
-	 * if the piece that is about to be newly generated is going to intersect any
-	 * part of the board array. This method does so by taking in the Constant that
-	 * is a 2D array of the piece's starting coordinates. This method allows you to
-	 * check this for each piece's unique starting positions, before it is
-	 * generated.
+	 * This private helper method records a pause or an unpause in the replay, if
+	 * the game is being recorded.
 	 */
-	private boolean checkGameOver(int[][] coord) {
-		boolean isGameOver = false;
-		if (_board[coord[0][1] / Constants.SQUARE_SIZE][coord[0][0] / Constants.SQUARE_SIZE] == null
-				&& _board[coord[1][1] / Constants.SQUARE_SIZE][coord[1][0] / Constants.SQUARE_SIZE] == null
-				&& _board[coord[2][1] / Constants.SQUARE_SIZE][coord[2][0] / Constants.SQUARE_SIZE] == null
-				&& _board[coord[3][1] / Constants.SQUARE_SIZE][coord[3][0] / Constants.SQUARE_SIZE] == null) {
-			isGameOver = false;
-		} else {
-			isGameOver = true;
+	private void recordPause(boolean isPaused) {
+		if (_replay != null) {
+			_replay.record(_engine.getTick(), ReplayWriter.KEYBOARD, Action.PAUSE, isPaused);
 		}
-		return isGameOver;
-	}
-
-	/**
-	 * This method creates the game over label. It is called when the newly
-	 * generated piece cannot move down any longer, or the piece that is about to be
-	 * generated would intersect part of the -board array.
-	 */
-	private void makeEndLabel() {
-		_gameOver.setText("Game Over!");
-		this.setUpLabels(_gameOver, Constants.GAME_OVER_X);
 	}
 
 	/**
 	 * This method makes the "Paused" label. The font and size are set. This method
-	 * is called when "P" is pressed and the timeline is Running.
+	 * is called by the RenderTimer when it sees that the game loop has been
+	 * paused.
 	 */
 	private void makePauseLabel() {
 		_pauseLabel.setFont(Font.font("Radio Stars", Constants.LABEL_SIZE));
@@ -395,23 +279,14 @@ public class Game {
 	}
 
 	/**
-	 * Extra Credit: This method sets up the score label and adds it to the bottom
-	 * section of the root pane. The Text for this label is updated in the
-	 * timehandler, so that the score increases each time a line is cleared.
-	 */
-	private void setUpScoreLabel() {
-		_hbox.getChildren().addAll(_scoreLabel);
-		_scoreLabel.setFont(Font.font("Radio Stars", Constants.SCORE_SIZE));
-		_scoreLabel.setTextFill(Color.WHITE);
-	}
-
-	/**
-	 * This private helper method sets up the timeline. The cycle count is set and
-	 * it is instructed to play.
+	 * Extra Credit: This method sets up the Hud, which shows the score (along with
+	 * the lines and level) in the bottom section of the root pane, and the game
+	 * over label. The Hud listens to the GameState, which the RenderTimer updates
+	 * from every frame it gets, so the labels only change when their values do.
 	 */
-	private void setUpTimeline() {
-		_timeline.setCycleCount(Animation.INDEFINITE);
-		_timeline.play();
+	private void setUpHud() {
+		_hud = new Hud(_hbox, _tetrisPane);
+		_state.addListener(_hud);
 	}
 
 	/**
@@ -437,118 +312,319 @@ public class Game {
 	private class RestartButtonHandler implements EventHandler<ActionEvent> {
 		/**
 		 * This handle method is automatically called when the restartButton is clicked.
-		 * It first stops the timeline, and then removes pieces graphically and
-		 * logically (by removing all items in the board array that are not the border),
-		 * and makes a new random piece appear at the top. The pause and game over
-		 * labels are also removed, if they are present at the time of clicking this
-		 * button.
+		 * It hands a NewGame to the game loop's thread, which does the restarting.
 		 */
 		@Override
 		public void handle(ActionEvent event) {
-			_timeline.stop();
-			for (int row = 0; row < Constants.NUM_ROWS; row++) {
-				for (int col = 0; col < Constants.NUM_COLS; col++) {
-					if (row >= Constants.BOARD_LOW_CUTOFF && row < Constants.ENDING_ROW
-							&& col >= Constants.BOARD_LOW_CUTOFF && col < Constants.ENDING_COL
-							&& _board[row][col] != null) {
-						_tetrisPane.getChildren().remove(_board[row][col].getTetrisSquare());
-						_board[row][col] = null;
-					}
-				}
-			}
-			for (int i = 0; i < 4; i++) {
-				_tetrisPane.getChildren().remove(_piece.getPieceArray()[i].getTetrisSquare());
+			_loop.post(new NewGame(true));
+		}
+	}
+
+	/**
+	 * This private inner class starts a new game. It is run on the game loop's
+	 * thread, once when the Game is made and again each time the restart button is
+	 * pressed. When restarting, it first stops the game loop, and then removes
+	 * pieces logically (by resetting the GameEngine and forgetting any held keys
+	 * and snapshots). Either way, a RESET frame is published so that the renderer
+	 * removes them graphically, a new random piece appears at the top, and the
+	 * game loop is started. The pause label is also removed, if it is present at
+	 * the time, and the GameState update takes away the game over label, once the
+	 * RenderTimer gets the frames.
+	 */
+	private class NewGame implements Runnable {
+		private boolean _isRestart;
+
+		/**
+		 * Constructor for the NewGame. Takes in whether a game has already been
+		 * played that has to be thrown away first.
+		 */
+		public NewGame(boolean isRestart) {
+			_isRestart = isRestart;
+		}
+
+		@Override
+		public void run() {
+			if (_isRestart) {
+				_loop.stop();
+				Game.this.stopRecording();
+				_input.reset();
+				_botInput.reset();
+				_engine.reset(System.nanoTime()); // The score is also reset, and a new seed is used.
+				_rewind.clear();
 			}
-			_tetrisPane.getChildren().remove(_gameOver);
-			_tetrisPane.getChildren().remove(_pauseLabel);
+			_frames.publish(FrameRing.RESET, _engine);
+			Game.this.startRecording();
 			Game.this.makeRandomPiece();
-			_score = 0; // The score is also reset.
-			_timeline.play();
+			if (!_engine.isGameOver()) {
+				_loop.start();
+			}
 		}
 	}
 
 	/**
-	 * This private inner class controls the animation. The score is continuously
-	 * updated. The Timeline continuously checks if a piece has landed or not. It
-	 * also is responsible for the current piece moving down the board at a constant
-	 * rate.
+	 * This private inner class controls the animation. The GameLoop calls tick a
+	 * fixed number of times per second, on its own thread, and each tick is run
+	 * by the GameTicker, which applies the key events from the keyboard and from
+	 * the Bot, lets the GameEngine apply gravity and lock the piece, publishes
+	 * the frames, and spawns a new random piece after each lock. When the game
+	 * ends, the game loop is stopped.
 	 */
-	private class TimeHandler implements EventHandler<ActionEvent> {
+	private class TimeHandler implements GameLoop.Listener {
 		@Override
-		public void handle(ActionEvent event) {
-			String score = Integer.toString(_score);
-			_scoreLabel.setText("Score: " + score);
-			Game.this.checkDown();
-			Game.this.checkLanded();
-			if (_isEmptyDown == true) {
-				_piece.moveDown();
+		public void tick() {
+			if (!_ticker.tick()) {
+				Game.this.gameOver();
 			}
 		}
+
+		/**
+		 * Called when a tick or a key command threw an exception. The game loop has
+		 * already been stopped, so the error is printed, the recording is ended,
+		 * and a STATUS frame is published so that the screen shows the game as it
+		 * was left. The game can still be restarted with the button.
+		 */
+		@Override
+		public void failed(RuntimeException e) {
+			System.err.println("The game stopped because of an error:");
+			e.printStackTrace();
+			Game.this.stopRecording();
+			_frames.publish(FrameRing.STATUS, _engine);
+		}
 	}
 
 	/**
-	 * This private inner class controls what happens when various keys are pressed.
-	 * Up rotates the piece counter clockwise, Down moves it down a row, Right moves
-	 * it one unit to the right, and Left one unit to the left. Down moves it one
-	 * row down. P pauses the game and displays a paused label if the timeline is
-	 * running, and it resumes the game if the timeline is paused. The keys only
-	 * execute valid moves. Validity is checked through booleans. Also, the keys
-	 * only execute moves if the timeline is running, so that when the game is
-	 * paused or over, the piece can't be controlled anymore.
+	 * This private inner class draws the game. JavaFX calls handle once per pulse,
+	 * on the JavaFX thread. Every frame that the game loop's thread has published
+	 * since the last pulse is handed to the renderer in order, with the copy of
+	 * the GameEngine that came with it, and is used to update the GameState,
+	 * which changes the HUD only if the score, lines, level or game over changed.
+	 * The pause label is shown while the game loop is paused. The time between
+	 * pulses, how long each one took, the number of ticks it drew and the number
+	 * of nodes in the game pane are recorded in Metrics, and each pulse is a
+	 * FrameEvent for the flight recorder, so uneven frame pacing can be seen after
+	 * the fact.
+	 */
+	private class RenderTimer extends AnimationTimer {
+		private long _lastTime;
+		private long _lastTick;
+		private boolean _isPauseShown;
+		private int _sceneNodes;
+
+		@Override
+		public void handle(long now) {
+			long start = System.nanoTime();
+			GameEvents.FrameEvent event = null;
+			if (GameEvents.isRecording()) {
+				event = new GameEvents.FrameEvent();
+				event.begin();
+			}
+			long interval = 0;
+			if (_lastTime != 0) {
+				interval = now - _lastTime;
+				FRAME_INTERVALS.record(interval);
+			}
+			_lastTime = now;
+			int ticks = 0;
+			while (!_frames.isEmpty()) {
+				GameEngine engine = _frames.peekEngine();
+				this.draw(_frames.peekKind(), engine);
+				_state.update(engine);
+				ticks = ticks + (int) Math.max(0, engine.getTick() - _lastTick);
+				_lastTick = engine.getTick();
+				_frames.remove();
+			}
+			this.showPaused(_loop.isPaused());
+			this.recordSceneNodes();
+			if (event != null) {
+				event.interval = interval;
+				event.ticks = ticks;
+				event.commit();
+			}
+			FRAME_TICKS.record(ticks);
+			FRAME_TIMES.record(System.nanoTime() - start);
+		}
+
+		/**
+		 * This private helper method tells the renderer about one frame.
+		 */
+		private void draw(int kind, GameEngine engine) {
+			switch (kind) {
+			case FrameRing.MOVED:
+				_renderer.pieceMoved(engine);
+				break;
+			case FrameRing.SPAWNED:
+				_renderer.pieceSpawned(engine);
+				break;
+			case FrameRing.LOCKED:
+				_renderer.pieceLocked(engine);
+				break;
+			case FrameRing.RESET:
+				_renderer.reset(engine);
+				break;
+			case FrameRing.REDRAW:
+				_renderer.redraw(engine);
+				break;
+			default:
+				break; // Only the GameState has to be updated.
+			}
+		}
+
+		/**
+		 * This private helper method adds or removes the pause label when the game
+		 * loop has been paused or resumed.
+		 */
+		private void showPaused(boolean isPaused) {
+			if (isPaused == _isPauseShown) {
+				return;
+			}
+			_isPauseShown = isPaused;
+			if (isPaused) {
+				Game.this.makePauseLabel();
+			} else {
+				_tetrisPane.getChildren().remove(_pauseLabel);
+			}
+		}
+
+		/**
+		 * This private helper method records the number of nodes in the game pane.
+		 */
+		private void recordSceneNodes() {
+			int children = _tetrisPane.getChildren().size();
+			SCENE_NODES.record(children);
+			if (children != _sceneNodes) {
+				_sceneNodes = children;
+				GameEvents.SceneEvent event = new GameEvents.SceneEvent();
+				event.children = children;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * This private inner class controls what happens when various keys are pressed
+	 * and released. Up rotates the piece counter clockwise, Down moves it down a
+	 * row, Right moves it one unit to the right, and Left one unit to the left.
+	 * Space drops it. These keys are not applied here: each one is turned into an
+	 * Action and added to the InputQueue with the time it happened, and the
+	 * InputController applies it at the start of the next tick. Key presses are
+	 * only queued if the game loop is running, so that when the game is paused or
+	 * over, the piece can't be controlled anymore, but releases are always queued
+	 * so that a key is never stuck down. The other keys are handed to the game
+	 * loop's thread as a KeyCommand. P pauses the game if the game loop is
+	 * running, and it resumes the game if the game loop is paused. B turns the Bot
+	 * on or off. S saves the game to a file and L loads it back, and R rewinds the
+	 * game a few seconds, a little further with each press.
 	 */
 	private class KeyHandler implements EventHandler<KeyEvent> {
+		private boolean _isPressed;
+
+		/**
+		 * Constructor for the KeyHandler. Takes in whether it handles key presses
+		 * or key releases.
+		 */
+		public KeyHandler(boolean isPressed) {
+			_isPressed = isPressed;
+		}
+
 		@Override
 		public void handle(KeyEvent e) {
+			long start = System.nanoTime();
+			GameEvents.KeyEvent event = null;
+			if (GameEvents.isRecording()) {
+				event = new GameEvents.KeyEvent();
+				event.begin();
+			}
 			KeyCode keyPressed = e.getCode();
 			switch (keyPressed) {
 			case RIGHT:
-				if (_timeline.getStatus() == Animation.Status.RUNNING) {
-					Game.this.checkRight();
-					if (_isEmptyRight == true && _isEmptyDown == true) {
-						_piece.moveRight();
-					}
-				}
+				this.queue(Action.RIGHT);
 				break;
 			case LEFT:
-				if (_timeline.getStatus() == Animation.Status.RUNNING) {
-					Game.this.checkLeft();
-					if (_isEmptyLeft == true && _isEmptyDown == true) {
-						_piece.moveLeft();
-					}
-				}
+				this.queue(Action.LEFT);
 				break;
 			case DOWN:
-				if (_timeline.getStatus() == Animation.Status.RUNNING) {
-					Game.this.checkDown();
-					if (_isEmptyDown == true) {
-						_piece.moveDown();
-					}
-				}
+				this.queue(Action.DOWN);
 				break;
 			case UP:
-				if (_timeline.getStatus() == Animation.Status.RUNNING && _piece.canRotate() == true) {
-					Game.this.checkRotate();
-					if (_isEmptyRotate == true) {
-						_piece.rotate();
-					}
-				}
+				this.queue(Action.ROTATE);
 				break;
 			case SPACE:
-				if (_timeline.getStatus() == Animation.Status.RUNNING) {
-					Game.this.drop();
-				}
+				this.queue(Action.DROP);
 				break;
 			case P:
-				if (_timeline.getStatus() == Animation.Status.RUNNING) {
-					_timeline.pause();
-					Game.this.makePauseLabel();
-				} else if (_timeline.getStatus() == Animation.Status.PAUSED) {
-					_timeline.play();
-					_tetrisPane.getChildren().remove(_pauseLabel);
+			case B:
+			case S:
+			case L:
+			case R:
+				if (_isPressed) {
+					_loop.post(new KeyCommand(keyPressed));
 				}
 				break;
+			default:
+				break;
 			}
 			e.consume();
+			if (event != null) {
+				event.key = keyPressed.name();
+				event.pressed = _isPressed;
+				event.commit();
+			}
+			KEY_TIMES.record(System.nanoTime() - start);
+		}
+
+		/**
+		 * This private helper method adds an Action to the InputQueue, stamped with
+		 * the current time.
+		 */
+		private void queue(Action action) {
+			if (!_isPressed || _loop.isRunning()) {
+				_inputQueue.offer(action, _isPressed, System.nanoTime());
+			}
+		}
+	}
+
+	/**
+	 * This private inner class is a key press that changes more than the falling
+	 * piece, handed from the KeyHandler to the game loop's thread so that it
+	 * happens between two ticks.
+	 */
+	private class KeyCommand implements Runnable {
+		private KeyCode _key;
+
+		/**
+		 * Constructor for the KeyCommand. Takes in the key that was pressed.
+		 */
+		public KeyCommand(KeyCode key) {
+			_key = key;
+		}
+
+		@Override
+		public void run() {
+			switch (_key) {
+			case P:
+				if (_loop.isRunning()) {
+					_loop.pause();
+					Game.this.recordPause(true);
+				} else if (_loop.isPaused()) {
+					_loop.resume();
+					Game.this.recordPause(false);
+				}
+				break;
+			case B:
+				_ticker.setBotOn(!_ticker.isBotOn()); // The Bot starts or stops with the next piece.
+				break;
+			case S:
+				Game.this.saveGame();
+				break;
+			case L:
+				Game.this.loadGame();
+				break;
+			case R:
+				Game.this.rewind();
+				break;
+			default:
+				break;
+			}
 		}
 	}
 
@@ -0,0 +1,629 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class models the rules of Tetris without any JavaFX. It owns the Board
+ * and the piece that is currently falling. The falling piece is stored as its
+ * PieceType, its rotation state, and the row and column of its center of
+ * rotation (the second square of the piece). The offsets of its squares and
+ * its row bitmasks come from the PieceType's precomputed tables, so every
+ * collision check is a few shifts and ANDs against the board rows, and a
+ * rotation is a table lookup. Game calls into this class to decide whether a
+ * move is legal, and then only updates the graphics, so the rules can also be
+ * run without a display at all.
+ *
+ * Time in the GameEngine is counted in ticks, and tick is called a fixed number
+ * of times per second. Gravity is kept as a fraction of a row per tick (in
+ * units of 1/Constants.GRAVITY_ONE of a row) that grows with the level, so at
+ * low levels the piece falls one row every few ticks, and at high levels it
+ * can fall several rows in one tick. Once the piece is resting on something,
+ * it locks after Constants.LOCK_DELAY_TICKS ticks, or on the next tick after a
+ * hard drop.
+ *
+ * The row where the piece would land if it were dropped is worked out from the
+ * board's column surfaces, in one step per column the piece covers, and is
+ * kept until the piece moves sideways or rotates, or the board changes. It is
+ * used both for hard drops and for drawing the ghost piece.
+ *
+ * Each GameEngine has its own PieceQueue, so every game has its own seeded
+ * sequence of pieces and the upcoming pieces can be looked at before they are
+ * spawned. The board is the size of the one in the window unless another size
+ * is given, and new pieces spawn in the middle of its top row, wherever that
+ * is.
+ */
+public class GameEngine {
+	public static final int TICK_MOVED = 1;
+	public static final int TICK_LOCKED = 2;
+
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private Board _board;
+	private PieceQueue _pieces;
+	private PieceType _type;
+	private int _rotation;
+	private int _pieceRow;
+	private int _pieceCol;
+	private int _landingRow;
+	private boolean _useWallKicks;
+	private int[] _clearedRows;
+	private int _numClearedRows;
+	private int _gravity;
+	private int _lockTicks;
+	private boolean _lockNow;
+	private long _tick;
+	private int _lines;
+	private int _level;
+	private boolean _isGameOver;
+	private int _score;
+
+	/**
+	 * Constructor for the GameEngine. An empty board is created, and pieces come
+	 * from the generator in Constants, seeded from the clock.
+	 */
+	public GameEngine() {
+		this(Constants.GENERATOR_MODE, System.nanoTime());
+	}
+
+	/**
+	 * Constructor for the GameEngine. Takes in the mode of piece generator and the
+	 * seed for the first game. An empty board is created. Wall kicks are used if
+	 * Constants says so.
+	 */
+	public GameEngine(GeneratorMode mode, long seed) {
+		this(mode, seed, Constants.BOARD_WIDTH, Constants.BOARD_HEIGHT);
+	}
+
+	/**
+	 * Constructor for the GameEngine. Takes in the mode of piece generator, the
+	 * seed for the first game, and the number of columns and rows of the board
+	 * inside its border.
+	 */
+	public GameEngine(GeneratorMode mode, long seed, int width, int height) {
+		_board = new Board(width, height);
+		_pieces = new PieceQueue(mode, Constants.PREVIEW_SIZE, seed);
+		_type = PieceType.ONE;
+		_rotation = 0;
+		_useWallKicks = Constants.USE_WALL_KICKS;
+		_clearedRows = new int[Constants.NUM_SQUARES];
+		this.reset();
+	}
+
+	/**
+	 * Makes this engine an exact copy of another engine, including its board, its
+	 * falling piece and the pieces still to come. The other engine must use the
+	 * same GeneratorMode and the same size of board. This is used to save and
+	 * restore keyframes of a replay.
+	 */
+	public void copyFrom(GameEngine other) {
+		_board.copyFrom(other._board);
+		_pieces.copyFrom(other._pieces);
+		_type = other._type;
+		_rotation = other._rotation;
+		_pieceRow = other._pieceRow;
+		_pieceCol = other._pieceCol;
+		_landingRow = other._landingRow;
+		_useWallKicks = other._useWallKicks;
+		System.arraycopy(other._clearedRows, 0, _clearedRows, 0, _clearedRows.length);
+		_numClearedRows = other._numClearedRows;
+		_gravity = other._gravity;
+		_lockTicks = other._lockTicks;
+		_lockNow = other._lockNow;
+		_tick = other._tick;
+		_lines = other._lines;
+		_level = other._level;
+		_isGameOver = other._isGameOver;
+		_score = other._score;
+	}
+
+	/**
+	 * Returns how many bytes save writes for a game on a board with the given
+	 * number of columns and rows inside the border.
+	 */
+	public static int getStateBytes(int width, int height) {
+		return Board.getStateBytes(width, height) + PieceQueue.getStateBytes(Constants.PREVIEW_SIZE) + 2 + 4 * 2 + 4 * 2 + 1
+				+ 8 + 4 * 3 + 2;
+	}
+
+	/**
+	 * Writes the whole state of the game at the buffer's position: the board, the
+	 * queue of pieces with its generator, the falling piece, gravity and lock
+	 * delay, the tick count, and the score, lines and level. Nothing is allocated,
+	 * so this can be called every tick. Exactly getStateBytes bytes are written.
+	 */
+	public void save(ByteBuffer buffer) {
+		_board.save(buffer);
+		_pieces.save(buffer);
+		buffer.put((byte) _type.ordinal());
+		buffer.put((byte) _rotation);
+		buffer.putInt(_pieceRow);
+		buffer.putInt(_pieceCol);
+		buffer.putInt(_gravity);
+		buffer.putInt(_lockTicks);
+		buffer.put((byte) (_lockNow ? 1 : 0));
+		buffer.putLong(_tick);
+		buffer.putInt(_lines);
+		buffer.putInt(_level);
+		buffer.putInt(_score);
+		buffer.put((byte) (_isGameOver ? 1 : 0));
+		buffer.put((byte) (_useWallKicks ? 1 : 0));
+	}
+
+	/**
+	 * Returns whether the bytes starting at the given index of the buffer are a
+	 * game that load can read, from a game with the same GeneratorMode and size
+	 * of board as this one. Every part of it is checked: the board, the queue of
+	 * pieces, the type and rotation state of the falling piece, whose squares
+	 * must all be inside the border and (unless the game is over, when the last
+	 * piece has already been locked where it is) on empty cells, and the
+	 * counters, which can't be negative. The buffer is not changed.
+	 */
+	public boolean isValid(ByteBuffer buffer, int start) {
+		int width = _board.getWidth();
+		int height = _board.getHeight();
+		if (start < 0 || buffer.limit() - start < GameEngine.getStateBytes(width, height)) {
+			return false;
+		}
+		int boardStart = start;
+		int index = start + Board.getStateBytes(width, height);
+		if (!_board.isValid(buffer, boardStart) || !_pieces.isValid(buffer, index)) {
+			return false;
+		}
+		index = index + _pieces.getStateBytes();
+		int type = buffer.get(index);
+		int rotation = buffer.get(index + 1);
+		int pieceRow = buffer.getInt(index + 2);
+		int pieceCol = buffer.getInt(index + 6);
+		int gravity = buffer.getInt(index + 10);
+		int lockTicks = buffer.getInt(index + 14);
+		int lockNow = buffer.get(index + 18);
+		long tick = buffer.getLong(index + 19);
+		int lines = buffer.getInt(index + 27);
+		int level = buffer.getInt(index + 31);
+		int score = buffer.getInt(index + 35);
+		int isGameOver = buffer.get(index + 39);
+		int useWallKicks = buffer.get(index + 40);
+		if (type < 0 || type >= TYPES.length || rotation < 0 || rotation >= PieceType.NUM_ROTATIONS
+				|| gravity < 0 || gravity >= Constants.GRAVITY_ONE || lockTicks < 0 || tick < 0 || lines < 0
+				|| level < 0 || level >= Constants.GRAVITY.length || score < 0 || !GameEngine.isFlag(lockNow)
+				|| !GameEngine.isFlag(isGameOver) || !GameEngine.isFlag(useWallKicks)) {
+			return false;
+		}
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			int row = pieceRow + TYPES[type].getRowOffset(rotation, i);
+			int col = pieceCol + TYPES[type].getColOffset(rotation, i);
+			if (row < Constants.BOARD_LOW_CUTOFF || row >= _board.getEndingRow()
+					|| col < Constants.BOARD_LOW_CUTOFF || col >= _board.getEndingCol()) {
+				return false;
+			}
+			if (isGameOver == 0 && buffer.get(boardStart + row * _board.getNumCols() + col) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * This private helper method returns whether a saved byte is a boolean: 0
+	 * for false or 1 for true.
+	 */
+	private static boolean isFlag(int value) {
+		return value == 0 || value == 1;
+	}
+
+	/**
+	 * Reads a game written by save from the buffer's position. The saved game
+	 * must have used the same GeneratorMode and size of board as this one.
+	 * Returns false, and leaves both the game and the buffer alone, if the bytes
+	 * there are not a game it can load (see isValid).
+	 */
+	public boolean load(ByteBuffer buffer) {
+		if (!this.isValid(buffer, buffer.position())) {
+			return false;
+		}
+		_board.load(buffer);
+		_pieces.load(buffer);
+		_type = TYPES[buffer.get()];
+		_rotation = buffer.get();
+		_pieceRow = buffer.getInt();
+		_pieceCol = buffer.getInt();
+		_gravity = buffer.getInt();
+		_lockTicks = buffer.getInt();
+		_lockNow = buffer.get() != 0;
+		_tick = buffer.getLong();
+		_lines = buffer.getInt();
+		_level = buffer.getInt();
+		_score = buffer.getInt();
+		_isGameOver = buffer.get() != 0;
+		_useWallKicks = buffer.get() != 0;
+		_landingRow = -1;
+		_numClearedRows = 0;
+		return true;
+	}
+
+	/**
+	 * Empties the board and resets the score, lines, level and tick count so that
+	 * a new game can begin, and starts the sequence of pieces over from the given
+	 * seed.
+	 */
+	public void reset(long seed) {
+		_pieces.reset(seed);
+		this.reset();
+	}
+
+	/**
+	 * Empties the board and resets the score, lines, level and tick count so that
+	 * a new game can begin. The sequence of pieces carries on from where it was.
+	 */
+	public void reset() {
+		_board.reset();
+		_landingRow = -1;
+		_numClearedRows = 0;
+		_gravity = 0;
+		_lockTicks = 0;
+		_lockNow = false;
+		_tick = 0;
+		_lines = 0;
+		_level = 0;
+		_isGameOver = false;
+		_score = 0;
+	}
+
+	/**
+	 * Places a new piece of the given type at the top of the board, in its
+	 * starting rotation state. If any of the cells it would occupy is already
+	 * filled, the piece is not placed and false is returned. Either that, or a new
+	 * piece that cannot move down at all, means the game is over.
+	 */
+	public boolean spawnPiece(PieceType type) {
+		if (this.collides(type, 0, type.getSpawnRow(), _board.getSpawnCol(type))) {
+			_isGameOver = true;
+			return false;
+		}
+		_type = type;
+		_rotation = 0;
+		_pieceRow = type.getSpawnRow();
+		_pieceCol = _board.getSpawnCol(type);
+		_landingRow = -1;
+		_gravity = 0;
+		_lockTicks = 0;
+		_lockNow = false;
+		if (!this.canMove(0, 1)) {
+			_isGameOver = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Takes the next piece out of the PieceQueue and spawns it, the same way as
+	 * spawnPiece.
+	 */
+	public boolean spawnNextPiece() {
+		return this.spawnPiece(_pieces.next());
+	}
+
+	/**
+	 * Runs one tick of the game. Gravity for the current level is added to the
+	 * piece, and it falls one row for every whole row of gravity it has built up,
+	 * until it lands on something. While it is resting on something, the lock
+	 * delay counts down, and when it runs out (or right away after a hard drop)
+	 * the piece is locked and any full lines are cleared. Returns TICK_MOVED if
+	 * the piece fell, and TICK_LOCKED if it locked, combined with a bitwise or.
+	 * After a lock, a new piece must be spawned before the next tick.
+	 */
+	public int tick() {
+		int result = 0;
+		_tick++;
+		if (_isGameOver) {
+			return result;
+		}
+		if (!_lockNow && this.canMove(0, 1)) {
+			_gravity = _gravity + Constants.GRAVITY[_level];
+			while (_gravity >= Constants.GRAVITY_ONE) {
+				_gravity = _gravity - Constants.GRAVITY_ONE;
+				if (!this.tryMove(0, 1)) {
+					_gravity = 0;
+					break;
+				}
+				result = result | TICK_MOVED;
+			}
+		}
+		if (!this.canMove(0, 1)) {
+			_lockTicks++;
+			if (_lockNow || _lockTicks >= Constants.LOCK_DELAY_TICKS) {
+				this.lockPiece();
+				result = result | TICK_LOCKED;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * This private helper method returns whether a piece of the given type and
+	 * rotation state, centered at the given row and column, would intersect the
+	 * border or a landed piece.
+	 */
+	private boolean collides(PieceType type, int rotation, int row, int col) {
+		return _board.collides(type.getMasks(rotation), type.getMaskRows(rotation), row + type.getMaskTop(rotation),
+				col + type.getMaskLeft(rotation));
+	}
+
+	/**
+	 * Returns whether the falling piece could move by the given number of columns
+	 * and rows without intersecting the border or a landed piece.
+	 */
+	public boolean canMove(int colChange, int rowChange) {
+		return !this.collides(_type, _rotation, _pieceRow + rowChange, _pieceCol + colChange);
+	}
+
+	/**
+	 * Moves the falling piece by the given number of columns and rows if that move
+	 * is legal. Returns whether the piece moved. Moving straight down does not
+	 * change where the piece would land, but moving sideways does.
+	 */
+	public boolean tryMove(int colChange, int rowChange) {
+		if (!this.canMove(colChange, rowChange)) {
+			return false;
+		}
+		_pieceCol = _pieceCol + colChange;
+		_pieceRow = _pieceRow + rowChange;
+		if (colChange != 0) {
+			_landingRow = -1;
+		}
+		if (rowChange > 0) {
+			_lockTicks = 0; // The lock delay starts over each time the piece reaches a new row.
+		}
+		return true;
+	}
+
+	/**
+	 * Rotates the falling piece counter clockwise into its next rotation state if
+	 * that rotation is legal. If wall kicks are on, each of the piece's kick
+	 * offsets is tried in order until one fits. Returns whether the piece rotated.
+	 */
+	public boolean tryRotate() {
+		int next = PieceType.nextRotation(_rotation);
+		int[][] kicks = _type.getKicks();
+		int numKicks = _useWallKicks ? kicks.length : 1;
+		for (int i = 0; i < numKicks; i++) {
+			int row = _pieceRow + kicks[i][1];
+			int col = _pieceCol + kicks[i][0];
+			if (!this.collides(_type, next, row, col)) {
+				_rotation = next;
+				_pieceRow = row;
+				_pieceCol = col;
+				_landingRow = -1;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the falling piece straight down as far as it can go in a single step,
+	 * and makes it lock on the next tick. Returns the number of rows it moved.
+	 */
+	public int drop() {
+		int rows = this.getDropDistance();
+		_pieceRow = _pieceRow + rows;
+		if (rows > 0) {
+			_lockTicks = 0;
+		}
+		_lockNow = true;
+		return rows;
+	}
+
+	/**
+	 * Returns how many rows the falling piece can move straight down before it
+	 * lands on something. The answer is kept until the piece moves sideways or
+	 * rotates, or a piece locks.
+	 */
+	public int getDropDistance() {
+		if (_landingRow < 0) {
+			_landingRow = _board.findLandingRow(_type, _rotation, _pieceRow, _pieceCol);
+		}
+		return _landingRow - _pieceRow;
+	}
+
+	/**
+	 * Makes the falling piece part of the board, and then clears any lines it
+	 * completed. This is called once the piece can no longer move down. Since a
+	 * line can only become full when a piece lands in it, only the rows that the
+	 * piece covers are checked, using the board's fill counts. All full rows are
+	 * then removed in one pass, and the score is incremented by 10 for each of
+	 * them. Every Constants.LINES_PER_LEVEL lines, the level goes up, which
+	 * makes gravity stronger. Returns the number of lines cleared. The cleared
+	 * rows, from top to bottom, can be read with getClearedRow.
+	 */
+	public int lockPiece() {
+		_landingRow = -1;
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			_board.fill(this.getSquareRow(i), this.getSquareCol(i), _type);
+		}
+		_numClearedRows = 0;
+		int top = _pieceRow + _type.getMaskTop(_rotation);
+		for (int row = top; row < top + _type.getMaskRows(_rotation); row++) {
+			if (_board.isRowFull(row)) {
+				_clearedRows[_numClearedRows] = row;
+				_numClearedRows++;
+			}
+		}
+		_board.removeRows(_clearedRows, _numClearedRows);
+		_score = _score + 10 * _numClearedRows;
+		_lines = _lines + _numClearedRows;
+		_level = Math.min(_lines / Constants.LINES_PER_LEVEL, Constants.GRAVITY.length - 1);
+		return _numClearedRows;
+	}
+
+	/**
+	 * Puts the falling piece in the given rotation state, centered at the given
+	 * row and column, without checking that it fits there. This is used by a
+	 * DeltaDecoder to follow a game that is being played somewhere else, where
+	 * the move has already been checked.
+	 */
+	public void placePiece(int rotation, int row, int col) {
+		_rotation = rotation;
+		_pieceRow = row;
+		_pieceCol = col;
+		_landingRow = -1;
+	}
+
+	/**
+	 * Sets the tick count, score, lines and level, and whether the game is over.
+	 * Like placePiece, this is used to follow a game that is being played
+	 * somewhere else.
+	 */
+	public void setStatus(long tick, int score, int lines, int level, boolean isGameOver) {
+		_tick = tick;
+		_score = score;
+		_lines = lines;
+		_level = level;
+		_isGameOver = isGameOver;
+	}
+
+	/**
+	 * Returns one of the rows cleared by the last call to lockPiece. The rows are
+	 * in order from top to bottom.
+	 */
+	public int getClearedRow(int index) {
+		return _clearedRows[index];
+	}
+
+	/**
+	 * Returns the number of rows cleared by the last call to lockPiece.
+	 */
+	public int getNumClearedRows() {
+		return _numClearedRows;
+	}
+
+	/**
+	 * Returns the row of the given square of the falling piece.
+	 */
+	public int getSquareRow(int square) {
+		return _pieceRow + _type.getRowOffset(_rotation, square);
+	}
+
+	/**
+	 * Returns the column of the given square of the falling piece.
+	 */
+	public int getSquareCol(int square) {
+		return _pieceCol + _type.getColOffset(_rotation, square);
+	}
+
+	/**
+	 * Returns the row the given square of the falling piece would be in if the
+	 * piece were dropped. This is where the ghost piece is drawn.
+	 */
+	public int getGhostRow(int square) {
+		return this.getSquareRow(square) + this.getDropDistance();
+	}
+
+	/**
+	 * Returns one of the upcoming pieces, where 0 is the piece that will spawn
+	 * next.
+	 */
+	public PieceType getNextPiece(int index) {
+		return _pieces.peek(index);
+	}
+
+	/**
+	 * Accessor method for the queue of upcoming pieces.
+	 */
+	public PieceQueue getPieceQueue() {
+		return _pieces;
+	}
+
+	/**
+	 * Accessor method for the type of the falling piece.
+	 */
+	public PieceType getPieceType() {
+		return _type;
+	}
+
+	/**
+	 * Accessor method for the rotation state of the falling piece.
+	 */
+	public int getRotation() {
+		return _rotation;
+	}
+
+	/**
+	 * Accessor method for the row of the falling piece's center.
+	 */
+	public int getPieceRow() {
+		return _pieceRow;
+	}
+
+	/**
+	 * Accessor method for the column of the falling piece's center.
+	 */
+	public int getPieceCol() {
+		return _pieceCol;
+	}
+
+	/**
+	 * Turns wall kicks on or off.
+	 */
+	public void setWallKicks(boolean useWallKicks) {
+		_useWallKicks = useWallKicks;
+	}
+
+	/**
+	 * Returns whether wall kicks are on.
+	 */
+	public boolean isUsingWallKicks() {
+		return _useWallKicks;
+	}
+
+	/**
+	 * Accessor method for the board.
+	 */
+	public Board getBoard() {
+		return _board;
+	}
+
+	/**
+	 * Returns a 64 bit hash of the board and the type of the falling piece. The
+	 * board keeps its own hash up to date as pieces lock and lines clear, so this
+	 * costs nothing to work out.
+	 */
+	public long getHash() {
+		return _board.getHash() ^ Zobrist.getPieceKey(_type, 0);
+	}
+
+	/**
+	 * Accessor method for the score.
+	 */
+	public int getScore() {
+		return _score;
+	}
+
+	/**
+	 * Accessor method for the total number of lines cleared.
+	 */
+	public int getLines() {
+		return _lines;
+	}
+
+	/**
+	 * Accessor method for the level.
+	 */
+	public int getLevel() {
+		return _level;
+	}
+
+	/**
+	 * Accessor method for the number of ticks run since the game began.
+	 */
+	public long getTick() {
+		return _tick;
+	}
+
+	/**
+	 * Returns whether the game is over.
+	 */
+	public boolean isGameOver() {
+		return _isGameOver;
+	}
+
+}
@@ -0,0 +1,142 @@
+package Tetris;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * This class holds the game's Java Flight Recorder events. They show up under
+ * "Tetris" in a recording, next to the garbage collections, JIT compiles and
+ * thread pauses that happened at the same time, which is usually what explains
+ * a stutter. An event costs almost nothing unless a recording is running with
+ * it turned on, for example with:
+ *
+ *   java -XX:StartFlightRecording=filename=tetris.jfr,settings=profile ...
+ *
+ * Each event that has a duration is begun before the work it measures and
+ * committed after it. The others are just committed. The events that happen
+ * on every tick or every frame are only made at all if isRecording is true, so
+ * that a game that isn't being recorded doesn't make garbage on every tick.
+ */
+public class GameEvents {
+
+	/**
+	 * Returns whether the flight recorder has been started, either from the
+	 * command line or later on with jcmd. Until then no event can be recorded.
+	 * An event that is made and never recorded is usually optimized away, but
+	 * only once the JIT has compiled the method that makes it, so checking this
+	 * first is what keeps the tick from allocating before then.
+	 */
+	public static boolean isRecording() {
+		return FlightRecorder.isInitialized();
+	}
+
+	/**
+	 * One logic tick of the game, run by a GameTicker.
+	 */
+	@Name("tetris.Tick")
+	@Label("Tick")
+	@Category("Tetris")
+	public static class TickEvent extends Event {
+		@Label("Tick")
+		public long tick;
+
+		@Label("Locked")
+		@Description("Whether the piece locked during this tick")
+		public boolean locked;
+	}
+
+	/**
+	 * One key event handled by Game's KeyHandler.
+	 */
+	@Name("tetris.Key")
+	@Label("Key")
+	@Category("Tetris")
+	public static class KeyEvent extends Event {
+		@Label("Key")
+		public String key;
+
+		@Label("Pressed")
+		public boolean pressed;
+	}
+
+	/**
+	 * The renderer clearing lines that the GameEngine cleared.
+	 */
+	@Name("tetris.ClearLines")
+	@Label("Clear Lines")
+	@Category("Tetris")
+	public static class ClearLinesEvent extends Event {
+		@Label("Rows Cleared")
+		public int rows;
+	}
+
+	/**
+	 * A new piece spawning at the top of the board.
+	 */
+	@Name("tetris.PieceSpawn")
+	@Label("Piece Spawn")
+	@Category("Tetris")
+	public static class SpawnEvent extends Event {
+		@Label("Piece Type")
+		public String type;
+
+		@Label("Game Over")
+		@Description("Whether the piece didn't fit, or couldn't move down, ending the game")
+		public boolean gameOver;
+	}
+
+	/**
+	 * The falling piece locking into the board.
+	 */
+	@Name("tetris.PieceLock")
+	@Label("Piece Lock")
+	@Category("Tetris")
+	public static class LockEvent extends Event {
+		@Label("Piece Type")
+		public String type;
+
+		@Label("Row")
+		public int row;
+
+		@Label("Column")
+		public int col;
+
+		@Label("Rows Cleared")
+		public int rowsCleared;
+	}
+
+	/**
+	 * One frame drawn by Game's RenderTimer, and the ticks it drew.
+	 */
+	@Name("tetris.Frame")
+	@Label("Frame")
+	@Category("Tetris")
+	public static class FrameEvent extends Event {
+		@Label("Interval")
+		@Description("Time since the previous frame")
+		@Timespan(Timespan.NANOSECONDS)
+		public long interval;
+
+		@Label("Ticks")
+		@Description("Logic ticks drawn in this frame")
+		public int ticks;
+	}
+
+	/**
+	 * A change in the number of children of the game pane, which is what JavaFX
+	 * has to walk through on every pulse.
+	 */
+	@Name("tetris.SceneNodes")
+	@Label("Scene Nodes")
+	@Category("Tetris")
+	public static class SceneEvent extends Event {
+		@Label("Children")
+		public int children;
+	}
+
+}
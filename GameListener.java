@@ -0,0 +1,31 @@
+package Tetris;
+
+/**
+ * This interface models anything that wants to know when the state of the game
+ * that is shown to the player changes. A GameState calls these methods only
+ * when the value really is different from the last one it told its listeners
+ * about, so a listener never has to check for itself.
+ */
+public interface GameListener {
+
+	/**
+	 * Called when the score has changed.
+	 */
+	void scoreChanged(int score);
+
+	/**
+	 * Called when the total number of lines cleared has changed.
+	 */
+	void linesChanged(int lines);
+
+	/**
+	 * Called when the level has changed.
+	 */
+	void levelChanged(int level);
+
+	/**
+	 * Called when the game has ended, or a new game has started after one ended.
+	 */
+	void gameOverChanged(boolean isGameOver);
+
+}
@@ -0,0 +1,187 @@
+package Tetris;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs the game at a fixed number of logic ticks per second, on a
+ * thread of its own rather than on the JavaFX thread, so that nothing JavaFX
+ * does (laying out text, a slow pulse, the window being dragged) can hold up
+ * gravity or key input. The thread sleeps until the next tick is due and then
+ * runs every tick whose time has come. Because the game only ever moves
+ * forward in whole ticks, it plays the same however fast the screen refreshes.
+ *
+ * Everything that changes the game has to happen on this thread. Other
+ * threads hand it work with post, and the work is run before the next tick,
+ * whether or not the loop is running, so that a stopped or paused game can
+ * still be restarted or loaded. start, stop, pause and resume must only be
+ * called on this thread (by the Listener, or by work that was posted), but
+ * isRunning and isPaused can be asked from any thread. If a tick or a piece of
+ * work throws an exception, the loop is stopped and the Listener is told, but
+ * the thread carries on taking work, so the game can still be restarted.
+ *
+ * The number of ticks run back to back and how long they took are recorded in
+ * Metrics.
+ */
+public class GameLoop implements Runnable {
+	private static final LatencyHistogram BATCH_TIMES = Metrics.histogram("loop.batch.nanos");
+	private static final LatencyHistogram BATCH_TICKS = Metrics.histogram("loop.batch.ticks");
+
+	/**
+	 * This interface models whatever the loop is running. tick is called once per
+	 * logic tick, on the loop's thread, and failed is called on the same thread
+	 * after a tick or a piece of work threw an exception and the loop stopped.
+	 */
+	public interface Listener {
+		void tick();
+
+		void failed(RuntimeException e);
+	}
+
+	private Listener _listener;
+	private LinkedBlockingQueue<Runnable> _work;
+	private long _nextTick;
+	private volatile boolean _isRunning;
+	private volatile boolean _isPaused;
+
+	/**
+	 * Constructor for the GameLoop. Takes in the Listener that it runs. The
+	 * thread starts right away, but no ticks are run until start is called.
+	 */
+	public GameLoop(Listener listener) {
+		_listener = listener;
+		_work = new LinkedBlockingQueue<Runnable>();
+		_isRunning = false;
+		_isPaused = false;
+		Thread thread = new Thread(this, "game-loop");
+		thread.setDaemon(true); // The program can exit while it is waiting.
+		thread.start();
+	}
+
+	/**
+	 * Hands work to the loop's thread, to be run before the next tick. This can be
+	 * called from any thread.
+	 */
+	public void post(Runnable work) {
+		_work.add(work);
+	}
+
+	/**
+	 * Called on the loop's own thread. Waits for work or for the next tick to be
+	 * due, whichever comes first, runs any work, and then runs the ticks that are
+	 * due.
+	 */
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				Runnable work;
+				if (_isRunning) {
+					work = _work.poll(_nextTick - System.nanoTime(), TimeUnit.NANOSECONDS);
+				} else {
+					work = _work.take();
+				}
+				while (work != null) {
+					try {
+						work.run();
+					} catch (RuntimeException e) {
+						this.fail(e);
+					}
+					work = _work.poll();
+				}
+				try {
+					this.runTicks();
+				} catch (RuntimeException e) {
+					this.fail(e);
+				}
+			}
+		} catch (InterruptedException e) {
+			// The program is exiting.
+		}
+	}
+
+	/**
+	 * This private helper method stops the loop after a tick or a piece of work
+	 * threw the given exception, and tells the Listener.
+	 */
+	private void fail(RuntimeException e) {
+		this.stop();
+		_listener.failed(e);
+	}
+
+	/**
+	 * This private helper method runs every tick that is due. If the game falls
+	 * far behind (for example, the computer was asleep), at most
+	 * Constants.MAX_TICKS_PER_FRAME ticks are run, and the extra time is thrown
+	 * away rather than running a long burst of ticks to catch up.
+	 */
+	private void runTicks() {
+		long start = System.nanoTime();
+		int ticks = 0;
+		while (_isRunning && System.nanoTime() >= _nextTick) {
+			_listener.tick();
+			_nextTick = _nextTick + Constants.TICK_NANOS;
+			ticks++;
+			if (ticks == Constants.MAX_TICKS_PER_FRAME) {
+				_nextTick = Math.max(_nextTick, System.nanoTime() + Constants.TICK_NANOS);
+			}
+		}
+		if (ticks > 0) {
+			BATCH_TICKS.record(ticks);
+			BATCH_TIMES.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Starts the loop from a fresh clock, so that the first tick is one tick's
+	 * time from now.
+	 */
+	public void start() {
+		_nextTick = System.nanoTime() + Constants.TICK_NANOS;
+		_isRunning = true;
+		_isPaused = false;
+	}
+
+	/**
+	 * Stops the loop. It can be started again with start.
+	 */
+	public void stop() {
+		_isRunning = false;
+		_isPaused = false;
+	}
+
+	/**
+	 * Pauses the loop if it is running. No ticks run while it is paused.
+	 */
+	public void pause() {
+		if (_isRunning) {
+			_isRunning = false;
+			_isPaused = true;
+		}
+	}
+
+	/**
+	 * Resumes the loop if it is paused. The time spent paused is not counted.
+	 */
+	public void resume() {
+		if (_isPaused) {
+			this.start();
+		}
+	}
+
+	/**
+	 * Returns whether the loop is running, meaning it is neither paused nor
+	 * stopped.
+	 */
+	public boolean isRunning() {
+		return _isRunning;
+	}
+
+	/**
+	 * Returns whether the loop is paused.
+	 */
+	public boolean isPaused() {
+		return _isPaused;
+	}
+
+}
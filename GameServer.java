@@ -0,0 +1,325 @@
+package Tetris;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is the GameServer class. It is a main class that hosts games of Tetris
+ * for players connecting over the network, with no window at all. Every player
+ * gets a Session with their own GameEngine, so the rules are run on the server
+ * and a client only ever sends key presses and draws what it is told (see
+ * Protocol for the messages).
+ *
+ * There is no thread and no timer per game. Instead there is a small pool of
+ * event loops, one per core by default, and every connection belongs to one of
+ * them. Each event loop waits on an NIO Selector for key presses from all of
+ * its connections at once, and between waits it ticks every one of its games
+ * together, then sends each player whatever changed. All of the event loops
+ * keep time from the same clock, the one the server started with, so tick N
+ * happens at the same moment in every game on the server. If a loop falls
+ * behind it runs the missed ticks back to back, up to
+ * Constants.MAX_TICKS_PER_FRAME of them, the same as GameLoop does.
+ *
+ * The main thread accepts connections and hands them out to the event loops in
+ * turn. Every Constants.SERVER_STATS_SECONDS seconds it prints how many games
+ * are running, how many ticks were run, and how long the slowest batches of
+ * ticks took.
+ *
+ * The options are:
+ *   --port N        port to listen on (default Constants.SERVER_PORT)
+ *   --loops N       number of event loops (default: one per core)
+ *   --mode M        uniform, seven_bag or history (default seven_bag)
+ *   --seed S        seed of the first game; each new game adds one (default 1)
+ */
+public class GameServer {
+	private int _port;
+	private int _numLoops;
+	private GeneratorMode _mode;
+	private AtomicLong _nextSeed;
+	private long _startTime;
+	private EventLoop[] _loops;
+	private LongAdder _sessions;
+	private LongAdder _ticks;
+	private LatencyHistogram _batchTimes;
+	private volatile boolean _isRunning;
+
+	/**
+	 * Constructor for the GameServer. Reads the options from the command line
+	 * arguments.
+	 */
+	public GameServer(String[] argv) {
+		_port = Constants.SERVER_PORT;
+		_numLoops = Runtime.getRuntime().availableProcessors();
+		_mode = GeneratorMode.SEVEN_BAG;
+		long seed = 1;
+		for (int i = 0; i < argv.length; i++) {
+			switch (argv[i]) {
+			case "--port":
+				_port = Integer.parseInt(argv[++i]);
+				break;
+			case "--loops":
+				_numLoops = Integer.parseInt(argv[++i]);
+				break;
+			case "--mode":
+				_mode = GeneratorMode.valueOf(argv[++i].toUpperCase());
+				break;
+			case "--seed":
+				seed = Long.parseLong(argv[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + argv[i]);
+			}
+		}
+		_nextSeed = new AtomicLong(seed);
+		_sessions = new LongAdder();
+		_ticks = new LongAdder();
+		_batchTimes = new LatencyHistogram();
+	}
+
+	/**
+	 * Starts the event loops and accepts connections until the server is
+	 * stopped.
+	 */
+	public void run() throws IOException {
+		_isRunning = true;
+		_startTime = System.nanoTime();
+		_loops = new EventLoop[_numLoops];
+		for (int i = 0; i < _numLoops; i++) {
+			_loops[i] = new EventLoop();
+			Thread thread = new Thread(_loops[i], "event-loop-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		Thread stats = new Thread(new StatsPrinter(), "stats");
+		stats.setDaemon(true);
+		stats.start();
+		try (ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(_port), 1024);
+			System.out.println("Listening on port " + _port + " with " + _numLoops + " event loops");
+			int next = 0;
+			while (_isRunning) {
+				SocketChannel channel = server.accept();
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				_loops[next].add(channel);
+				next = (next + 1) % _numLoops;
+			}
+		}
+	}
+
+	/**
+	 * Stops the event loops and the accepting of connections.
+	 */
+	public void stop() {
+		_isRunning = false;
+		for (EventLoop loop : _loops) {
+			loop.wakeUp();
+		}
+	}
+
+	/**
+	 * This private inner class models one event loop. It owns a Selector and
+	 * every Session whose connection is registered with it, and only its own
+	 * thread ever touches them. New connections are handed over through a
+	 * concurrent queue, and the Selector is woken up to pick them up.
+	 */
+	private class EventLoop implements Runnable {
+		private Selector _selector;
+		private ConcurrentLinkedQueue<SocketChannel> _pending;
+		private List<Session> _sessionList;
+		private long _nextTick;
+
+		/**
+		 * Constructor for the EventLoop.
+		 */
+		public EventLoop() throws IOException {
+			_selector = Selector.open();
+			_pending = new ConcurrentLinkedQueue<SocketChannel>();
+			_sessionList = new ArrayList<Session>();
+		}
+
+		/**
+		 * Hands a new connection to this loop. Called from the accepting thread.
+		 */
+		public void add(SocketChannel channel) {
+			_pending.add(channel);
+			_selector.wakeup();
+		}
+
+		/**
+		 * Wakes the loop up from waiting for key presses.
+		 */
+		public void wakeUp() {
+			_selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			_nextTick = _startTime + Constants.TICK_NANOS;
+			while (_isRunning) {
+				try {
+					long wait = _nextTick - System.nanoTime();
+					if (wait > 1000000) {
+						_selector.select(wait / 1000000);
+					} else {
+						_selector.selectNow();
+					}
+					this.registerPending();
+					this.readInputs();
+					this.runTicks();
+				} catch (IOException e) {
+					System.out.println("Event loop failed: " + e);
+					return;
+				}
+			}
+			for (Session session : _sessionList) {
+				session.close();
+			}
+		}
+
+		/**
+		 * This private helper method starts a Session for every connection that has
+		 * been handed to this loop since the last time.
+		 */
+		private void registerPending() {
+			SocketChannel channel = _pending.poll();
+			while (channel != null) {
+				Session session = new Session(channel, _mode, _nextSeed.getAndIncrement());
+				try {
+					channel.register(_selector, SelectionKey.OP_READ, session);
+					_sessionList.add(session);
+					_sessions.increment();
+				} catch (ClosedChannelException e) {
+					session.close();
+				}
+				channel = _pending.poll();
+			}
+		}
+
+		/**
+		 * This private helper method reads the key presses from every connection that
+		 * has sent some, and finishes writing to every connection that was full the
+		 * last time. Disconnected players are dropped.
+		 */
+		private void readInputs() {
+			Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Session session = (Session) key.attachment();
+				try {
+					if (key.isValid() && key.isReadable() && !session.readInputs()) {
+						this.drop(key);
+					} else if (key.isValid() && key.isWritable() && session.flush()) {
+						key.interestOps(SelectionKey.OP_READ);
+					}
+				} catch (IOException e) {
+					this.drop(key);
+				}
+			}
+		}
+
+		/**
+		 * This private helper method runs every tick that is due, in every game at
+		 * once, and then sends each player what changed. The time taken by each batch
+		 * of ticks is recorded.
+		 */
+		private void runTicks() {
+			int ticks = 0;
+			while (System.nanoTime() >= _nextTick && ticks < Constants.MAX_TICKS_PER_FRAME) {
+				long start = System.nanoTime();
+				for (int i = 0; i < _sessionList.size(); i++) {
+					_sessionList.get(i).tick();
+				}
+				_batchTimes.record(System.nanoTime() - start);
+				_ticks.add(_sessionList.size());
+				_nextTick = _nextTick + Constants.TICK_NANOS;
+				ticks++;
+			}
+			if (ticks == Constants.MAX_TICKS_PER_FRAME) {
+				_nextTick = Math.max(_nextTick, System.nanoTime());
+			}
+			if (ticks > 0) {
+				this.sendStates();
+			}
+		}
+
+		/**
+		 * This private helper method sends every player the state of their game. A
+		 * connection that can't take it all right now is watched until it can, and a
+		 * player who is too far behind is dropped.
+		 */
+		private void sendStates() {
+			for (int i = _sessionList.size() - 1; i >= 0; i--) {
+				Session session = _sessionList.get(i);
+				SelectionKey key = session.getChannel().keyFor(_selector);
+				try {
+					if (!session.sendState()) {
+						this.drop(key);
+					} else if (!session.flush()) {
+						key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					}
+				} catch (IOException e) {
+					this.drop(key);
+				}
+			}
+		}
+
+		/**
+		 * This private helper method closes a connection and forgets its Session.
+		 */
+		private void drop(SelectionKey key) {
+			Session session = (Session) key.attachment();
+			key.cancel();
+			session.close();
+			if (_sessionList.remove(session)) {
+				_sessions.decrement();
+			}
+		}
+	}
+
+	/**
+	 * This private inner class prints the server's statistics every
+	 * Constants.SERVER_STATS_SECONDS seconds.
+	 */
+	private class StatsPrinter implements Runnable {
+		@Override
+		public void run() {
+			long lastTicks = 0;
+			while (_isRunning) {
+				try {
+					Thread.sleep(Constants.SERVER_STATS_SECONDS * 1000L);
+				} catch (InterruptedException e) {
+					return;
+				}
+				long ticks = _ticks.sum();
+				System.out.printf("%d games, %.0f game ticks/s, batch p50 %d us, p99 %d us, max %d us%n",
+						_sessions.sum(), (ticks - lastTicks) / (double) Constants.SERVER_STATS_SECONDS,
+						_batchTimes.getPercentile(0.5) / 1000, _batchTimes.getPercentile(0.99) / 1000,
+						_batchTimes.getMax() / 1000);
+				lastTicks = ticks;
+				_batchTimes.reset();
+			}
+		}
+	}
+
+	/*
+	 * Here is the mainline for the GameServer.
+	 */
+	public static void main(String[] argv) throws IOException {
+		new GameServer(argv).run();
+	}
+
+}
@@ -0,0 +1,79 @@
+package Tetris;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class makes the score, lines, level and game over of a GameEngine
+ * observable. The GameEngine itself knows nothing about listeners, since it
+ * also runs headless on servers and in simulations. Instead, Game calls update
+ * after anything that can change the game (once per frame, and after a
+ * restart or a load), and this class compares each value with the last one it
+ * published and tells its GameListeners about the ones that changed. Most
+ * frames nothing has changed, and update is just four comparisons.
+ */
+public class GameState {
+	private List<GameListener> _listeners;
+	private int _score;
+	private int _lines;
+	private int _level;
+	private boolean _isGameOver;
+	private boolean _isPublished;
+
+	/**
+	 * Constructor for the GameState. Nothing has been published yet, so the first
+	 * update publishes every value.
+	 */
+	public GameState() {
+		_listeners = new ArrayList<GameListener>();
+		_isPublished = false;
+	}
+
+	/**
+	 * Adds a listener. If values have already been published, the listener is
+	 * told about them right away, so it starts out up to date.
+	 */
+	public void addListener(GameListener listener) {
+		_listeners.add(listener);
+		if (_isPublished) {
+			listener.scoreChanged(_score);
+			listener.linesChanged(_lines);
+			listener.levelChanged(_level);
+			listener.gameOverChanged(_isGameOver);
+		}
+	}
+
+	/**
+	 * Compares the game's score, lines, level and game over with the values last
+	 * published, and tells every listener about each one that changed.
+	 */
+	public void update(GameEngine engine) {
+		boolean isFirst = !_isPublished;
+		_isPublished = true;
+		if (isFirst || engine.getScore() != _score) {
+			_score = engine.getScore();
+			for (int i = 0; i < _listeners.size(); i++) {
+				_listeners.get(i).scoreChanged(_score);
+			}
+		}
+		if (isFirst || engine.getLines() != _lines) {
+			_lines = engine.getLines();
+			for (int i = 0; i < _listeners.size(); i++) {
+				_listeners.get(i).linesChanged(_lines);
+			}
+		}
+		if (isFirst || engine.getLevel() != _level) {
+			_level = engine.getLevel();
+			for (int i = 0; i < _listeners.size(); i++) {
+				_listeners.get(i).levelChanged(_level);
+			}
+		}
+		if (isFirst || engine.isGameOver() != _isGameOver) {
+			_isGameOver = engine.isGameOver();
+			for (int i = 0; i < _listeners.size(); i++) {
+				_listeners.get(i).gameOverChanged(_isGameOver);
+			}
+		}
+	}
+
+}
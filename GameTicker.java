@@ -0,0 +1,157 @@
+package Tetris;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is the GameTicker class. It runs the logic of one tick of a game, and
+ * spawns each new piece, with nothing to do with JavaFX, so that Game's
+ * TimeHandler and the AllocationCheck run exactly the same code. Each tick
+ * first applies the key events that arrived since the last tick, from the
+ * keyboard and from the Bot, through their InputControllers, and then lets the
+ * GameEngine apply gravity and lock the piece once it has rested for long
+ * enough. Every few ticks a snapshot is kept in the RewindBuffer. When a piece
+ * locks, a LOCKED frame is published right away and the next piece is spawned.
+ * Otherwise, if the piece moved at all, one MOVED frame is published at the
+ * end of the tick. How long each tick takes, every spawn and lock, and the
+ * lines cleared are recorded in Metrics and as GameEvents for the flight
+ * recorder. Whoever owns the GameTicker is told when the game is over, and
+ * stops ticking it.
+ */
+public class GameTicker {
+	private static final LatencyHistogram TICK_TIMES = Metrics.histogram("game.tick.nanos");
+	private static final LongAdder SPAWNS = Metrics.counter("game.pieces.spawned");
+	private static final LongAdder LOCKS = Metrics.counter("game.pieces.locked");
+	private static final LongAdder LINES = Metrics.counter("game.lines");
+
+	private GameEngine _engine;
+	private InputController _input;
+	private InputController _botInput;
+	private Bot _bot;
+	private boolean _isBotOn;
+	private RewindBuffer _rewind;
+	private FrameRing _frames;
+
+	/**
+	 * Constructor for the GameTicker. Takes in the GameEngine to run, the
+	 * InputControllers for the keyboard and for the Bot, the Bot that plays
+	 * each new piece while it is on, the RewindBuffer that snapshots are kept
+	 * in, and the FrameRing that every change is published into. The Bot starts
+	 * off.
+	 */
+	public GameTicker(GameEngine engine, InputController input, InputController botInput, Bot bot,
+			RewindBuffer rewind, FrameRing frames) {
+		_engine = engine;
+		_input = input;
+		_botInput = botInput;
+		_bot = bot;
+		_isBotOn = false;
+		_rewind = rewind;
+		_frames = frames;
+	}
+
+	/**
+	 * Runs one tick. Returns false if the game ended on this tick, because the
+	 * next piece could not be spawned.
+	 */
+	public boolean tick() {
+		long start = System.nanoTime();
+		GameEvents.TickEvent event = null;
+		if (GameEvents.isRecording()) {
+			event = new GameEvents.TickEvent();
+			event.begin();
+		}
+		boolean isPlaying = true;
+		boolean isMoved = _input.update(_engine);
+		if (_botInput.update(_engine)) {
+			isMoved = true;
+		}
+		int result = _engine.tick();
+		if (_engine.getTick() % Constants.REWIND_INTERVAL_TICKS == 0) {
+			_rewind.save(_engine);
+		}
+		if ((result & GameEngine.TICK_MOVED) != 0) {
+			isMoved = true;
+		}
+		if ((result & GameEngine.TICK_LOCKED) != 0) {
+			this.recordLock();
+			_frames.publish(FrameRing.LOCKED, _engine);
+			isPlaying = this.spawn();
+		} else if (isMoved) {
+			_frames.publish(FrameRing.MOVED, _engine);
+		}
+		if (event != null) {
+			event.tick = _engine.getTick();
+			event.locked = (result & GameEngine.TICK_LOCKED) != 0;
+			event.commit();
+		}
+		TICK_TIMES.record(System.nanoTime() - start);
+		return isPlaying;
+	}
+
+	/**
+	 * Spawns the next piece from the GameEngine's PieceQueue. A piece is only
+	 * created if all 4 spaces that it would occupy are empty in the GameEngine's
+	 * board. If the piece cannot be created, or if the newly generated piece
+	 * cannot move down at all, the game is over, a STATUS frame is published,
+	 * and false is returned. Otherwise a SPAWNED frame is published, and if the
+	 * Bot is on, it plans its moves for the new piece right away.
+	 */
+	public boolean spawn() {
+		PieceType type = _engine.getNextPiece(0);
+		if (_engine.spawnNextPiece()) {
+			SPAWNS.increment();
+			_frames.publish(FrameRing.SPAWNED, _engine);
+			if (_isBotOn && !_engine.isGameOver()) {
+				_bot.play(_engine);
+			}
+		} else {
+			_frames.publish(FrameRing.STATUS, _engine);
+		}
+		if (GameEvents.isRecording()) {
+			GameEvents.SpawnEvent event = new GameEvents.SpawnEvent();
+			event.type = type.name();
+			event.gameOver = _engine.isGameOver();
+			event.commit();
+		}
+		return !_engine.isGameOver();
+	}
+
+	/**
+	 * This private helper method records the lock of the piece, and the lines
+	 * it cleared.
+	 */
+	private void recordLock() {
+		LOCKS.increment();
+		LINES.add(_engine.getNumClearedRows());
+		if (GameEvents.isRecording()) {
+			GameEvents.LockEvent event = new GameEvents.LockEvent();
+			event.type = _engine.getPieceType().name();
+			event.row = _engine.getPieceRow();
+			event.col = _engine.getPieceCol();
+			event.rowsCleared = _engine.getNumClearedRows();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Sets whether the Bot plays. It starts or stops with the next piece.
+	 */
+	public void setBotOn(boolean isBotOn) {
+		_isBotOn = isBotOn;
+	}
+
+	/**
+	 * Accessor method for whether the Bot plays.
+	 */
+	public boolean isBotOn() {
+		return _isBotOn;
+	}
+
+	/**
+	 * Accessor method for the histogram of nanoseconds each tick took.
+	 */
+	public LatencyHistogram getTickTimes() {
+		return TICK_TIMES;
+	}
+
+}
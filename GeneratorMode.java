@@ -0,0 +1,25 @@
+package Tetris;
+
+/**
+ * This enum models the ways pieces can be generated. Each mode can make a new
+ * PieceGenerator of its kind, so that a game can be set up from the mode alone
+ * (for example, from Constants, or from the header of a saved replay).
+ */
+public enum GeneratorMode {
+	UNIFORM, SEVEN_BAG, HISTORY;
+
+	/**
+	 * Returns a new generator of this mode.
+	 */
+	public PieceGenerator create() {
+		switch (this) {
+		case UNIFORM:
+			return new UniformGenerator();
+		case HISTORY:
+			return new HistoryGenerator();
+		default:
+			return new BagGenerator();
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class generates pieces that try not to repeat recent ones. It remembers
+ * the last Constants.HISTORY_SIZE pieces, and when a piece that is in that
+ * history is picked, it picks again, up to Constants.HISTORY_ROLLS times in
+ * all. Repeats are rare but still possible, unlike with the 7-bag.
+ */
+public class HistoryGenerator implements PieceGenerator {
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private SplitMix64 _random;
+	private PieceType[] _history;
+	private int _oldest;
+
+	/**
+	 * Constructor for the HistoryGenerator. The sequence starts from a seed of 0
+	 * until it is reset.
+	 */
+	public HistoryGenerator() {
+		_history = new PieceType[Constants.HISTORY_SIZE];
+		_random = new SplitMix64(0);
+		this.reset(0);
+	}
+
+	@Override
+	public void reset(long seed) {
+		_random.setState(seed);
+		for (int i = 0; i < _history.length; i++) {
+			_history[i] = null;
+		}
+		_oldest = 0;
+	}
+
+	@Override
+	public PieceType next() {
+		PieceType type = TYPES[_random.nextInt(TYPES.length)];
+		for (int roll = 1; roll < Constants.HISTORY_ROLLS && this.isRecent(type); roll++) {
+			type = TYPES[_random.nextInt(TYPES.length)];
+		}
+		_history[_oldest] = type; // The new piece replaces the oldest one.
+		_oldest = (_oldest + 1) % _history.length;
+		return type;
+	}
+
+	/**
+	 * The state is the state of the random number generator and the history,
+	 * where each piece is stored as one more than its ordinal so that an empty
+	 * slot can be 0.
+	 */
+	@Override
+	public void save(ByteBuffer buffer) {
+		buffer.putLong(_random.getState());
+		for (int i = 0; i < _history.length; i++) {
+			buffer.put((byte) (_history[i] == null ? 0 : _history[i].ordinal() + 1));
+		}
+		buffer.put((byte) _oldest);
+	}
+
+	@Override
+	public void load(ByteBuffer buffer) {
+		_random.setState(buffer.getLong());
+		for (int i = 0; i < _history.length; i++) {
+			int code = buffer.get();
+			_history[i] = code == 0 ? null : TYPES[code - 1];
+		}
+		_oldest = buffer.get();
+	}
+
+	/**
+	 * Every remembered piece has to be a real piece type or none at all, and the
+	 * oldest one has to be in the history.
+	 */
+	@Override
+	public boolean isValid(ByteBuffer buffer, int start) {
+		for (int i = 0; i < _history.length; i++) {
+			int code = buffer.get(start + 8 + i);
+			if (code < 0 || code > TYPES.length) {
+				return false;
+			}
+		}
+		int oldest = buffer.get(start + 8 + _history.length);
+		return oldest >= 0 && oldest < _history.length;
+	}
+
+	/**
+	 * This private helper method returns whether the given piece type is one of
+	 * the last few pieces.
+	 */
+	private boolean isRecent(PieceType type) {
+		for (int i = 0; i < _history.length; i++) {
+			if (_history[i] == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
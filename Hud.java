@@ -0,0 +1,122 @@
+package Tetris;
+
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * This class is the heads-up display: the score, lines and level labels in
+ * the bar at the bottom of the window, and the game over label over the board.
+ * It is a GameListener, so a label's text is only set when its value changes,
+ * and JavaFX only has to lay out text again when there is something new to
+ * show. The text for the most common values is made once and cached, so
+ * showing a score the game has had before doesn't build a new String.
+ */
+public class Hud implements GameListener {
+	private Pane _pane;
+	private Label _scoreLabel;
+	private Label _linesLabel;
+	private Label _levelLabel;
+	private Label _gameOver;
+	private TextCache _scoreTexts;
+	private TextCache _linesTexts;
+	private TextCache _levelTexts;
+
+	/**
+	 * Constructor for the Hud. Takes in the bar that the score, lines and level
+	 * labels are added to, and the game pane that the game over label is shown
+	 * on.
+	 */
+	public Hud(HBox hbox, Pane pane) {
+		_pane = pane;
+		_scoreLabel = this.makeLabel(hbox);
+		_linesLabel = this.makeLabel(hbox);
+		_levelLabel = this.makeLabel(hbox);
+		_gameOver = new Label("Game Over!");
+		_gameOver.setFont(Font.font("Radio Stars", Constants.LABEL_SIZE));
+		_gameOver.setTextFill(Color.INDIGO);
+		_gameOver.setLayoutX(Constants.GAME_OVER_X);
+		_gameOver.setLayoutY(Constants.LABEL_Y);
+		// Scores only go up in steps of 10.
+		_scoreTexts = new TextCache("Score: ", 10);
+		_linesTexts = new TextCache("Lines: ", 1);
+		_levelTexts = new TextCache("Level: ", 1);
+	}
+
+	/**
+	 * This private helper method makes one of the labels in the bottom bar.
+	 */
+	private Label makeLabel(HBox hbox) {
+		Label label = new Label();
+		label.setFont(Font.font("Radio Stars", Constants.SCORE_SIZE));
+		label.setTextFill(Color.WHITE);
+		hbox.getChildren().addAll(label);
+		return label;
+	}
+
+	@Override
+	public void scoreChanged(int score) {
+		_scoreLabel.setText(_scoreTexts.get(score));
+	}
+
+	@Override
+	public void linesChanged(int lines) {
+		_linesLabel.setText(_linesTexts.get(lines));
+	}
+
+	@Override
+	public void levelChanged(int level) {
+		_levelLabel.setText(_levelTexts.get(level));
+	}
+
+	/**
+	 * Shows the game over label when the game ends, and takes it away when a new
+	 * game starts or a game that hasn't ended is loaded.
+	 */
+	@Override
+	public void gameOverChanged(boolean isGameOver) {
+		if (isGameOver) {
+			_pane.getChildren().addAll(_gameOver);
+		} else {
+			_pane.getChildren().remove(_gameOver);
+		}
+	}
+
+	/**
+	 * This private static inner class caches the text of a label for values that
+	 * are multiples of a step, up to Constants.HUD_CACHED_TEXTS of them. Each
+	 * text is made the first time it is needed. Other values are made every time.
+	 */
+	private static class TextCache {
+		private String _prefix;
+		private int _step;
+		private String[] _texts;
+
+		/**
+		 * Constructor for the TextCache. Takes in the text that goes before the
+		 * value, and the step between the values that are cached.
+		 */
+		public TextCache(String prefix, int step) {
+			_prefix = prefix;
+			_step = step;
+			_texts = new String[Constants.HUD_CACHED_TEXTS];
+		}
+
+		/**
+		 * Returns the text for the given value.
+		 */
+		public String get(int value) {
+			int index = value / _step;
+			if (value < 0 || value % _step != 0 || index >= _texts.length) {
+				return _prefix + value;
+			}
+			if (_texts[index] == null) {
+				_texts[index] = _prefix + value;
+			}
+			return _texts[index];
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package Tetris;
+
+/**
+ * This class turns the key events in an InputQueue into moves of the
+ * GameEngine's piece. It is updated at the start of every tick, so the piece
+ * only ever moves on tick boundaries, no matter when the keys were pressed.
+ *
+ * Holding left or right uses delayed auto shift (DAS) and auto repeat rate
+ * (ARR), both counted in ticks: the piece moves once when the key goes down,
+ * and if the key is still held DAS ticks later, it moves again every ARR ticks
+ * (or all the way to the wall every tick, if ARR is 0). This replaces the
+ * operating system's own key repeat, which is ignored. Holding down moves the
+ * piece down every Constants.SOFT_DROP_TICKS ticks. Rotating and dropping
+ * happen once per key press.
+ *
+ * For every key press that moves the piece, the time from the key event to
+ * the move is recorded in a LatencyHistogram. If a ReplayWriter is set, every
+ * key event is also recorded with the tick it was applied on and which
+ * controller applied it.
+ */
+public class InputController {
+	private InputQueue _queue;
+	private LatencyHistogram _latency;
+	private ReplayWriter _recorder;
+	private int _controller;
+	private int _das;
+	private int _arr;
+	private boolean _isLeftHeld;
+	private boolean _isRightHeld;
+	private boolean _isDownHeld;
+	private int _direction;
+	private int _shiftTicks;
+	private int _downTicks;
+
+	/**
+	 * Constructor for the InputController. Takes in the queue it reads key events
+	 * from. DAS and ARR start out at their values in Constants.
+	 */
+	public InputController(InputQueue queue) {
+		_queue = queue;
+		_latency = new LatencyHistogram();
+		_das = Constants.DAS_TICKS;
+		_arr = Constants.ARR_TICKS;
+		this.reset();
+	}
+
+	/**
+	 * Makes the held keys and repeat counts of this controller the same as those
+	 * of another controller. Waiting key events are not copied. This is used with
+	 * GameEngine.copyFrom to save and restore keyframes of a replay.
+	 */
+	public void copyFrom(InputController other) {
+		_das = other._das;
+		_arr = other._arr;
+		_isLeftHeld = other._isLeftHeld;
+		_isRightHeld = other._isRightHeld;
+		_isDownHeld = other._isDownHeld;
+		_direction = other._direction;
+		_shiftTicks = other._shiftTicks;
+		_downTicks = other._downTicks;
+	}
+
+	/**
+	 * Forgets every held key and throws away any waiting key events. This is used
+	 * when the game restarts.
+	 */
+	public void reset() {
+		_queue.clear();
+		_isLeftHeld = false;
+		_isRightHeld = false;
+		_isDownHeld = false;
+		_direction = 0;
+		_shiftTicks = 0;
+		_downTicks = 0;
+	}
+
+	/**
+	 * Applies all waiting key events to the engine, and then applies the
+	 * automatic repeats of any keys that are still held. Returns whether the
+	 * piece moved at all.
+	 */
+	public boolean update(GameEngine engine) {
+		boolean moved = false;
+		while (!_queue.isEmpty()) {
+			Action action = _queue.peekAction();
+			boolean isPressed = _queue.peekPressed();
+			long time = _queue.peekTime();
+			_queue.remove();
+			if (_recorder != null) {
+				_recorder.record(engine.getTick(), _controller, action, isPressed);
+			}
+			if (this.applyEvent(engine, action, isPressed)) {
+				moved = true;
+				_latency.record(System.nanoTime() - time);
+			}
+		}
+		if (this.applyHeldKeys(engine)) {
+			moved = true;
+		}
+		return moved;
+	}
+
+	/**
+	 * This private helper method applies one key event. A press of a key that is
+	 * already held is a key repeat from the operating system, and is ignored.
+	 * Returns whether the piece moved.
+	 */
+	private boolean applyEvent(GameEngine engine, Action action, boolean isPressed) {
+		switch (action) {
+		case LEFT:
+			return this.applyShiftKey(engine, -1, isPressed, _isLeftHeld);
+		case RIGHT:
+			return this.applyShiftKey(engine, 1, isPressed, _isRightHeld);
+		case DOWN:
+			if (isPressed && !_isDownHeld) {
+				_isDownHeld = true;
+				_downTicks = 0;
+				return engine.tryMove(0, 1);
+			}
+			_isDownHeld = isPressed;
+			return false;
+		case ROTATE:
+			return isPressed && engine.tryRotate();
+		case DROP:
+			return isPressed && engine.drop() > 0;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * This private helper method applies a left or right key event. Pressing
+	 * moves the piece once and starts the DAS count in that direction. Releasing
+	 * the key hands the auto shift back to the other direction if that key is
+	 * still held. Returns whether the piece moved.
+	 */
+	private boolean applyShiftKey(GameEngine engine, int direction, boolean isPressed, boolean wasHeld) {
+		if (direction < 0) {
+			_isLeftHeld = isPressed;
+		} else {
+			_isRightHeld = isPressed;
+		}
+		if (isPressed && !wasHeld) {
+			_direction = direction;
+			_shiftTicks = 0;
+			return engine.tryMove(direction, 0);
+		}
+		if (!isPressed && _direction == direction) {
+			_direction = 0;
+			if (_isLeftHeld || _isRightHeld) {
+				_direction = _isLeftHeld ? -1 : 1;
+				_shiftTicks = 0;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This private helper method moves the piece for keys that have been held
+	 * long enough to repeat. Returns whether the piece moved.
+	 */
+	private boolean applyHeldKeys(GameEngine engine) {
+		boolean moved = false;
+		if (_direction != 0) {
+			_shiftTicks++;
+			if (_shiftTicks >= _das) {
+				if (_arr == 0) {
+					while (engine.tryMove(_direction, 0)) {
+						moved = true;
+					}
+				} else if ((_shiftTicks - _das) % _arr == 0) {
+					moved = engine.tryMove(_direction, 0);
+				}
+			}
+		}
+		if (_isDownHeld) {
+			_downTicks++;
+			if (_downTicks % Constants.SOFT_DROP_TICKS == 0 && engine.tryMove(0, 1)) {
+				moved = true;
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Sets the delayed auto shift, in ticks.
+	 */
+	public void setDas(int das) {
+		_das = das;
+	}
+
+	/**
+	 * Sets the auto repeat rate, in ticks. 0 means the piece moves all the way to
+	 * the wall as soon as DAS runs out.
+	 */
+	public void setArr(int arr) {
+		_arr = arr;
+	}
+
+	/**
+	 * Sets the ReplayWriter that key events are recorded to, or null to stop
+	 * recording, and which controller (ReplayWriter.KEYBOARD or
+	 * ReplayWriter.BOT) they are recorded as coming from.
+	 */
+	public void setRecorder(ReplayWriter recorder, int controller) {
+		_recorder = recorder;
+		_controller = controller;
+	}
+
+	/**
+	 * Accessor method for the DAS, in ticks.
+	 */
+	public int getDas() {
+		return _das;
+	}
+
+	/**
+	 * Accessor method for the ARR, in ticks.
+	 */
+	public int getArr() {
+		return _arr;
+	}
+
+	/**
+	 * Accessor method for the histogram of nanoseconds between a key press and the
+	 * move it caused.
+	 */
+	public LatencyHistogram getLatencyHistogram() {
+		return _latency;
+	}
+
+}
@@ -0,0 +1,93 @@
+package Tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a fixed size queue of key events that is safe for one thread
+ * to add to and another thread to take from without any locks. The JavaFX
+ * thread adds an event for every key press and release, and the game logic
+ * takes them all out at the start of each tick. Each event is an Action,
+ * whether the key went down or up, and the System.nanoTime at which it
+ * happened. If the queue is full, new events are dropped.
+ */
+public class InputQueue {
+	private int[] _events;
+	private long[] _times;
+	private int _mask;
+	private AtomicLong _head;
+	private AtomicLong _tail;
+
+	/**
+	 * Constructor for the InputQueue. The capacity is rounded up to a power of 2
+	 * so that positions can be wrapped with a bitmask.
+	 */
+	public InputQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		_events = new int[size];
+		_times = new long[size];
+		_mask = size - 1;
+		_head = new AtomicLong();
+		_tail = new AtomicLong();
+	}
+
+	/**
+	 * Adds an event to the queue. Only one thread may call this. Returns false if
+	 * the queue was full and the event was dropped.
+	 */
+	public boolean offer(Action action, boolean isPressed, long time) {
+		long tail = _tail.get();
+		if (tail - _head.get() > _mask) {
+			return false;
+		}
+		int index = (int) tail & _mask;
+		_events[index] = (action.ordinal() << 1) | (isPressed ? 1 : 0);
+		_times[index] = time;
+		_tail.lazySet(tail + 1); // Publishes the event to the reading thread.
+		return true;
+	}
+
+	/**
+	 * Returns whether there are any events waiting. Only the reading thread may
+	 * call this, along with the other methods below.
+	 */
+	public boolean isEmpty() {
+		return _head.get() == _tail.get();
+	}
+
+	/**
+	 * Returns the Action of the oldest event. The queue must not be empty.
+	 */
+	public Action peekAction() {
+		return Action.fromOrdinal(_events[(int) _head.get() & _mask] >>> 1);
+	}
+
+	/**
+	 * Returns whether the oldest event was a key press rather than a release. The
+	 * queue must not be empty.
+	 */
+	public boolean peekPressed() {
+		return (_events[(int) _head.get() & _mask] & 1) != 0;
+	}
+
+	/**
+	 * Returns the time of the oldest event. The queue must not be empty.
+	 */
+	public long peekTime() {
+		return _times[(int) _head.get() & _mask];
+	}
+
+	/**
+	 * Removes the oldest event, freeing its slot for the writing thread.
+	 */
+	public void remove() {
+		_head.lazySet(_head.get() + 1);
+	}
+
+	/**
+	 * Removes every waiting event.
+	 */
+	public void clear() {
+		_head.lazySet(_tail.get());
+	}
+
+}
@@ -0,0 +1,130 @@
+package Tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts how often each latency (or any other non-negative long
+ * value) occurs, in the same way as an HDR histogram. Values below 32 each get
+ * their own bucket, and above that every power of 2 is split into 16 equal
+ * buckets, so every recorded value is kept to within about 6% of its real
+ * size while the whole range of a long fits in 1024 counters. Recording is a
+ * few bit operations and an atomic increment, so it can be done from any
+ * thread, and it never allocates.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BITS = 5;
+	private static final int HALF = 1 << (SUB_BITS - 1);
+	private static final int NUM_BUCKETS = 64 * HALF;
+
+	private AtomicLongArray _counts;
+	private AtomicLong _total;
+	private AtomicLong _sum;
+	private AtomicLong _max;
+
+	/**
+	 * Constructor for the LatencyHistogram. It starts out empty.
+	 */
+	public LatencyHistogram() {
+		_counts = new AtomicLongArray(NUM_BUCKETS);
+		_total = new AtomicLong();
+		_sum = new AtomicLong();
+		_max = new AtomicLong();
+	}
+
+	/**
+	 * Records one value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		_counts.incrementAndGet(LatencyHistogram.bucketOf(value));
+		_total.incrementAndGet();
+		_sum.addAndGet(value);
+		long max = _max.get();
+		while (value > max && !_max.compareAndSet(max, value)) {
+			max = _max.get();
+		}
+	}
+
+	/**
+	 * This private helper method returns the bucket that a value belongs in.
+	 */
+	private static int bucketOf(long value) {
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		if (msb < SUB_BITS) {
+			return (int) value;
+		}
+		int shift = msb - SUB_BITS + 1;
+		return shift * HALF + (int) (value >>> shift);
+	}
+
+	/**
+	 * This private helper method returns the smallest value that belongs in the
+	 * given bucket.
+	 */
+	private static long lowestValueOf(int bucket) {
+		if (bucket < 2 * HALF) {
+			return bucket;
+		}
+		int shift = bucket / HALF - 1;
+		return ((long) (bucket % HALF + HALF)) << shift;
+	}
+
+	/**
+	 * Returns the value below which the given fraction (from 0 to 1) of all
+	 * recorded values fall, to within the precision of the buckets. Returns 0 if
+	 * nothing has been recorded.
+	 */
+	public long getPercentile(double fraction) {
+		long total = _total.get();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			seen = seen + _counts.get(bucket);
+			if (seen >= target) {
+				return Math.min(_max.get(), LatencyHistogram.lowestValueOf(bucket + 1) - 1);
+			}
+		}
+		return _max.get();
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 */
+	public long getCount() {
+		return _total.get();
+	}
+
+	/**
+	 * Returns the mean of all recorded values, or 0 if there are none.
+	 */
+	public double getMean() {
+		long total = _total.get();
+		return total == 0 ? 0 : (double) _sum.get() / total;
+	}
+
+	/**
+	 * Returns the largest value recorded.
+	 */
+	public long getMax() {
+		return _max.get();
+	}
+
+	/**
+	 * Empties the histogram.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			_counts.set(bucket, 0);
+		}
+		_total.set(0);
+		_sum.set(0);
+		_max.set(0);
+	}
+
+}
@@ -0,0 +1,333 @@
+package Tetris;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This is the LoadClient class. It is a main class for testing a GameServer:
+ * it opens many connections to it at once, all from one thread, and plays a
+ * game on each of them by pressing and releasing random keys. Every message the
+ * server sends is read and checked to be one that Protocol knows about, and
+ * when a game ends a new one is started right away. At the end, the number of
+ * messages and bytes received per second is printed, along with how many games
+ * were played and how many connections were lost.
+ *
+ * With --deltas, every connection asks for DeltaEncoder frames and follows
+ * its game with a DeltaDecoder. Each time a FULL frame arrives, the game the
+ * decoder has built up from the DELTA frames before it is checked against it,
+ * and any difference in the board, the falling piece or the score is counted
+ * as a mismatch.
+ *
+ * The options are:
+ *   --host H        server to connect to (default localhost)
+ *   --port N        port to connect to (default Constants.SERVER_PORT)
+ *   --clients N     number of connections (default 1000)
+ *   --presses N     key presses per second on each connection (default 5)
+ *   --seconds N     how long to run for (default 30)
+ *   --seed S        seed of the random key presses (default 1)
+ *   --deltas        ask for DeltaEncoder frames instead of PIECE and BOARD
+ *   --mode M        the server's generator mode, for --deltas (default seven_bag)
+ */
+public class LoadClient {
+	private static final Action[] KEYS = { Action.LEFT, Action.RIGHT, Action.DOWN, Action.ROTATE, Action.DROP };
+
+	private String _host;
+	private int _port;
+	private int _numClients;
+	private int _presses;
+	private int _seconds;
+	private boolean _useDeltas;
+	private GeneratorMode _mode;
+	private GameEngine _check;
+	private SplittableRandom _random;
+	private Selector _selector;
+	private List<Connection> _connections;
+	private long _messages;
+	private long _bytes;
+	private long _games;
+	private int _lost;
+	private long _checks;
+	private long _mismatches;
+
+	/**
+	 * Constructor for the LoadClient. Reads the options from the command line
+	 * arguments.
+	 */
+	public LoadClient(String[] argv) {
+		_host = "localhost";
+		_port = Constants.SERVER_PORT;
+		_numClients = 1000;
+		_presses = 5;
+		_seconds = 30;
+		_useDeltas = false;
+		_mode = GeneratorMode.SEVEN_BAG;
+		long seed = 1;
+		for (int i = 0; i < argv.length; i++) {
+			switch (argv[i]) {
+			case "--host":
+				_host = argv[++i];
+				break;
+			case "--port":
+				_port = Integer.parseInt(argv[++i]);
+				break;
+			case "--clients":
+				_numClients = Integer.parseInt(argv[++i]);
+				break;
+			case "--presses":
+				_presses = Integer.parseInt(argv[++i]);
+				break;
+			case "--seconds":
+				_seconds = Integer.parseInt(argv[++i]);
+				break;
+			case "--seed":
+				seed = Long.parseLong(argv[++i]);
+				break;
+			case "--deltas":
+				_useDeltas = true;
+				break;
+			case "--mode":
+				_mode = GeneratorMode.valueOf(argv[++i].toUpperCase());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + argv[i]);
+			}
+		}
+		_random = new SplittableRandom(seed);
+		_connections = new ArrayList<Connection>();
+		_check = new GameEngine(_mode, 0);
+	}
+
+	/**
+	 * Connects, plays until the time is up, and prints the results.
+	 */
+	public void run() throws IOException {
+		_selector = Selector.open();
+		InetSocketAddress address = new InetSocketAddress(_host, _port);
+		for (int i = 0; i < _numClients; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.configureBlocking(false);
+			Connection connection = new Connection(channel);
+			channel.register(_selector, SelectionKey.OP_READ, connection);
+			_connections.add(connection);
+			if (_useDeltas) {
+				connection.send(Protocol.DELTAS);
+			}
+		}
+		System.out.println(_numClients + " connections open");
+		long start = System.nanoTime();
+		long end = start + _seconds * 1000000000L;
+		long nextPress = start;
+		// Presses are spread over the ticks of a second so they don't all arrive at once.
+		long pressInterval = Constants.TICK_NANOS;
+		double pressChance = (double) _presses / Constants.TICKS_PER_SECOND;
+		while (System.nanoTime() < end) {
+			_selector.select(1);
+			this.readMessages();
+			if (System.nanoTime() >= nextPress) {
+				for (Connection connection : _connections) {
+					if (connection.isOpen() && _random.nextDouble() < pressChance) {
+						connection.pressRandomKey();
+					}
+				}
+				nextPress = nextPress + pressInterval;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		for (Connection connection : _connections) {
+			connection.close();
+		}
+		System.out.printf("%.0f messages/s, %.0f KB/s, %d games over, %d connections lost%n", _messages / seconds,
+				_bytes / seconds / 1024, _games, _lost);
+		if (_useDeltas) {
+			System.out.printf("%d full frames checked, %d mismatches%n", _checks, _mismatches);
+		}
+	}
+
+	/**
+	 * This private helper method reads from every connection that has something
+	 * waiting.
+	 */
+	private void readMessages() {
+		Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			Connection connection = (Connection) key.attachment();
+			if (key.isValid() && key.isReadable() && !connection.read()) {
+				key.cancel();
+				connection.close();
+				_lost++;
+			}
+		}
+	}
+
+	/**
+	 * This private helper method checks the game a DeltaDecoder has built up
+	 * against the FULL frame at the buffer's position, without moving it.
+	 */
+	private void checkFull(DeltaDecoder decoder, ByteBuffer buffer) {
+		GameEngine engine = decoder.getEngine();
+		int start = buffer.position();
+		buffer.position(start + 1);
+		boolean isRead = Snapshot.read(_check, buffer);
+		buffer.position(start);
+		if (!isRead || _check.getTick() < engine.getTick()) {
+			return; // A new game has started.
+		}
+		_checks++;
+		boolean isSame = engine.getPieceType() == _check.getPieceType()
+				&& engine.getRotation() == _check.getRotation() && engine.getPieceRow() == _check.getPieceRow()
+				&& engine.getPieceCol() == _check.getPieceCol() && engine.getScore() == _check.getScore()
+				&& engine.getLines() == _check.getLines() && engine.isGameOver() == _check.isGameOver();
+		for (int row = 0; row < Constants.NUM_ROWS; row++) {
+			for (int col = 0; col < Constants.NUM_COLS; col++) {
+				isSame = isSame && engine.getBoard().getCell(row, col) == _check.getBoard().getCell(row, col);
+			}
+		}
+		if (!isSame) {
+			_mismatches++;
+		}
+	}
+
+	/**
+	 * This private inner class models one connection to the server, and the
+	 * messages it has received that haven't been read in full yet.
+	 */
+	private class Connection {
+		private SocketChannel _channel;
+		private ByteBuffer _in;
+		private ByteBuffer _out;
+		private DeltaDecoder _decoder;
+
+		/**
+		 * Constructor for the Connection.
+		 */
+		public Connection(SocketChannel channel) {
+			_channel = channel;
+			_decoder = new DeltaDecoder(_mode);
+			_in = ByteBuffer.allocate(Constants.SERVER_SEND_BUFFER_SIZE);
+			_out = ByteBuffer.allocate(2);
+		}
+
+		/**
+		 * Reads whatever the server has sent and counts every whole message in it.
+		 * Returns false if the connection was closed or the server sent something
+		 * that isn't a message.
+		 */
+		public boolean read() {
+			try {
+				int read = _channel.read(_in);
+				if (read < 0) {
+					return false;
+				}
+				_bytes = _bytes + read;
+			} catch (IOException e) {
+				return false;
+			}
+			_in.flip();
+			while (_in.hasRemaining()) {
+				int start = _in.position();
+				int type = _in.get(start);
+				int size = Protocol.getSize(_in);
+				if (size == 0) {
+					System.out.println("Unknown message type " + type);
+					return false;
+				}
+				if (size < 0 || _in.remaining() < size) {
+					break;
+				}
+				if (type == Protocol.FRAME) {
+					this.readFrames(start + Protocol.FRAME_HEADER_SIZE, start + size);
+				}
+				_in.position(start + size);
+				_messages++;
+				if (type == Protocol.OVER) {
+					_games++;
+					this.send(Protocol.RESTART);
+				}
+			}
+			_in.compact();
+			return true;
+		}
+
+		/**
+		 * This private helper method applies the frames between the given positions
+		 * to the DeltaDecoder, checking the game against each FULL frame first.
+		 */
+		private void readFrames(int position, int end) {
+			int limit = _in.limit();
+			_in.position(position);
+			_in.limit(end);
+			while (_in.hasRemaining()) {
+				if (_decoder.isSynced() && _in.get(_in.position()) == DeltaEncoder.FULL) {
+					LoadClient.this.checkFull(_decoder, _in);
+				}
+				if (!_decoder.apply(_in)) {
+					break; // The rest can't be read until the next FULL frame.
+				}
+			}
+			_in.limit(limit);
+		}
+
+		/**
+		 * Presses and releases a random key.
+		 */
+		public void pressRandomKey() {
+			int code = KEYS[_random.nextInt(KEYS.length)].ordinal() << 1;
+			this.send(code | 1, code);
+		}
+
+		/**
+		 * This private helper method sends one or two bytes. They are so small that
+		 * they always fit in the socket's buffer.
+		 */
+		private void send(int... codes) {
+			_out.clear();
+			for (int code : codes) {
+				_out.put((byte) code);
+			}
+			_out.flip();
+			try {
+				_channel.write(_out);
+			} catch (IOException e) {
+				this.close();
+			}
+		}
+
+		/**
+		 * Returns whether the connection is still open.
+		 */
+		public boolean isOpen() {
+			return _channel.isOpen();
+		}
+
+		/**
+		 * Closes the connection.
+		 */
+		public void close() {
+			try {
+				_channel.close();
+			} catch (IOException e) {
+				// The connection is already gone.
+			}
+		}
+	}
+
+	/*
+	 * Here is the mainline for the LoadClient.
+	 */
+	public static void main(String[] argv) throws IOException {
+		new LoadClient(argv).run();
+	}
+
+}
@@ -0,0 +1,124 @@
+package Tetris;
+
+/**
+ * This class lets a PlacementSearch look ahead at the pieces that come after
+ * the falling one. To score a placement of the falling piece, it locks the
+ * piece on a copy of the board, and then finds the best placement of the next
+ * piece on that board, and so on, scoring only the board left once the last
+ * piece is placed. The lines each piece clears on the way are added to the
+ * score as they happen, so that the best value found for a board and the
+ * pieces still to come does not depend on how the board was reached.
+ *
+ * That value is stored in a TranspositionTable under the hash of the board
+ * and the pieces still to come, along with the placement that scored it.
+ * Many different placements can leave the same board, so a board that was
+ * already searched, on this thread or any other, is only looked up. Values are
+ * kept as floats, the same as in the table, so that a value that was looked up
+ * is exactly the one that would have been worked out, and the search gives the
+ * same answer whichever thread got there first.
+ *
+ * Each thread needs its own Lookahead, since it keeps a scratch board for each
+ * piece it looks ahead at.
+ */
+public class Lookahead {
+	private PieceType[] _pieces;
+	private int _numPieces;
+	private TranspositionTable _table;
+	private long[] _keys;
+	private Board[] _boards;
+	private int[][] _rotations;
+	private int[][] _cols;
+	private BoardFeatures _features;
+
+	/**
+	 * Constructor for the Lookahead. Takes in the board the falling piece is on,
+	 * the list of pieces that come after it, how many of them to look at, and
+	 * the table that searched boards are stored in. The scratch boards are made
+	 * the same size as the given board.
+	 */
+	public Lookahead(Board board, PieceType[] pieces, int numPieces, TranspositionTable table) {
+		_pieces = pieces;
+		_numPieces = numPieces;
+		_table = table;
+		_keys = new long[numPieces];
+		_boards = new Board[numPieces];
+		_rotations = new int[numPieces][PieceType.NUM_ROTATIONS * board.getNumCols()];
+		_cols = new int[numPieces][PieceType.NUM_ROTATIONS * board.getNumCols()];
+		for (int depth = 0; depth < numPieces; depth++) {
+			_keys[depth] = Lookahead.hashPieces(pieces, depth, numPieces, 0);
+			_boards[depth] = new Board(board.getWidth(), board.getHeight());
+		}
+		_features = new BoardFeatures();
+	}
+
+	/**
+	 * Returns the hash of the pieces in the given list from the first given index
+	 * up to but not including the second, where the first of them is counted as
+	 * being at the given place in the list of pieces still to be placed (0 for
+	 * the one that is falling). Exclusive-ored with the hash of a board, the hash
+	 * of all of the pieces still to be placed is the key a search of that board
+	 * is stored under.
+	 */
+	public static long hashPieces(PieceType[] pieces, int from, int to, int index) {
+		long hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = hash ^ Zobrist.getPieceKey(pieces[i], index + i - from);
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the score of locking a piece of the given type and rotation state,
+	 * dropped straight down from the given row and column on the given board,
+	 * and then placing every piece this Lookahead looks at as well as it can.
+	 */
+	public double score(Board board, PieceType type, int rotation, int row, int col) {
+		Board next = _boards[0];
+		next.copyFrom(board);
+		int lines = next.place(type, rotation, board.findLandingRow(type, rotation, row, col), col);
+		return Constants.BOT_LINES_WEIGHT * lines + this.getValue(0);
+	}
+
+	/**
+	 * This private helper method returns the best score that can be reached by
+	 * placing the pieces from the given depth on, onto the scratch board for that
+	 * depth. The last piece is scored by probing the board, and each piece before
+	 * it by placing it on the next scratch board and searching from there. If the
+	 * piece cannot spawn at all, the score is Constants.BOT_TOP_OUT_SCORE.
+	 */
+	private double getValue(int depth) {
+		Board board = _boards[depth];
+		long key = board.getHash() ^ _keys[depth];
+		long data = _table.probe(key);
+		if (data != 0) {
+			return TranspositionTable.getScore(data);
+		}
+		PieceType type = _pieces[depth];
+		int row = type.getSpawnRow();
+		int numCandidates = Bot.listCandidates(board, type, _rotations[depth], _cols[depth]);
+		float best = (float) Constants.BOT_TOP_OUT_SCORE;
+		int bestRotation = 0;
+		int bestCol = 0;
+		for (int i = 0; i < numCandidates; i++) {
+			int rotation = _rotations[depth][i];
+			int col = _cols[depth][i];
+			double score;
+			if (depth == _numPieces - 1) {
+				score = PlacementSearch.score(board, type, rotation, row, col, _features);
+			} else {
+				Board next = _boards[depth + 1];
+				next.copyFrom(board);
+				int lines = next.place(type, rotation, board.findLandingRow(type, rotation, row, col), col);
+				score = Constants.BOT_LINES_WEIGHT * lines + this.getValue(depth + 1);
+			}
+			if (i == 0 || (float) score > best) {
+				best = (float) score;
+				bestRotation = rotation;
+				bestCol = col;
+			}
+		}
+		_table.store(key, best, bestRotation, bestCol, _numPieces - depth);
+		return best;
+	}
+
+}
@@ -0,0 +1,115 @@
+package Tetris;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is the registry of the game's metrics: named counters, which are
+ * LongAdders, and named histograms, which are LatencyHistograms. A metric is
+ * made the first time its name is asked for, and the same one is returned
+ * every time after that, so a class that records a metric usually looks it up
+ * once and keeps it in a field. Both kinds can be updated from any thread
+ * without locking and without allocating, so recording is cheap enough for
+ * every tick and every frame.
+ *
+ * Names are made of words separated by dots, with the unit last for
+ * histograms (for example "game.tick.nanos"). When the program exits, every
+ * metric can be written to a text file, sorted by name, to help work out
+ * where stutter came from.
+ */
+public class Metrics {
+	private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<String, LongAdder>();
+	private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<String, LatencyHistogram>();
+
+	/**
+	 * Returns the counter with the given name, making it if there isn't one yet.
+	 */
+	public static LongAdder counter(String name) {
+		LongAdder counter = COUNTERS.get(name);
+		if (counter == null) {
+			COUNTERS.putIfAbsent(name, new LongAdder());
+			counter = COUNTERS.get(name);
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the histogram with the given name, making it if there isn't one
+	 * yet.
+	 */
+	public static LatencyHistogram histogram(String name) {
+		LatencyHistogram histogram = HISTOGRAMS.get(name);
+		if (histogram == null) {
+			HISTOGRAMS.putIfAbsent(name, new LatencyHistogram());
+			histogram = HISTOGRAMS.get(name);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Adds a histogram that was made somewhere else to the registry under the
+	 * given name, replacing any histogram that already had that name.
+	 */
+	public static void register(String name, LatencyHistogram histogram) {
+		HISTOGRAMS.put(name, histogram);
+	}
+
+	/**
+	 * Writes every counter and histogram to the given file, replacing whatever was
+	 * there. Each counter is one line with its name and value. Each histogram is
+	 * one line with its name, count, mean, percentiles and maximum.
+	 */
+	public static void dump(Path path) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+			out.println("# Tetris metrics, " + System.currentTimeMillis() + " ms since the epoch");
+			for (Map.Entry<String, LongAdder> entry : COUNTERS.entrySet()) {
+				out.printf("counter %s %d%n", entry.getKey(), entry.getValue().sum());
+			}
+			for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+				LatencyHistogram histogram = entry.getValue();
+				out.printf("histogram %s count %d mean %.1f p50 %d p90 %d p99 %d p999 %d max %d%n", entry.getKey(),
+						histogram.getCount(), histogram.getMean(), histogram.getPercentile(0.5),
+						histogram.getPercentile(0.9), histogram.getPercentile(0.99), histogram.getPercentile(0.999),
+						histogram.getMax());
+			}
+		}
+	}
+
+	/**
+	 * Makes the metrics get written to the given file when the program exits,
+	 * however it exits.
+	 */
+	public static void dumpOnExit(Path path) {
+		Runtime.getRuntime().addShutdownHook(new Thread(new Dumper(path), "metrics-dump"));
+	}
+
+	/**
+	 * This private static inner class writes the metrics to a file when it is
+	 * run. It is run by the shutdown hook that dumpOnExit adds.
+	 */
+	private static class Dumper implements Runnable {
+		private Path _path;
+
+		/**
+		 * Constructor for the Dumper. Takes in the file to write to.
+		 */
+		public Dumper(Path path) {
+			_path = path;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Metrics.dump(_path);
+			} catch (IOException e) {
+				System.err.println("Could not write metrics: " + e.getMessage());
+			}
+		}
+	}
+
+}
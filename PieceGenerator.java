@@ -0,0 +1,46 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface models a source of random pieces. Every game owns its own
+ * generator, seeded with its own number, so two games never share a random
+ * number generator and the same seed always gives the same sequence of pieces.
+ * UniformGenerator picks every piece independently, BagGenerator deals out
+ * shuffled bags of all 7 pieces, and HistoryGenerator rerolls pieces that came
+ * up recently. The state of a generator can be saved to and loaded from a
+ * ByteBuffer, in at most STATE_BYTES bytes, so that a game can be picked up
+ * again in the middle of its sequence.
+ */
+public interface PieceGenerator {
+	int STATE_BYTES = 16;
+
+	/**
+	 * Starts the sequence of pieces over from the given seed.
+	 */
+	void reset(long seed);
+
+	/**
+	 * Returns the next piece in the sequence.
+	 */
+	PieceType next();
+
+	/**
+	 * Writes the generator's state at the buffer's position, using at most
+	 * STATE_BYTES bytes.
+	 */
+	void save(ByteBuffer buffer);
+
+	/**
+	 * Reads a state written by save from the buffer's position, so that the
+	 * generator carries on from where the saved one was.
+	 */
+	void load(ByteBuffer buffer);
+
+	/**
+	 * Returns whether the bytes starting at the given index of the buffer are a
+	 * state that load can read. The buffer is not changed.
+	 */
+	boolean isValid(ByteBuffer buffer, int start);
+
+}
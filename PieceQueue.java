@@ -0,0 +1,170 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class keeps the next few pieces that a PieceGenerator will give, so
+ * that they can be looked at before they are played, by a preview or by a
+ * computer player. The upcoming pieces are kept in a small ring buffer, and
+ * taking the next piece refills the slot it leaves with a new one from the
+ * generator. The whole queue, generator included, can be saved to and loaded
+ * from a ByteBuffer in a fixed number of bytes.
+ */
+public class PieceQueue {
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private PieceGenerator _generator;
+	private GeneratorMode _mode;
+	private PieceType[] _upcoming;
+	private int _head;
+	private long _seed;
+	private long _drawn;
+	private ByteBuffer _scratch;
+
+	/**
+	 * Constructor for the PieceQueue. Takes in the mode of generator to use, how
+	 * many pieces can be looked at ahead of time, and the seed of the first game.
+	 */
+	public PieceQueue(GeneratorMode mode, int size, long seed) {
+		_mode = mode;
+		_generator = mode.create();
+		_upcoming = new PieceType[size];
+		_scratch = ByteBuffer.allocate(this.getStateBytes());
+		this.reset(seed);
+	}
+
+	/**
+	 * Starts the sequence of pieces over from the given seed, and fills the queue.
+	 */
+	public void reset(long seed) {
+		_seed = seed;
+		_generator.reset(seed);
+		for (int i = 0; i < _upcoming.length; i++) {
+			_upcoming[i] = _generator.next();
+		}
+		_head = 0;
+		_drawn = 0;
+	}
+
+	/**
+	 * Makes this queue give the same pieces as another queue of the same mode and
+	 * size, by saving the other queue's state and loading it here.
+	 */
+	public void copyFrom(PieceQueue other) {
+		_scratch.clear();
+		other.save(_scratch);
+		_scratch.flip();
+		this.load(_scratch);
+	}
+
+	/**
+	 * Returns how many bytes save writes for a queue of the given size.
+	 */
+	public static int getStateBytes(int size) {
+		return 8 + 8 + 1 + size + PieceGenerator.STATE_BYTES;
+	}
+
+	/**
+	 * Returns how many bytes save writes for this queue.
+	 */
+	public int getStateBytes() {
+		return PieceQueue.getStateBytes(_upcoming.length);
+	}
+
+	/**
+	 * Writes the queue's seed, how many pieces it has given out, the upcoming
+	 * pieces (from the next one on) and the generator's state at the buffer's
+	 * position. Exactly getStateBytes bytes are written.
+	 */
+	public void save(ByteBuffer buffer) {
+		buffer.putLong(_seed);
+		buffer.putLong(_drawn);
+		buffer.put((byte) _upcoming.length);
+		for (int i = 0; i < _upcoming.length; i++) {
+			buffer.put((byte) this.peek(i).ordinal());
+		}
+		int start = buffer.position();
+		_generator.save(buffer);
+		buffer.position(start + PieceGenerator.STATE_BYTES);
+	}
+
+	/**
+	 * Returns whether the bytes starting at the given index of the buffer are a
+	 * queue that load can read: one of the same size as this one, that has given
+	 * out a number of pieces that isn't negative, whose upcoming pieces are all
+	 * real piece types, and whose generator's state is one that this queue's
+	 * generator can load. The buffer is not changed.
+	 */
+	public boolean isValid(ByteBuffer buffer, int start) {
+		if (buffer.getLong(start + 8) < 0 || buffer.get(start + 16) != _upcoming.length) {
+			return false;
+		}
+		for (int i = 0; i < _upcoming.length; i++) {
+			int code = buffer.get(start + 17 + i);
+			if (code < 0 || code >= TYPES.length) {
+				return false;
+			}
+		}
+		return _generator.isValid(buffer, start + 17 + _upcoming.length);
+	}
+
+	/**
+	 * Reads a queue written by save from the buffer's position. The saved queue
+	 * must have had the same mode and size as this one, and must be valid (see
+	 * isValid).
+	 */
+	public void load(ByteBuffer buffer) {
+		_seed = buffer.getLong();
+		_drawn = buffer.getLong();
+		buffer.get(); // The size, which must already match.
+		for (int i = 0; i < _upcoming.length; i++) {
+			_upcoming[i] = TYPES[buffer.get()];
+		}
+		_head = 0;
+		int start = buffer.position();
+		_generator.load(buffer);
+		buffer.position(start + PieceGenerator.STATE_BYTES);
+	}
+
+	/**
+	 * Takes the next piece out of the queue, and adds a new one at the back.
+	 */
+	public PieceType next() {
+		PieceType type = _upcoming[_head];
+		_upcoming[_head] = _generator.next();
+		_head = (_head + 1) % _upcoming.length;
+		_drawn++;
+		return type;
+	}
+
+	/**
+	 * Returns an upcoming piece without taking it out of the queue. 0 is the
+	 * piece that next will return, 1 is the one after that, and so on, up to one
+	 * less than getSize.
+	 */
+	public PieceType peek(int index) {
+		return _upcoming[(_head + index) % _upcoming.length];
+	}
+
+	/**
+	 * Returns how many upcoming pieces can be looked at.
+	 */
+	public int getSize() {
+		return _upcoming.length;
+	}
+
+	/**
+	 * Accessor method for the seed the current sequence was started from.
+	 */
+	public long getSeed() {
+		return _seed;
+	}
+
+	/**
+	 * Accessor method for the mode of the generator.
+	 */
+	public GeneratorMode getMode() {
+		return _mode;
+	}
+
+}
@@ -0,0 +1,206 @@
+package Tetris;
+
+import java.util.Arrays;
+
+/**
+ * This enum models the 7 types of tetris pieces. Each type is built once from
+ * its starting coordinates in Constants, and all 4 of its rotation states are
+ * worked out ahead of time. State 0 is the starting orientation and each
+ * following state is a counter clockwise turn of the one before it, about the
+ * second square of the piece. For every state, the offsets of the 4 squares
+ * from that center are stored, along with the piece's bitmask for each row it
+ * covers, so a rotation is just a lookup into these tables. The lowest square
+ * in each column the piece covers is stored too, so that how far the piece can
+ * fall can be worked out from the board's column heights. The square piece has
+ * the same shape in every state, so rotating it changes nothing.
+ */
+public enum PieceType {
+	ONE(Constants.PIECE_ONE_COORDS, true),
+	TWO(Constants.PIECE_TWO_COORDS, false),
+	THREE(Constants.PIECE_THREE_COORDS, true),
+	FOUR(Constants.PIECE_FOUR_COORDS, true),
+	FIVE(Constants.PIECE_FIVE_COORDS, true),
+	SIX(Constants.PIECE_SIX_COORDS, true),
+	SEVEN(Constants.PIECE_SEVEN_COORDS, true);
+
+	public static final int NUM_ROTATIONS = 4;
+
+	private int _spawnRow;
+	private int _spawnCol;
+	private int[][][] _offsets;
+	private int[][] _masks;
+	private int[] _maskTop;
+	private int[] _maskLeft;
+	private int[] _maskRows;
+	private int[] _maskCols;
+	private int[][] _bottoms;
+	private int[][] _kicks;
+
+	/**
+	 * Builds the rotation tables of a piece type from its 2D array of starting
+	 * pixel coordinates. The second square of the piece is its center of rotation,
+	 * so it is also the square whose cell is stored as the spawn position. If the
+	 * piece cannot rotate, every state is a copy of the starting one.
+	 */
+	PieceType(int[][] coords, boolean canRotate) {
+		_spawnCol = coords[1][0] / Constants.SQUARE_SIZE;
+		_spawnRow = coords[1][1] / Constants.SQUARE_SIZE;
+		_offsets = new int[NUM_ROTATIONS][Constants.NUM_SQUARES][2];
+		_masks = new int[NUM_ROTATIONS][Constants.NUM_SQUARES];
+		_maskTop = new int[NUM_ROTATIONS];
+		_maskLeft = new int[NUM_ROTATIONS];
+		_maskRows = new int[NUM_ROTATIONS];
+		_maskCols = new int[NUM_ROTATIONS];
+		_bottoms = new int[NUM_ROTATIONS][];
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			_offsets[0][i][0] = coords[i][0] / Constants.SQUARE_SIZE - _spawnCol;
+			_offsets[0][i][1] = coords[i][1] / Constants.SQUARE_SIZE - _spawnRow;
+		}
+		for (int state = 1; state < NUM_ROTATIONS; state++) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				if (canRotate) {
+					// A counter clockwise rotation sends (col, row) to (row, -col).
+					_offsets[state][i][0] = _offsets[state - 1][i][1];
+					_offsets[state][i][1] = -_offsets[state - 1][i][0];
+				} else {
+					_offsets[state][i][0] = _offsets[0][i][0];
+					_offsets[state][i][1] = _offsets[0][i][1];
+				}
+			}
+		}
+		for (int state = 0; state < NUM_ROTATIONS; state++) {
+			this.buildMasks(state);
+		}
+		if (!canRotate) {
+			_kicks = Constants.NO_WALL_KICKS;
+		} else if (coords == Constants.PIECE_ONE_COORDS) {
+			_kicks = Constants.LONG_WALL_KICKS;
+		} else {
+			_kicks = Constants.WALL_KICKS;
+		}
+	}
+
+	/**
+	 * This private helper method builds the row bitmasks for one rotation state.
+	 * Bit 0 of each mask is the leftmost column the piece covers in that state,
+	 * and the first mask is the topmost row it covers. The row offset of the
+	 * lowest square in each of those columns is also stored.
+	 */
+	private void buildMasks(int state) {
+		int minRow = 0;
+		int maxRow = 0;
+		int minCol = 0;
+		int maxCol = 0;
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			minRow = Math.min(minRow, _offsets[state][i][1]);
+			maxRow = Math.max(maxRow, _offsets[state][i][1]);
+			minCol = Math.min(minCol, _offsets[state][i][0]);
+			maxCol = Math.max(maxCol, _offsets[state][i][0]);
+		}
+		_maskTop[state] = minRow;
+		_maskLeft[state] = minCol;
+		_maskRows[state] = maxRow - minRow + 1;
+		_maskCols[state] = maxCol - minCol + 1;
+		_bottoms[state] = new int[_maskCols[state]];
+		Arrays.fill(_bottoms[state], minRow);
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			int col = _offsets[state][i][0] - minCol;
+			_masks[state][_offsets[state][i][1] - minRow] |= 1 << col;
+			_bottoms[state][col] = Math.max(_bottoms[state][col], _offsets[state][i][1]);
+		}
+	}
+
+	/**
+	 * Returns the rotation state that follows the given one after a counter
+	 * clockwise turn.
+	 */
+	public static int nextRotation(int state) {
+		return (state + 1) % NUM_ROTATIONS;
+	}
+
+	/**
+	 * Returns the column offset of the given square from the center, in the given
+	 * rotation state.
+	 */
+	public int getColOffset(int state, int square) {
+		return _offsets[state][square][0];
+	}
+
+	/**
+	 * Returns the row offset of the given square from the center, in the given
+	 * rotation state.
+	 */
+	public int getRowOffset(int state, int square) {
+		return _offsets[state][square][1];
+	}
+
+	/**
+	 * Returns the row bitmasks of the piece in the given rotation state.
+	 */
+	public int[] getMasks(int state) {
+		return _masks[state];
+	}
+
+	/**
+	 * Returns how many rows above the center the first row bitmask is, in the
+	 * given rotation state. This is zero or negative.
+	 */
+	public int getMaskTop(int state) {
+		return _maskTop[state];
+	}
+
+	/**
+	 * Returns how many columns left of the center bit 0 of the row bitmasks is,
+	 * in the given rotation state. This is zero or negative.
+	 */
+	public int getMaskLeft(int state) {
+		return _maskLeft[state];
+	}
+
+	/**
+	 * Returns how many rows the piece covers in the given rotation state.
+	 */
+	public int getMaskRows(int state) {
+		return _maskRows[state];
+	}
+
+	/**
+	 * Returns how many columns the piece covers in the given rotation state.
+	 */
+	public int getMaskCols(int state) {
+		return _maskCols[state];
+	}
+
+	/**
+	 * Returns the row offset from the center of the lowest square in one of the
+	 * columns the piece covers, in the given rotation state. Column 0 is the
+	 * piece's leftmost column, the same as bit 0 of the row bitmasks.
+	 */
+	public int getBottom(int state, int col) {
+		return _bottoms[state][col];
+	}
+
+	/**
+	 * Returns the wall kicks to try, in order, when rotating this piece.
+	 */
+	public int[][] getKicks() {
+		return _kicks;
+	}
+
+	/**
+	 * Returns the row of the center square when the piece is spawned.
+	 */
+	public int getSpawnRow() {
+		return _spawnRow;
+	}
+
+	/**
+	 * Returns the column of the center square when the piece is spawned on the
+	 * board shown in the window. Board.getSpawnCol moves it to the middle of a
+	 * board of any other width.
+	 */
+	public int getSpawnCol() {
+		return _spawnCol;
+	}
+
+}
@@ -0,0 +1,63 @@
+package Tetris;
+
+/**
+ * This class models one place a piece could end up: where it is in the list
+ * of candidates it was picked from, the rotation state it is turned to, the
+ * row and column its center rests on, and the score the computer player gave
+ * the board that would result.
+ */
+public class Placement {
+	private int _index;
+	private int _rotation;
+	private int _row;
+	private int _col;
+	private double _score;
+
+	/**
+	 * Constructor for the Placement. Takes in the index of the candidate, the
+	 * rotation state, the row, the column and the score.
+	 */
+	public Placement(int index, int rotation, int row, int col, double score) {
+		_index = index;
+		_rotation = rotation;
+		_row = row;
+		_col = col;
+		_score = score;
+	}
+
+	/**
+	 * Accessor method for the index of the candidate.
+	 */
+	public int getIndex() {
+		return _index;
+	}
+
+	/**
+	 * Accessor method for the rotation state.
+	 */
+	public int getRotation() {
+		return _rotation;
+	}
+
+	/**
+	 * Accessor method for the row the piece's center rests on.
+	 */
+	public int getRow() {
+		return _row;
+	}
+
+	/**
+	 * Accessor method for the column of the piece's center.
+	 */
+	public int getCol() {
+		return _col;
+	}
+
+	/**
+	 * Accessor method for the score.
+	 */
+	public double getScore() {
+		return _score;
+	}
+
+}
@@ -0,0 +1,458 @@
+package Tetris;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class finds every place a piece can come to rest using the same moves
+ * a player has: left, right, down, rotate and drop, with wall kicks if the
+ * GameEngine uses them. Starting from where the piece spawns (see
+ * Constants.PIECE_*_COORDS), it does a breadth first search over the piece's
+ * positions, where a position is a rotation state, a row and a column, and a
+ * bitset records which positions have already been seen. Dropping from any
+ * position it reaches gives a place the piece can rest. Unlike only dropping
+ * straight down from the spawn row, this also finds placements that need the
+ * piece to be slid under an overhang (a tuck) or rotated into a gap (a spin).
+ *
+ * Because the search is breadth first, the first time a placement is found is
+ * by the shortest sequence of moves, and the placements are listed in the
+ * order they were found, so the ones needing the fewest key presses come
+ * first. Two placements that cover exactly the same cells, such as the square
+ * piece in any rotation state, are only listed once. For each position, the
+ * search keeps the position and move it was reached from, so the moves that
+ * reach a placement, ending with a drop, can be read back whenever they are
+ * asked for.
+ *
+ * The placements of each piece type are kept along with the hash of the board
+ * they were found on, so asking again for the same type on a board with the
+ * same cells filled costs nothing. Searches and cached answers are counted in
+ * the Metrics registry. A PlacementFinder is not safe to use from more than one
+ * thread at once.
+ */
+public class PlacementFinder {
+	private static final int NUM_TYPES = PieceType.values().length;
+	private static final LongAdder SEARCHES = Metrics.counter("bot.finder.searches");
+	private static final LongAdder CACHED = Metrics.counter("bot.finder.cached");
+
+	private int _width;
+	private int _height;
+	private int _numRows;
+	private int _numCols;
+	private long[] _seen;
+	private long[] _placed;
+	private int[] _queueRotations;
+	private int[] _queueRows;
+	private int[] _queueCols;
+	private int[] _jumpRotations;
+	private int[] _jumpCols;
+	private int[] _distances;
+	private int[][] _shapes;
+	private Placements[] _placements;
+
+	/**
+	 * Constructor for the PlacementFinder. The arrays the search uses are made
+	 * the first time it is used, to fit that board. For each rotation state of
+	 * each piece type, the first rotation state with exactly the same shape is
+	 * found here, so that placements covering the same cells can be told apart
+	 * quickly.
+	 */
+	public PlacementFinder() {
+		_width = 0;
+		_height = 0;
+		_shapes = new int[NUM_TYPES][PieceType.NUM_ROTATIONS];
+		_placements = new Placements[NUM_TYPES];
+		for (PieceType type : PieceType.values()) {
+			for (int rotation = 0; rotation < PieceType.NUM_ROTATIONS; rotation++) {
+				int shape = 0;
+				while (!PlacementFinder.isSameShape(type, shape, rotation)) {
+					shape++; // This stops at the rotation state itself at the latest.
+				}
+				_shapes[type.ordinal()][rotation] = shape;
+			}
+			_placements[type.ordinal()] = new Placements();
+		}
+	}
+
+	/**
+	 * This private helper method returns whether two rotation states of a piece
+	 * type have the same shape.
+	 */
+	private static boolean isSameShape(PieceType type, int rotation, int other) {
+		return type.getMaskRows(rotation) == type.getMaskRows(other)
+				&& Arrays.equals(type.getMasks(rotation), type.getMasks(other));
+	}
+
+	/**
+	 * Finds every placement a piece of the given type can reach on the given
+	 * board, unless they were already found for a board with the same hash, and
+	 * returns how many there are. They can then be read with getRotations,
+	 * getRows, getCols and getMoves until this type is looked up again on a
+	 * different board.
+	 */
+	public int find(Board board, PieceType type, boolean useWallKicks) {
+		this.fitTo(board);
+		Placements placements = _placements[type.ordinal()];
+		if (placements._isFound && placements._hash == board.getHash()
+				&& placements._useWallKicks == useWallKicks) {
+			CACHED.increment();
+			return placements._numPlacements;
+		}
+		SEARCHES.increment();
+		this.search(board, type, useWallKicks, placements);
+		placements._isFound = true;
+		placements._hash = board.getHash();
+		placements._useWallKicks = useWallKicks;
+		return placements._numPlacements;
+	}
+
+	/**
+	 * This private helper method makes the arrays the search uses fit the given
+	 * board, if it is a different size from the last one, and forgets every
+	 * placement found on the old size.
+	 */
+	private void fitTo(Board board) {
+		if (board.getWidth() == _width && board.getHeight() == _height) {
+			return;
+		}
+		_width = board.getWidth();
+		_height = board.getHeight();
+		_numRows = board.getNumRows();
+		_numCols = board.getNumCols();
+		int numStates = PieceType.NUM_ROTATIONS * _numRows * _numCols;
+		_seen = new long[(numStates + 63) >>> 6];
+		_placed = new long[(numStates + 63) >>> 6];
+		_queueRotations = new int[numStates];
+		_queueRows = new int[numStates];
+		_queueCols = new int[numStates];
+		_jumpRotations = new int[numStates];
+		_jumpCols = new int[numStates];
+		_distances = new int[numStates];
+		for (int i = 0; i < NUM_TYPES; i++) {
+			_placements[i].fitStates(numStates);
+		}
+	}
+
+	/**
+	 * This private helper method does the breadth first search. Each position
+	 * taken off the queue is dropped to find where it would rest, and then each
+	 * move is tried from it. A rotation tries each wall kick in turn, the same
+	 * way GameEngine.tryRotate does, and goes to the first position that fits.
+	 * A position right below one that was reached in as few moves lands in the
+	 * same place, so it is not dropped again.
+	 *
+	 * Most positions are in the open space between the border at the top and the
+	 * highest filled row, where every row is the same as the one above it, and
+	 * the moves can be made in any order. So the search only goes down into that
+	 * space as far as the first row where the piece can turn without hitting the
+	 * border at the top, and moving down from there goes straight to the last
+	 * row in the open space, counting one move for every row it passes. Those
+	 * positions wait in a second queue, since they are more moves away than the
+	 * others, and the two queues are taken from in order of how many moves
+	 * away each position is, so the search is still breadth first.
+	 */
+	private void search(Board board, PieceType type, boolean useWallKicks, Placements placements) {
+		Arrays.fill(_seen, 0);
+		Arrays.fill(_placed, 0);
+		int numPlacements = 0;
+		int head = 0;
+		int tail = 0;
+		int jumpHead = 0;
+		int jumpTail = 0;
+		int row = type.getSpawnRow();
+		int col = board.getSpawnCol(type);
+		if (!this.collides(board, type, 0, row, col)) {
+			int start = this.getState(0, row, col);
+			this.markSeen(start);
+			_distances[start] = 0;
+			placements._parents[start] = -1;
+			this.enqueue(tail, 0, row, col);
+			tail++;
+		}
+		int top = 0;
+		int bottom = 0;
+		for (int rotation = 0; rotation < PieceType.NUM_ROTATIONS; rotation++) {
+			top = Math.min(top, type.getMaskTop(rotation));
+			bottom = Math.max(bottom, type.getMaskTop(rotation) + type.getMaskRows(rotation));
+		}
+		int jumpRow = Math.max(row, Constants.BOARD_LOW_CUTOFF + 1 - top);
+		int jumpDistance = board.getTopRow() - bottom - jumpRow;
+		if (jumpDistance < 2) {
+			jumpRow = -1; // The open space is too small to be worth jumping over.
+		}
+		int[][] kicks = type.getKicks();
+		int numKicks = useWallKicks ? kicks.length : 1;
+		while (head < tail || jumpHead < jumpTail) {
+			int rotation;
+			int state;
+			if (jumpHead < jumpTail && (head == tail || _distances[this.getState(_jumpRotations[jumpHead], jumpRow,
+					_jumpCols[jumpHead])] + jumpDistance <= _distances[this.getState(_queueRotations[head],
+							_queueRows[head], _queueCols[head])])) {
+				rotation = _jumpRotations[jumpHead];
+				row = jumpRow + jumpDistance;
+				col = _jumpCols[jumpHead];
+				jumpHead++;
+				state = this.getState(rotation, row, col);
+				if (this.isSeen(state)) {
+					continue;
+				}
+				this.markSeen(state);
+				this.reach(placements, this.getState(rotation, jumpRow, col), state, Action.DOWN, jumpDistance);
+			} else {
+				rotation = _queueRotations[head];
+				row = _queueRows[head];
+				col = _queueCols[head];
+				head++;
+				state = this.getState(rotation, row, col);
+			}
+			int above = state - _numCols;
+			if (!this.isSeen(above) || _distances[above] > _distances[state]) {
+				int landingRow = board.findLandingRow(type, rotation, row, col);
+				if (this.markPlaced(type, rotation, landingRow, col)) {
+					placements.add(numPlacements, rotation, landingRow, col, state, _distances[state] + 1);
+					numPlacements++;
+				}
+			}
+			tail = this.visit(board, type, placements, state, rotation, row, col - 1, Action.LEFT, tail);
+			tail = this.visit(board, type, placements, state, rotation, row, col + 1, Action.RIGHT, tail);
+			if (row == jumpRow) {
+				_jumpRotations[jumpTail] = rotation;
+				_jumpCols[jumpTail] = col;
+				jumpTail++;
+			} else {
+				tail = this.visit(board, type, placements, state, rotation, row + 1, col, Action.DOWN, tail);
+			}
+			int next = PieceType.nextRotation(rotation);
+			for (int i = 0; i < numKicks; i++) {
+				int kickRow = row + kicks[i][1];
+				int kickCol = col + kicks[i][0];
+				int kicked = this.getState(next, kickRow, kickCol);
+				if (this.isSeen(kicked)) {
+					break; // A position that was seen fits, so this is the kick that would be used.
+				}
+				if (!this.collides(board, type, next, kickRow, kickCol)) {
+					this.markSeen(kicked);
+					this.reach(placements, state, kicked, Action.ROTATE, 1);
+					this.enqueue(tail, next, kickRow, kickCol);
+					tail++;
+					break;
+				}
+			}
+		}
+		placements._numPlacements = numPlacements;
+	}
+
+	/**
+	 * This private helper method adds a position to the end of the queue if it
+	 * has not been seen before and the piece fits there, remembering the
+	 * position and the move it was reached by. Returns the new end of the queue.
+	 */
+	private int visit(Board board, PieceType type, Placements placements, int from, int rotation, int row, int col,
+			Action action, int tail) {
+		int state = this.getState(rotation, row, col);
+		if (this.isSeen(state) || this.collides(board, type, rotation, row, col)) {
+			return tail;
+		}
+		this.markSeen(state);
+		this.reach(placements, from, state, action, 1);
+		this.enqueue(tail, rotation, row, col);
+		return tail + 1;
+	}
+
+	/**
+	 * This private helper method remembers that a position was reached from
+	 * another one by the given move, pressed the given number of times.
+	 */
+	private void reach(Placements placements, int from, int state, Action action, int presses) {
+		_distances[state] = _distances[from] + presses;
+		placements._parents[state] = from;
+		placements._actions[state] = (byte) action.ordinal();
+	}
+
+	/**
+	 * This private helper method puts a position at the given place in the
+	 * queue.
+	 */
+	private void enqueue(int index, int rotation, int row, int col) {
+		_queueRotations[index] = rotation;
+		_queueRows[index] = row;
+		_queueCols[index] = col;
+	}
+
+	/**
+	 * This private helper method records that the piece can rest in the given
+	 * position, and returns false if a placement covering the same cells was
+	 * already found. The cells are looked up by the first rotation state with the
+	 * same shape, and where that shape's top row and leftmost column would be.
+	 */
+	private boolean markPlaced(PieceType type, int rotation, int row, int col) {
+		int shape = _shapes[type.ordinal()][rotation];
+		int cells = this.getState(shape, row + type.getMaskTop(rotation), col + type.getMaskLeft(rotation));
+		if ((_placed[cells >>> 6] & (1L << cells)) != 0) {
+			return false;
+		}
+		_placed[cells >>> 6] = _placed[cells >>> 6] | (1L << cells);
+		return true;
+	}
+
+	/**
+	 * This private helper method returns whether a position has been seen.
+	 */
+	private boolean isSeen(int state) {
+		return (_seen[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * This private helper method marks a position as seen.
+	 */
+	private void markSeen(int state) {
+		_seen[state >>> 6] = _seen[state >>> 6] | (1L << state);
+	}
+
+	/**
+	 * This private helper method returns the number of a position: the rotation
+	 * state, then the row, then the column.
+	 */
+	private int getState(int rotation, int row, int col) {
+		return (rotation * _numRows + row) * _numCols + col;
+	}
+
+	/**
+	 * This private helper method returns whether a piece of the given type and
+	 * rotation state, centered at the given row and column, would intersect the
+	 * border or a landed piece. Most of the positions the search reaches are in
+	 * the open space between the border at the top and the highest filled row,
+	 * where the piece can only hit the border at the sides, so those are checked
+	 * against just the sides.
+	 */
+	private boolean collides(Board board, PieceType type, int rotation, int row, int col) {
+		int topRow = row + type.getMaskTop(rotation);
+		if (topRow >= Constants.BOARD_LOW_CUTOFF && topRow + type.getMaskRows(rotation) <= board.getTopRow()) {
+			int leftCol = col + type.getMaskLeft(rotation);
+			return leftCol < Constants.BOARD_LOW_CUTOFF || leftCol + type.getMaskCols(rotation) > board.getEndingCol();
+		}
+		return board.collides(type.getMasks(rotation), type.getMaskRows(rotation), row + type.getMaskTop(rotation),
+				col + type.getMaskLeft(rotation));
+	}
+
+	/**
+	 * Returns the rotation state of each placement found for the given type.
+	 */
+	public int[] getRotations(PieceType type) {
+		return _placements[type.ordinal()]._rotations;
+	}
+
+	/**
+	 * Returns the row the center of the piece rests on in each placement found
+	 * for the given type.
+	 */
+	public int[] getRows(PieceType type) {
+		return _placements[type.ordinal()]._rows;
+	}
+
+	/**
+	 * Returns the column of the center of the piece in each placement found for
+	 * the given type.
+	 */
+	public int[] getCols(PieceType type) {
+		return _placements[type.ordinal()]._cols;
+	}
+
+	/**
+	 * Returns how many moves, including the final drop, reach the given placement
+	 * of the given type.
+	 */
+	public int getNumMoves(PieceType type, int placement) {
+		return _placements[type.ordinal()]._numMoves[placement];
+	}
+
+	/**
+	 * Copies the moves that reach the given placement of the given type into the
+	 * given array, which needs room for getNumMoves of them, and returns how many
+	 * there are. They are found by following the position the piece is dropped
+	 * from back to where it spawned.
+	 */
+	public int getMoves(PieceType type, int placement, Action[] moves) {
+		Placements placements = _placements[type.ordinal()];
+		int numMoves = placements._numMoves[placement];
+		moves[numMoves - 1] = Action.DROP;
+		int index = numMoves - 2;
+		int state = placements._dropStates[placement];
+		while (placements._parents[state] >= 0) {
+			int parent = placements._parents[state];
+			Action action = Action.fromOrdinal(placements._actions[state]);
+			int presses = 1;
+			if (action == Action.DOWN) {
+				presses = (state - parent) / _numCols; // Moving down can skip over the open space.
+			}
+			for (int i = 0; i < presses; i++) {
+				moves[index] = action;
+				index--;
+			}
+			state = parent;
+		}
+		return numMoves;
+	}
+
+	/**
+	 * This private inner class holds what a search found for one piece type: the
+	 * placements, the position each is dropped from and how many moves reach
+	 * it, the position and move every position was reached from, and what the
+	 * search was done for. The lists of placements grow when there are more
+	 * than ever before.
+	 */
+	private static class Placements {
+		private boolean _isFound;
+		private long _hash;
+		private boolean _useWallKicks;
+		private int _numPlacements;
+		private int[] _rotations;
+		private int[] _rows;
+		private int[] _cols;
+		private int[] _dropStates;
+		private int[] _numMoves;
+		private int[] _parents;
+		private byte[] _actions;
+
+		/**
+		 * Constructor for the Placements. Starts with room for every placement a
+		 * piece has by dropping straight down on the board in the window.
+		 */
+		public Placements() {
+			_isFound = false;
+			_rotations = new int[PieceType.NUM_ROTATIONS * Constants.NUM_COLS];
+			_rows = new int[_rotations.length];
+			_cols = new int[_rotations.length];
+			_dropStates = new int[_rotations.length];
+			_numMoves = new int[_rotations.length];
+		}
+
+		/**
+		 * Makes room for the given number of positions, and forgets what was found
+		 * before.
+		 */
+		public void fitStates(int numStates) {
+			_isFound = false;
+			_parents = new int[numStates];
+			_actions = new byte[numStates];
+		}
+
+		/**
+		 * Adds a placement at the given index, growing the lists if they are full.
+		 */
+		public void add(int index, int rotation, int row, int col, int dropState, int numMoves) {
+			if (index == _rotations.length) {
+				_rotations = Arrays.copyOf(_rotations, 2 * index);
+				_rows = Arrays.copyOf(_rows, 2 * index);
+				_cols = Arrays.copyOf(_cols, 2 * index);
+				_dropStates = Arrays.copyOf(_dropStates, 2 * index);
+				_numMoves = Arrays.copyOf(_numMoves, 2 * index);
+			}
+			_rotations[index] = rotation;
+			_rows[index] = row;
+			_cols[index] = col;
+			_dropStates[index] = dropState;
+			_numMoves[index] = numMoves;
+		}
+	}
+
+}
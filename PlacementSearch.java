@@ -0,0 +1,126 @@
+package Tetris;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class scores a range of candidate placements and returns the best one.
+ * It is a fork/join task: if the range is bigger than Constants.BOT_SPLIT_SIZE,
+ * it is split in half, and the two halves are scored in parallel by the pool.
+ * The real board is only ever read. Each placement is scored by probing the
+ * board for the features it would have with the piece locked there, so no task
+ * has to copy the board. If the search looks ahead at the pieces after this
+ * one, each task scores its placements with a Lookahead of its own, and all of
+ * the tasks share one TranspositionTable. When two placements score the same,
+ * the one listed first wins, so the search gives the same answer however the
+ * work was split.
+ */
+public class PlacementSearch extends RecursiveTask<Placement> {
+	private static final long serialVersionUID = 1L;
+
+	private Board _board;
+	private PieceType _type;
+	private int[] _rotations;
+	private int[] _rows;
+	private int[] _cols;
+	private int _start;
+	private int _end;
+	private PieceType[] _pieces;
+	private int _numPieces;
+	private TranspositionTable _table;
+
+	/**
+	 * Constructor for the PlacementSearch. Takes in the board, the type of the
+	 * piece, the rotation state, row and column of every candidate placement
+	 * (the piece is dropped straight down from that row), the range of
+	 * candidates that this task scores, the list of pieces that come after this
+	 * one, how many of them to look ahead at (which can be 0), and the table to
+	 * store searched boards in (which can be null if the search doesn't look
+	 * ahead).
+	 */
+	public PlacementSearch(Board board, PieceType type, int[] rotations, int[] rows, int[] cols, int start, int end,
+			PieceType[] pieces, int numPieces, TranspositionTable table) {
+		_board = board;
+		_type = type;
+		_rotations = rotations;
+		_rows = rows;
+		_cols = cols;
+		_start = start;
+		_end = end;
+		_pieces = pieces;
+		_numPieces = numPieces;
+		_table = table;
+	}
+
+	/**
+	 * Scores the candidates in this task's range, splitting the range in half if
+	 * it is too big. Returns null if the range is empty.
+	 */
+	@Override
+	protected Placement compute() {
+		if (_end - _start <= Constants.BOT_SPLIT_SIZE) {
+			return this.scoreRange();
+		}
+		int middle = (_start + _end) >>> 1;
+		PlacementSearch left = new PlacementSearch(_board, _type, _rotations, _rows, _cols, _start, middle, _pieces,
+				_numPieces, _table);
+		PlacementSearch right = new PlacementSearch(_board, _type, _rotations, _rows, _cols, middle, _end, _pieces,
+				_numPieces, _table);
+		left.fork();
+		Placement best = right.compute();
+		Placement leftBest = left.join();
+		if (best == null || (leftBest != null && leftBest.getScore() >= best.getScore())) {
+			best = leftBest;
+		}
+		return best;
+	}
+
+	/**
+	 * Scores every candidate in the range, one after another on this thread. This
+	 * is what each task does once its range is small enough, and it can also be
+	 * called directly when the caller is already running many searches in
+	 * parallel.
+	 */
+	public Placement scoreRange() {
+		BoardFeatures features = new BoardFeatures();
+		Lookahead lookahead = null;
+		if (_numPieces > 0) {
+			lookahead = new Lookahead(_board, _pieces, _numPieces, _table);
+		}
+		Placement best = null;
+		for (int i = _start; i < _end; i++) {
+			double score;
+			if (lookahead == null) {
+				score = PlacementSearch.score(_board, _type, _rotations[i], _rows[i], _cols[i], features);
+			} else {
+				score = lookahead.score(_board, _type, _rotations[i], _rows[i], _cols[i]);
+			}
+			if (best == null || score > best.getScore()) {
+				best = new Placement(i, _rotations[i], _rows[i], _cols[i], score);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Drops a piece of the given type and rotation state straight down from the
+	 * given row and column on the given board, and returns the score of the board
+	 * that would be left once it locked there and any lines it completes were
+	 * cleared. The board is not changed. The given BoardFeatures is written over.
+	 */
+	public static double score(Board board, PieceType type, int rotation, int row, int col,
+			BoardFeatures features) {
+		board.probe(type, rotation, board.findLandingRow(type, rotation, row, col), col, features);
+		return PlacementSearch.evaluate(features);
+	}
+
+	/**
+	 * Adds up the weighted features of a board: the total height of all columns,
+	 * the number of lines just cleared, the number of holes, and the bumpiness.
+	 */
+	public static double evaluate(BoardFeatures features) {
+		return Constants.BOT_HEIGHT_WEIGHT * features.getAggregateHeight()
+				+ Constants.BOT_LINES_WEIGHT * features.getLines() + Constants.BOT_HOLES_WEIGHT * features.getHoles()
+				+ Constants.BOT_BUMPINESS_WEIGHT * features.getBumpiness();
+	}
+
+}
@@ -0,0 +1,116 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class holds the constants of the network protocol that GameServer and
+ * LoadClient speak, along with the methods that write the server's messages.
+ * Everything is binary, and every message either has a fixed size or starts
+ * with its size, so neither side ever has to search for the end of one.
+ *
+ * A client sends one byte for every key event: the Action's ordinal shifted
+ * left by one, with the lowest bit set if the key went down. The byte RESTART
+ * starts a new game, and the byte DELTAS asks for FRAME messages from then on
+ * instead of PIECE and BOARD.
+ *
+ * The server sends a message whenever something the client needs to draw has
+ * changed, once per tick at most. Each message starts with its type byte and
+ * the tick it describes:
+ *   PIECE  the falling piece's type, rotation state, row and column
+ *   BOARD  the score, lines, level and every row's bitmask, after a lock
+ *   OVER   the final score and lines, when the game ends
+ * except for FRAME, which holds the frames from a DeltaEncoder for one tick
+ * after the two bytes of their length, and is sent every tick that has any.
+ */
+public class Protocol {
+	public static final int RESTART = 0xFF;
+	public static final int DELTAS = 0xFE;
+
+	public static final int PIECE = 1;
+	public static final int BOARD = 2;
+	public static final int OVER = 3;
+	public static final int FRAME = 4;
+
+	public static final int PIECE_SIZE = 1 + 8 + 4;
+	public static final int BOARD_SIZE = 1 + 8 + 4 + 4 + 1 + Constants.NUM_ROWS * 4;
+	public static final int OVER_SIZE = 1 + 8 + 4 + 4;
+	public static final int FRAME_HEADER_SIZE = 1 + 2;
+
+	/**
+	 * Returns the size of the message at the buffer's position, including its
+	 * type byte. Returns -1 if not enough of the message is in the buffer to tell,
+	 * and 0 if it isn't a message at all.
+	 */
+	public static int getSize(ByteBuffer buffer) {
+		int start = buffer.position();
+		switch (buffer.get(start)) {
+		case PIECE:
+			return PIECE_SIZE;
+		case BOARD:
+			return BOARD_SIZE;
+		case OVER:
+			return OVER_SIZE;
+		case FRAME:
+			if (buffer.remaining() < FRAME_HEADER_SIZE) {
+				return -1;
+			}
+			return FRAME_HEADER_SIZE + (buffer.getShort(start + 1) & 0xFFFF);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Writes a PIECE message describing the game's falling piece.
+	 */
+	public static void putPiece(ByteBuffer buffer, GameEngine engine) {
+		buffer.put((byte) PIECE);
+		buffer.putLong(engine.getTick());
+		buffer.put((byte) engine.getPieceType().ordinal());
+		buffer.put((byte) engine.getRotation());
+		buffer.put((byte) engine.getPieceRow());
+		buffer.put((byte) engine.getPieceCol());
+	}
+
+	/**
+	 * Writes a BOARD message describing the game's board and score.
+	 */
+	public static void putBoard(ByteBuffer buffer, GameEngine engine) {
+		buffer.put((byte) BOARD);
+		buffer.putLong(engine.getTick());
+		buffer.putInt(engine.getScore());
+		buffer.putInt(engine.getLines());
+		buffer.put((byte) engine.getLevel());
+		Board board = engine.getBoard();
+		long columns = (1L << Constants.NUM_COLS) - 1; // The server's boards are the size of the window's.
+		for (int row = 0; row < Constants.NUM_ROWS; row++) {
+			buffer.putInt((int) (board.getWord(row, 0) & columns));
+		}
+	}
+
+	/**
+	 * Writes a FRAME message with the frames from the DeltaEncoder for this tick,
+	 * if it has any.
+	 */
+	public static void putFrame(ByteBuffer buffer, DeltaEncoder encoder, GameEngine engine) {
+		int start = buffer.position();
+		buffer.position(start + FRAME_HEADER_SIZE);
+		if (encoder.encode(engine, buffer)) {
+			buffer.put(start, (byte) FRAME);
+			buffer.putShort(start + 1, (short) (buffer.position() - start - FRAME_HEADER_SIZE));
+		} else {
+			buffer.position(start);
+		}
+	}
+
+	/**
+	 * Writes an OVER message with the game's final score and lines.
+	 */
+	public static void putOver(ByteBuffer buffer, GameEngine engine) {
+		buffer.put((byte) OVER);
+		buffer.putLong(engine.getTick());
+		buffer.putInt(engine.getScore());
+		buffer.putInt(engine.getLines());
+	}
+
+}
@@ -0,0 +1,328 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class plays back a replay file written by a ReplayWriter, with no
+ * display, as fast as it can. The file is memory mapped, so the events are
+ * read straight out of the operating system's page cache without being copied
+ * into the program first. Each tick, the events recorded for that tick are
+ * given to the InputController they were recorded from, one for the keyboard
+ * and one for the Bot, exactly as they were given when the game was played.
+ * Then the controllers are updated in the same order as Game's, and the
+ * GameEngine ticks, so the game plays out the same way it did when it was
+ * recorded.
+ *
+ * Every Constants.REPLAY_KEYFRAME_TICKS ticks, a copy of the GameEngine and
+ * InputControllers is kept as a keyframe, along with where in the file the
+ * replay had got to. Seeking to a tick starts from the last keyframe at or
+ * before it, so jumping around a long replay never has to play it from the
+ * start more than once.
+ *
+ * The main method checks replays in bulk: every file (or every .replay file in
+ * every directory) given is played to the end, and its final tick, score and
+ * lines are compared with the ones recorded when it was made.
+ */
+public class ReplayPlayer {
+	private ByteBuffer _buffer;
+	private int _eventsStart;
+	private GeneratorMode _mode;
+	private long _seed;
+	private int _das;
+	private int _arr;
+	private GameEngine _engine;
+	private InputQueue _queue;
+	private InputController _input;
+	private InputQueue _botQueue;
+	private InputController _botInput;
+	private int _position;
+	private long _nextTick;
+	private boolean _isOver;
+	private int _endScore;
+	private int _endLines;
+	private List<Keyframe> _keyframes;
+
+	/**
+	 * Constructor for the ReplayPlayer. Maps the file, reads its header, and
+	 * starts the game at its first tick.
+	 */
+	public ReplayPlayer(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			_buffer = buffer; // The mapping stays valid after the channel is closed.
+		}
+		if (_buffer.getInt() != ReplayWriter.MAGIC || _buffer.get() != ReplayWriter.VERSION) {
+			throw new IOException("Not a replay file: " + path);
+		}
+		_mode = GeneratorMode.values()[_buffer.get()];
+		_seed = _buffer.getLong();
+		_das = (int) this.getVarint();
+		_arr = (int) this.getVarint();
+		_eventsStart = _buffer.position();
+		_engine = new GameEngine(_mode, _seed);
+		_queue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_input = new InputController(_queue);
+		_input.setDas(_das);
+		_input.setArr(_arr);
+		_botQueue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_botInput = new InputController(_botQueue);
+		_botInput.setDas(_das);
+		_botInput.setArr(_arr);
+		_keyframes = new ArrayList<Keyframe>();
+		this.restart();
+	}
+
+	/**
+	 * Starts the replay over from its first tick.
+	 */
+	public void restart() {
+		_engine.reset(_seed);
+		_input.reset();
+		_botInput.reset();
+		_engine.spawnNextPiece();
+		_position = _eventsStart;
+		_nextTick = 0;
+		_isOver = false;
+		this.readNextTick();
+		this.saveKeyframe();
+	}
+
+	/**
+	 * Plays one tick. Returns false, without doing anything, once the end of the
+	 * game has been reached.
+	 */
+	public boolean step() {
+		if (_isOver) {
+			return false;
+		}
+		long tick = _engine.getTick();
+		while (!_isOver && _nextTick == tick) {
+			int code = _buffer.get(_position) & 0xFF;
+			_position++;
+			if (code == ReplayWriter.END) {
+				_buffer.position(_position);
+				_endScore = (int) this.getVarint();
+				_endLines = (int) this.getVarint();
+				_isOver = true;
+				return false;
+			}
+			Action action = Action.fromOrdinal(code >>> 2);
+			InputQueue queue = _queue;
+			if (((code >>> 1) & 1) == ReplayWriter.BOT) {
+				queue = _botQueue;
+			}
+			// The recorded timestamp isn't needed, so the key is stamped with now.
+			if (action != Action.PAUSE) { // Pausing has no effect on the game.
+				queue.offer(action, (code & 1) != 0, System.nanoTime());
+			}
+			this.readNextTick();
+		}
+		_input.update(_engine);
+		_botInput.update(_engine);
+		if ((_engine.tick() & GameEngine.TICK_LOCKED) != 0) {
+			_engine.spawnNextPiece();
+		}
+		if (_engine.getTick() % Constants.REPLAY_KEYFRAME_TICKS == 0) {
+			this.saveKeyframe();
+		}
+		return true;
+	}
+
+	/**
+	 * Plays the rest of the replay.
+	 */
+	public void playToEnd() {
+		while (this.step()) {
+			// Every tick is played by step.
+		}
+	}
+
+	/**
+	 * Moves the replay to the start of the given tick, or to its end if the tick
+	 * is past the end. The replay starts from the last keyframe at or before the
+	 * tick, and plays forward from there.
+	 */
+	public void seek(long tick) {
+		Keyframe start = _keyframes.get(0); // There is always one for the first tick.
+		for (Keyframe keyframe : _keyframes) {
+			if (keyframe.getTick() <= tick) {
+				start = keyframe;
+			}
+		}
+		if (tick < _engine.getTick() || start.getTick() > _engine.getTick()) {
+			start.restore();
+		}
+		while (_engine.getTick() < tick && this.step()) {
+			// Every tick is played by step.
+		}
+	}
+
+	/**
+	 * Returns whether the replay has been played to its end and finished with
+	 * the same tick, score and lines it was recorded with.
+	 */
+	public boolean isValid() {
+		return _isOver && _nextTick == _engine.getTick() && _endScore == _engine.getScore()
+				&& _endLines == _engine.getLines();
+	}
+
+	/**
+	 * This private helper method reads the tick of the next event. The events are
+	 * stored with the number of ticks since the previous event. If the file ends
+	 * without an END, because the game that was being recorded never finished,
+	 * the replay is over there.
+	 */
+	private void readNextTick() {
+		if (_position >= _buffer.limit()) {
+			_nextTick = -1;
+			_isOver = true;
+			return;
+		}
+		_buffer.position(_position);
+		_nextTick = _nextTick + this.getVarint();
+		_position = _buffer.position();
+	}
+
+	/**
+	 * This private helper method reads a varint at the buffer's position.
+	 */
+	private long getVarint() {
+		long value = 0;
+		int shift = 0;
+		int b = _buffer.get();
+		while ((b & 0x80) != 0) {
+			value = value | ((long) (b & 0x7F) << shift);
+			shift = shift + 7;
+			b = _buffer.get();
+		}
+		return value | ((long) b << shift);
+	}
+
+	/**
+	 * This private helper method keeps a keyframe of the current tick, unless
+	 * there already is one.
+	 */
+	private void saveKeyframe() {
+		long tick = _engine.getTick();
+		if (_keyframes.isEmpty() || _keyframes.get(_keyframes.size() - 1).getTick() < tick) {
+			_keyframes.add(new Keyframe());
+		}
+	}
+
+	/**
+	 * Accessor method for the GameEngine the replay is played on.
+	 */
+	public GameEngine getEngine() {
+		return _engine;
+	}
+
+	/**
+	 * Returns whether the end of the game has been reached.
+	 */
+	public boolean isOver() {
+		return _isOver;
+	}
+
+	/**
+	 * Accessor method for the seed of the replayed game.
+	 */
+	public long getSeed() {
+		return _seed;
+	}
+
+	/**
+	 * This private inner class models a keyframe: copies of the GameEngine and
+	 * InputControllers at the start of a tick, and where the replay was in the
+	 * file at that point.
+	 */
+	private class Keyframe {
+		private GameEngine _savedEngine;
+		private InputController _savedInput;
+		private InputController _savedBotInput;
+		private int _savedPosition;
+		private long _savedNextTick;
+		private boolean _savedIsOver;
+
+		/**
+		 * Constructor for the Keyframe. Copies the replay as it is now.
+		 */
+		public Keyframe() {
+			_savedEngine = new GameEngine(_mode, _seed);
+			_savedEngine.copyFrom(_engine);
+			_savedInput = new InputController(new InputQueue(2));
+			_savedInput.copyFrom(_input);
+			_savedBotInput = new InputController(new InputQueue(2));
+			_savedBotInput.copyFrom(_botInput);
+			_savedPosition = _position;
+			_savedNextTick = _nextTick;
+			_savedIsOver = _isOver;
+		}
+
+		/**
+		 * Puts the replay back the way it was when this keyframe was made.
+		 */
+		public void restore() {
+			_engine.copyFrom(_savedEngine);
+			_input.copyFrom(_savedInput);
+			_botInput.copyFrom(_savedBotInput);
+			_position = _savedPosition;
+			_nextTick = _savedNextTick;
+			_isOver = _savedIsOver;
+		}
+
+		/**
+		 * Accessor method for the tick this keyframe was made at.
+		 */
+		public long getTick() {
+			return _savedEngine.getTick();
+		}
+	}
+
+	/*
+	 * Here is the mainline for checking replays. Each argument is a replay file or
+	 * a directory of them.
+	 */
+	public static void main(String[] argv) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		for (String arg : argv) {
+			Path path = Paths.get(arg);
+			if (Files.isDirectory(path)) {
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*.replay")) {
+					for (Path file : stream) {
+						files.add(file);
+					}
+				}
+			} else {
+				files.add(path);
+			}
+		}
+		long start = System.nanoTime();
+		int valid = 0;
+		long ticks = 0;
+		for (Path file : files) {
+			ReplayPlayer player = new ReplayPlayer(file);
+			player.playToEnd();
+			ticks = ticks + player.getEngine().getTick();
+			if (player.isValid()) {
+				valid++;
+			} else {
+				System.out.println("MISMATCH " + file + ": score " + player.getEngine().getScore() + ", lines "
+						+ player.getEngine().getLines() + ", tick " + player.getEngine().getTick());
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d of %d replays valid, %d ticks, %.1f replays/s%n", valid, files.size(), ticks,
+				files.size() / seconds);
+	}
+
+}
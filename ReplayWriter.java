@@ -0,0 +1,124 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class records one game as a replay file. A game is completely decided
+ * by the seed of its pieces and the key events that were applied on each
+ * tick, so that is all that is written. The file starts with a header: the
+ * magic number, the format version, the GeneratorMode, the seed, and the DAS
+ * and ARR the InputController used. After that, each key event is the number
+ * of ticks since the last event as a varint (7 bits per byte, so a gap of
+ * under 128 ticks is a single byte) followed by one byte holding the Action's
+ * ordinal, which InputController it went through (KEYBOARD or BOT, since the
+ * keyboard and the Bot each hold keys down in a controller of their own), and
+ * whether the key went down. The game ends with an END byte and the final
+ * score and lines, so that a replay can be checked by playing it.
+ *
+ * Events are only ever added to the end of the file. They are gathered in a
+ * buffer and written out whenever it fills up. If writing fails, the error is
+ * printed once and the rest of the game is not recorded, since a broken
+ * recording should never stop the game itself.
+ */
+public class ReplayWriter {
+	public static final int MAGIC = 0x5452504C; // "TRPL"
+	public static final int VERSION = 1;
+	public static final int END = 0xFF;
+	public static final int KEYBOARD = 0;
+	public static final int BOT = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private FileChannel _channel;
+	private ByteBuffer _buffer;
+	private long _lastTick;
+
+	/**
+	 * Constructor for the ReplayWriter. Creates the file, replacing any file that
+	 * is already there, and writes the header.
+	 */
+	public ReplayWriter(Path path, GeneratorMode mode, long seed, int das, int arr) throws IOException {
+		_channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		_buffer.putInt(MAGIC);
+		_buffer.put((byte) VERSION);
+		_buffer.put((byte) mode.ordinal());
+		_buffer.putLong(seed);
+		this.putVarint(das);
+		this.putVarint(arr);
+		_lastTick = 0;
+	}
+
+	/**
+	 * Records a key event that was applied on the given tick by the given
+	 * InputController (KEYBOARD or BOT). Ticks must never go backwards.
+	 */
+	public void record(long tick, int controller, Action action, boolean isPressed) {
+		this.putVarint(tick - _lastTick);
+		_buffer.put((byte) ((action.ordinal() << 2) | (controller << 1) | (isPressed ? 1 : 0)));
+		_lastTick = tick;
+	}
+
+	/**
+	 * Records the end of the game with its final score and lines, writes out
+	 * anything still in the buffer, and closes the file.
+	 */
+	public void finish(long tick, int score, int lines) {
+		this.putVarint(tick - _lastTick);
+		_buffer.put((byte) END);
+		this.putVarint(score);
+		this.putVarint(lines);
+		this.flush();
+		if (_channel != null) {
+			try {
+				_channel.close();
+			} catch (IOException e) {
+				System.err.println("Could not close replay: " + e.getMessage());
+			}
+			_channel = null;
+		}
+	}
+
+	/**
+	 * This private helper method writes a non-negative number as a varint. The
+	 * buffer is flushed first if the number might not fit.
+	 */
+	private void putVarint(long value) {
+		if (_buffer.remaining() < 16) {
+			this.flush();
+		}
+		while ((value & ~0x7FL) != 0) {
+			_buffer.put((byte) ((value & 0x7F) | 0x80));
+			value = value >>> 7;
+		}
+		_buffer.put((byte) value);
+	}
+
+	/**
+	 * This private helper method appends everything in the buffer to the file and
+	 * empties the buffer.
+	 */
+	private void flush() {
+		_buffer.flip();
+		try {
+			while (_channel != null && _buffer.hasRemaining()) {
+				_channel.write(_buffer);
+			}
+		} catch (IOException e) {
+			System.err.println("Stopped recording replay: " + e.getMessage());
+			try {
+				_channel.close();
+			} catch (IOException ignored) {
+				// The channel is being given up on anyway.
+			}
+			_channel = null;
+		}
+		_buffer.clear();
+	}
+
+}
@@ -0,0 +1,71 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class keeps the last few snapshots of a game in one direct ByteBuffer,
+ * with a fixed slot for each, big enough for a snapshot of the game's board.
+ * Saving writes over the oldest slot, and rewinding loads the newest one that
+ * hasn't been rewound to yet, so pressing rewind again goes further back. Once
+ * the buffer has been made, neither saving nor rewinding allocates anything.
+ */
+public class RewindBuffer {
+	private ByteBuffer _buffer;
+	private int _numSlots;
+	private int _slotSize;
+	private int _next;
+	private int _count;
+
+	/**
+	 * Constructor for the RewindBuffer. Takes in how many snapshots it can hold,
+	 * of games played on the board in the window.
+	 */
+	public RewindBuffer(int numSlots) {
+		this(numSlots, Snapshot.SIZE);
+	}
+
+	/**
+	 * Constructor for the RewindBuffer. Takes in how many snapshots it can hold,
+	 * and how many bytes each of them takes up (see Snapshot.getSize).
+	 */
+	public RewindBuffer(int numSlots, int slotSize) {
+		_buffer = ByteBuffer.allocateDirect(numSlots * slotSize);
+		_numSlots = numSlots;
+		_slotSize = slotSize;
+		this.clear();
+	}
+
+	/**
+	 * Forgets every snapshot. This is used when a new game starts.
+	 */
+	public void clear() {
+		_next = 0;
+		_count = 0;
+	}
+
+	/**
+	 * Saves a snapshot of the game, writing over the oldest one if the buffer is
+	 * full.
+	 */
+	public void save(GameEngine engine) {
+		_buffer.position(_next * _slotSize);
+		Snapshot.write(engine, _buffer);
+		_next = (_next + 1) % _numSlots;
+		_count = Math.min(_count + 1, _numSlots);
+	}
+
+	/**
+	 * Loads the newest snapshot into the game and forgets it, so the next rewind
+	 * goes back further. Returns false if there are no snapshots left.
+	 */
+	public boolean rewind(GameEngine engine) {
+		if (_count == 0) {
+			return false;
+		}
+		_next = (_next + _numSlots - 1) % _numSlots;
+		_count--;
+		_buffer.position(_next * _slotSize);
+		return Snapshot.read(engine, _buffer);
+	}
+
+}
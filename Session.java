@@ -0,0 +1,177 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class models one player connected to the GameServer. Each session has
+ * its own GameEngine, which is the only copy of the game that counts, and its
+ * own InputQueue and InputController, so key events from the network are
+ * applied on tick boundaries exactly like key events from a keyboard. A player
+ * who asks for deltas is sent the frames of a DeltaEncoder instead of PIECE and
+ * BOARD messages. A session is only ever touched by the one event loop thread
+ * that owns it, so nothing in it needs to be locked.
+ */
+public class Session {
+	private static final int IN_BUFFER_SIZE = 1 << 10;
+
+	private SocketChannel _channel;
+	private GameEngine _engine;
+	private InputQueue _queue;
+	private InputController _input;
+	private ByteBuffer _in;
+	private ByteBuffer _out;
+	private DeltaEncoder _encoder;
+	private boolean _useDeltas;
+	private boolean _pieceChanged;
+	private boolean _boardChanged;
+	private boolean _sentOver;
+
+	/**
+	 * Constructor for the Session. Takes in the player's connection and the seed
+	 * of their first game, which starts right away.
+	 */
+	public Session(SocketChannel channel, GeneratorMode mode, long seed) {
+		_channel = channel;
+		_engine = new GameEngine(mode, seed);
+		_queue = new InputQueue(Constants.INPUT_QUEUE_SIZE);
+		_input = new InputController(_queue);
+		_in = ByteBuffer.allocate(IN_BUFFER_SIZE);
+		_out = ByteBuffer.allocateDirect(Constants.SERVER_SEND_BUFFER_SIZE);
+		_encoder = new DeltaEncoder();
+		_useDeltas = false;
+		this.restart(seed);
+	}
+
+	/**
+	 * This private helper method starts a new game from the given seed.
+	 */
+	private void restart(long seed) {
+		_engine.reset(seed);
+		_input.reset();
+		_engine.spawnNextPiece();
+		_pieceChanged = true;
+		_boardChanged = true;
+		_sentOver = false;
+		_encoder.requestFull();
+	}
+
+	/**
+	 * Reads whatever key events the client has sent and adds them to the
+	 * InputQueue. Returns false if the client has disconnected.
+	 */
+	public boolean readInputs() throws IOException {
+		_in.clear();
+		int read = _channel.read(_in);
+		if (read < 0) {
+			return false;
+		}
+		_in.flip();
+		long now = System.nanoTime();
+		while (_in.hasRemaining()) {
+			int code = _in.get() & 0xFF;
+			if (code == Protocol.RESTART) {
+				this.restart(_engine.getPieceQueue().getSeed() + 1);
+			} else if (code == Protocol.DELTAS) {
+				_useDeltas = true;
+				_encoder.requestFull();
+			} else if ((code >>> 1) < Action.PAUSE.ordinal()) {
+				_queue.offer(Action.fromOrdinal(code >>> 1), (code & 1) != 0, now);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Runs one tick of the game, after applying the key events that arrived since
+	 * the last one. A game that is over waits for the client to restart it.
+	 */
+	public void tick() {
+		if (_engine.isGameOver()) {
+			return;
+		}
+		if (_input.update(_engine)) {
+			_pieceChanged = true;
+		}
+		int result = _engine.tick();
+		if ((result & GameEngine.TICK_MOVED) != 0) {
+			_pieceChanged = true;
+		}
+		if ((result & GameEngine.TICK_LOCKED) != 0) {
+			_boardChanged = true;
+			if (_useDeltas) {
+				_encoder.pieceLocked(_engine);
+			}
+			_pieceChanged = _engine.spawnNextPiece();
+		}
+	}
+
+	/**
+	 * Adds messages for everything that changed during the last tick to the
+	 * outgoing buffer, and writes as much of it as the connection will take.
+	 * Returns false if the client isn't keeping up and the buffer is full.
+	 */
+	public boolean sendState() throws IOException {
+		if (_out.remaining() < Protocol.FRAME_HEADER_SIZE + DeltaEncoder.MAX_FRAME_SIZE + Protocol.BOARD_SIZE
+				+ Protocol.PIECE_SIZE + Protocol.OVER_SIZE) {
+			return false;
+		}
+		if (_useDeltas) {
+			Protocol.putFrame(_out, _encoder, _engine);
+			_boardChanged = false;
+			_pieceChanged = false;
+		}
+		if (_boardChanged) {
+			Protocol.putBoard(_out, _engine);
+			_boardChanged = false;
+		}
+		if (_pieceChanged && !_engine.isGameOver()) {
+			Protocol.putPiece(_out, _engine);
+		}
+		_pieceChanged = false;
+		if (_engine.isGameOver() && !_sentOver) {
+			Protocol.putOver(_out, _engine);
+			_sentOver = true;
+		}
+		this.flush();
+		return true;
+	}
+
+	/**
+	 * Writes as much of the outgoing buffer as the connection will take. Returns
+	 * whether all of it was written.
+	 */
+	public boolean flush() throws IOException {
+		_out.flip();
+		_channel.write(_out);
+		_out.compact();
+		return _out.position() == 0;
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() {
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			// The connection is already gone.
+		}
+	}
+
+	/**
+	 * Accessor method for the connection.
+	 */
+	public SocketChannel getChannel() {
+		return _channel;
+	}
+
+	/**
+	 * Accessor method for the GameEngine.
+	 */
+	public GameEngine getEngine() {
+		return _engine;
+	}
+
+}
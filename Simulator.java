@@ -0,0 +1,305 @@
+package Tetris;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is the Simulator class. It is a second main class, next to App, that
+ * plays many games of Tetris with no window at all, so JavaFX is never
+ * started. Every game runs on a GameEngine, the same rules that Game uses, and
+ * is played either by a Bot or by a seeded script of random key presses. The
+ * games are shared out between a number of worker threads, each of which has
+ * its own GameEngine and player and takes the next game number until all of
+ * them have been played. Game number i is seeded with the base seed plus i, so
+ * any single game can be played again exactly. At the end, the number of games
+ * and pieces per second are printed, along with the spread of scores and
+ * lines. If the bots look ahead, they all share one TranspositionTable, and
+ * the share of lookups that found a board already searched is printed too.
+ *
+ * The options are:
+ *   --games N       number of games to play (default 1000)
+ *   --threads N     number of worker threads (default: one per core)
+ *   --virtual       run the workers on virtual threads, if this Java has them
+ *   --player P      "bot" or "script" (default bot)
+ *   --mode M        uniform, seven_bag or history (default seven_bag)
+ *   --seed S        base seed (default 1)
+ *   --max-pieces N  stop a game after this many pieces (default 1000)
+ *   --width N       columns of the board (default Constants.BOARD_WIDTH)
+ *   --height N      rows of the board (default Constants.BOARD_HEIGHT)
+ *   --lookahead N   preview pieces the bot looks ahead at (default 0)
+ *   --table-size N  entries in the bots' table (default Constants.BOT_TABLE_SIZE)
+ *   --eviction P    always_replace, oldest or shallowest (default
+ *                   Constants.BOT_EVICTION_POLICY)
+ */
+public class Simulator {
+	private static final int SCRIPT_IDLE_TICKS = 4;
+
+	private long _games;
+	private int _threads;
+	private boolean _useVirtualThreads;
+	private boolean _useBot;
+	private GeneratorMode _mode;
+	private long _seed;
+	private int _maxPieces;
+	private int _width;
+	private int _height;
+	private int _lookahead;
+	private TranspositionTable _table;
+	private AtomicLong _nextGame;
+	private LongAdder _pieces;
+	private LongAdder _ticks;
+	private LatencyHistogram _scores;
+	private LatencyHistogram _lines;
+
+	/**
+	 * Constructor for the Simulator. Reads the options from the command line
+	 * arguments.
+	 */
+	public Simulator(String[] argv) {
+		_games = 1000;
+		_threads = Runtime.getRuntime().availableProcessors();
+		_useVirtualThreads = false;
+		_useBot = true;
+		_mode = GeneratorMode.SEVEN_BAG;
+		_seed = 1;
+		_maxPieces = 1000;
+		_width = Constants.BOARD_WIDTH;
+		_height = Constants.BOARD_HEIGHT;
+		_lookahead = 0;
+		int tableSize = Constants.BOT_TABLE_SIZE;
+		EvictionPolicy eviction = Constants.BOT_EVICTION_POLICY;
+		for (int i = 0; i < argv.length; i++) {
+			switch (argv[i]) {
+			case "--games":
+				_games = Long.parseLong(argv[++i]);
+				break;
+			case "--threads":
+				_threads = Integer.parseInt(argv[++i]);
+				break;
+			case "--virtual":
+				_useVirtualThreads = true;
+				break;
+			case "--player":
+				String player = argv[++i];
+				if (!player.equals("bot") && !player.equals("script")) {
+					throw new IllegalArgumentException("Unknown player: " + player);
+				}
+				_useBot = player.equals("bot");
+				break;
+			case "--mode":
+				_mode = GeneratorMode.valueOf(argv[++i].toUpperCase());
+				break;
+			case "--seed":
+				_seed = Long.parseLong(argv[++i]);
+				break;
+			case "--max-pieces":
+				_maxPieces = Integer.parseInt(argv[++i]);
+				break;
+			case "--width":
+				_width = Integer.parseInt(argv[++i]);
+				break;
+			case "--height":
+				_height = Integer.parseInt(argv[++i]);
+				break;
+			case "--lookahead":
+				_lookahead = Integer.parseInt(argv[++i]);
+				break;
+			case "--table-size":
+				tableSize = Integer.parseInt(argv[++i]);
+				break;
+			case "--eviction":
+				eviction = EvictionPolicy.valueOf(argv[++i].toUpperCase());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + argv[i]);
+			}
+		}
+		if (_useBot && _lookahead > 0) {
+			_table = new TranspositionTable(tableSize, eviction);
+		}
+		_nextGame = new AtomicLong();
+		_pieces = new LongAdder();
+		_ticks = new LongAdder();
+		_scores = new LatencyHistogram();
+		_lines = new LatencyHistogram();
+	}
+
+	/**
+	 * Plays all of the games and prints the results.
+	 */
+	public void run() throws Exception {
+		ExecutorService executor = this.makeExecutor();
+		long start = System.nanoTime();
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int i = 0; i < _threads; i++) {
+			workers.add(executor.submit(new Worker()));
+		}
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		this.printResults(elapsed);
+	}
+
+	/**
+	 * This private helper method makes the executor the workers run on. Virtual
+	 * threads are looked up by reflection so that this class still compiles and
+	 * runs on versions of Java that don't have them, in which case a normal pool
+	 * is used instead.
+	 */
+	private ExecutorService makeExecutor() {
+		if (_useVirtualThreads) {
+			try {
+				Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) method.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				System.out.println("Virtual threads are not available, using a thread pool instead.");
+				_useVirtualThreads = false;
+			}
+		}
+		return Executors.newFixedThreadPool(_threads);
+	}
+
+	/**
+	 * This private helper method prints the rates and the spread of scores and
+	 * lines.
+	 */
+	private void printResults(long elapsed) {
+		double seconds = elapsed / 1e9;
+		long games = _scores.getCount();
+		long pieces = _pieces.sum();
+		System.out.printf("%d games, %d pieces, %d ticks in %.2f s on %d %s%n", games, pieces, _ticks.sum(), seconds,
+				_threads, _useVirtualThreads ? "virtual threads" : "threads");
+		System.out.printf("%.1f games/s, %.1f pieces/s%n", games / seconds, pieces / seconds);
+		Simulator.printDistribution("score", _scores);
+		Simulator.printDistribution("lines", _lines);
+		if (_useBot && _lookahead > 0) {
+			System.out.printf("table  %d entries, %.1f%% of lookups hit%n", _table.getSize(),
+					100 * TranspositionTable.getHitRate());
+		}
+	}
+
+	/**
+	 * This private helper method prints the mean and percentiles of a histogram.
+	 */
+	private static void printDistribution(String name, LatencyHistogram histogram) {
+		System.out.printf("%-6s mean %.1f  p10 %d  p50 %d  p90 %d  p99 %d  max %d%n", name, histogram.getMean(),
+				histogram.getPercentile(0.1), histogram.getPercentile(0.5), histogram.getPercentile(0.9),
+				histogram.getPercentile(0.99), histogram.getMax());
+	}
+
+	/**
+	 * This private inner class plays games one after another until there are none
+	 * left. It keeps one GameEngine and one player for all of its games, and adds
+	 * its results to the shared totals after each game.
+	 */
+	private class Worker implements Runnable {
+		private GameEngine _engine;
+		private Bot _bot;
+		private SplittableRandom _script;
+
+		/**
+		 * Constructor for the Worker. The Bot scores placements on the worker's own
+		 * thread, since every core is already playing a game, and shares the
+		 * Simulator's table with the other workers' Bots.
+		 */
+		public Worker() {
+			_engine = new GameEngine(_mode, _seed, _width, _height);
+			_bot = new Bot(null);
+			_bot.setParallel(false);
+			_bot.setTable(_table);
+			_bot.setLookahead(_lookahead);
+		}
+
+		@Override
+		public void run() {
+			long game = _nextGame.getAndIncrement();
+			while (game < _games) {
+				this.play(_seed + game);
+				game = _nextGame.getAndIncrement();
+			}
+		}
+
+		/**
+		 * This private helper method plays one game from the given seed until it is
+		 * over or has used up Simulator's piece limit.
+		 */
+		private void play(long seed) {
+			_engine.reset(seed);
+			_script = new SplittableRandom(seed);
+			int pieces = 0;
+			boolean hasPiece = this.spawn();
+			while (hasPiece && pieces < _maxPieces) {
+				if (!_useBot) {
+					this.pressRandomKey();
+				}
+				if ((_engine.tick() & GameEngine.TICK_LOCKED) != 0) {
+					pieces++;
+					hasPiece = this.spawn();
+				}
+			}
+			_pieces.add(pieces);
+			_ticks.add(_engine.getTick());
+			_scores.record(_engine.getScore());
+			_lines.record(_engine.getLines());
+		}
+
+		/**
+		 * This private helper method spawns the next piece, and if the Bot is
+		 * playing, plays it. Returns false if the game is over.
+		 */
+		private boolean spawn() {
+			if (!_engine.spawnNextPiece() || _engine.isGameOver()) {
+				return false;
+			}
+			if (_useBot) {
+				_bot.playNow(_engine);
+			}
+			return true;
+		}
+
+		/**
+		 * This private helper method plays the random script: on most ticks nothing
+		 * is pressed, and otherwise one of left, right, rotate, down or drop is
+		 * picked at random.
+		 */
+		private void pressRandomKey() {
+			int key = _script.nextInt(SCRIPT_IDLE_TICKS + 5);
+			switch (key) {
+			case 0:
+				_engine.tryMove(-1, 0);
+				break;
+			case 1:
+				_engine.tryMove(1, 0);
+				break;
+			case 2:
+				_engine.tryRotate();
+				break;
+			case 3:
+				_engine.tryMove(0, 1);
+				break;
+			case 4:
+				_engine.drop();
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/*
+	 * Here is the mainline for the Simulator.
+	 */
+	public static void main(String[] argv) throws Exception {
+		new Simulator(argv).run();
+	}
+
+}
@@ -0,0 +1,102 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads and writes snapshots of a whole game. A snapshot is a short
+ * header (the magic number, the format version, the GeneratorMode and the
+ * width and height of the board) followed by everything the GameEngine writes
+ * with save. Every snapshot of a board of one size is getSize bytes long, and
+ * SIZE bytes for the board in the window, so snapshots can be kept side by
+ * side in one buffer, and saving or loading one is a straight copy of
+ * primitives into or out of a ByteBuffer, with nothing allocated. Saving to a
+ * file maps the file and writes the snapshot straight into the mapping.
+ */
+public class Snapshot {
+	public static final int MAGIC = 0x54534E50; // "TSNP"
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 4 + 1 + 1 + 2 + 2;
+	public static final int SIZE = Snapshot.getSize(Constants.BOARD_WIDTH, Constants.BOARD_HEIGHT);
+
+	/**
+	 * Returns how many bytes a snapshot of a game whose board has the given
+	 * width and height takes up.
+	 */
+	public static int getSize(int width, int height) {
+		return HEADER_SIZE + GameEngine.getStateBytes(width, height);
+	}
+
+	/**
+	 * Returns how many bytes a snapshot of the given game takes up.
+	 */
+	public static int getSize(GameEngine engine) {
+		return Snapshot.getSize(engine.getBoard().getWidth(), engine.getBoard().getHeight());
+	}
+
+	/**
+	 * Writes a snapshot of the given game at the buffer's position.
+	 */
+	public static void write(GameEngine engine, ByteBuffer buffer) {
+		buffer.putInt(MAGIC);
+		buffer.put((byte) VERSION);
+		buffer.put((byte) engine.getPieceQueue().getMode().ordinal());
+		buffer.putShort((short) engine.getBoard().getWidth());
+		buffer.putShort((short) engine.getBoard().getHeight());
+		engine.save(buffer);
+	}
+
+	/**
+	 * Reads a snapshot from the buffer's position into the given game. Returns
+	 * false, and leaves the game alone, if the bytes there are not a snapshot
+	 * from a game with the same GeneratorMode and the same size of board, or if
+	 * any part of the game in it is not one the GameEngine can load.
+	 */
+	public static boolean read(GameEngine engine, ByteBuffer buffer) {
+		int start = buffer.position();
+		if (buffer.limit() - start < Snapshot.getSize(engine) || buffer.getInt(start) != MAGIC
+				|| buffer.get(start + 4) != VERSION
+				|| buffer.get(start + 5) != engine.getPieceQueue().getMode().ordinal()
+				|| buffer.getShort(start + 6) != engine.getBoard().getWidth()
+				|| buffer.getShort(start + 8) != engine.getBoard().getHeight()) {
+			return false;
+		}
+		buffer.position(start + HEADER_SIZE);
+		if (!engine.load(buffer)) {
+			buffer.position(start);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Saves a snapshot of the given game to a file, replacing whatever was there.
+	 */
+	public static void save(GameEngine engine, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Snapshot.getSize(engine));
+			Snapshot.write(engine, buffer);
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Loads a snapshot from a file into the given game. Returns false, and leaves
+	 * the game alone, if the file does not hold a snapshot it can load.
+	 */
+	public static boolean load(GameEngine engine, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			int size = Snapshot.getSize(engine);
+			if (channel.size() != size) {
+				return false;
+			}
+			return Snapshot.read(engine, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package Tetris;
+
+/**
+ * This class is a random number generator whose whole state (a single long)
+ * can be read and set. That lets a game's piece generator be saved in a
+ * snapshot and picked up again in the middle of its sequence, which
+ * java.util.SplittableRandom does not allow. For any seed, nextLong and
+ * nextInt give exactly the same numbers, in the same order, as a
+ * SplittableRandom made with that seed.
+ */
+public class SplitMix64 {
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long _state;
+
+	/**
+	 * Constructor for the SplitMix64. Takes in the seed.
+	 */
+	public SplitMix64(long seed) {
+		_state = seed;
+	}
+
+	/**
+	 * Returns a random int from 0 up to but not including the given bound, which
+	 * must be positive. Just like SplittableRandom, numbers that would make some
+	 * results more likely than others are thrown away and drawn again.
+	 */
+	public int nextInt(int bound) {
+		int r = SplitMix64.mix32(this.nextSeed());
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			return r & m; // The bound is a power of 2.
+		}
+		int u = r >>> 1;
+		r = u % bound;
+		while (u + m - r < 0) {
+			u = SplitMix64.mix32(this.nextSeed()) >>> 1;
+			r = u % bound;
+		}
+		return r;
+	}
+
+	/**
+	 * Returns a random long.
+	 */
+	public long nextLong() {
+		return SplitMix64.mix64(this.nextSeed());
+	}
+
+	/**
+	 * This private helper method moves the state forward by one step.
+	 */
+	private long nextSeed() {
+		_state = _state + GOLDEN_GAMMA;
+		return _state;
+	}
+
+	/**
+	 * Scrambles the bits of a state into a long. Every bit of the result depends
+	 * on every bit of the state, so this is also used to hash the rows of a
+	 * Board.
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * This private helper method scrambles the bits of a state into an int.
+	 */
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Accessor method for the state.
+	 */
+	public long getState() {
+		return _state;
+	}
+
+	/**
+	 * Sets the state, so that the numbers carry on from wherever the state came
+	 * from.
+	 */
+	public void setState(long state) {
+		_state = state;
+	}
+
+}
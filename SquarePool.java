@@ -0,0 +1,76 @@
+package Tetris;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * This class keeps TetrisSquares that are no longer on the board so that they
+ * can be reused by the next pieces, instead of making 4 new squares for every
+ * piece. Adding squares to and removing squares from the pane is also saved up
+ * and done in one batch when flush is called, since every single remove call
+ * has to search the pane's whole list of children.
+ */
+public class SquarePool {
+	private Pane _pane;
+	private ArrayDeque<TetrisSquare> _free;
+	private List<Node> _toAdd;
+	private Set<Node> _toRemove;
+
+	/**
+	 * Constructor for the SquarePool. Takes in the pane that the squares are added
+	 * to and removed from.
+	 */
+	public SquarePool(Pane pane) {
+		_pane = pane;
+		_free = new ArrayDeque<TetrisSquare>();
+		_toAdd = new ArrayList<Node>();
+		_toRemove = new HashSet<Node>();
+	}
+
+	/**
+	 * Returns a square with the given fill color, reusing a free square if there
+	 * is one. The square will be added to the pane at the next flush.
+	 */
+	public TetrisSquare acquire(Color color) {
+		TetrisSquare square = _free.poll();
+		if (square == null) {
+			square = new TetrisSquare();
+		}
+		square.getTetrisSquare().setFill(color);
+		_toAdd.add(square.getTetrisSquare());
+		return square;
+	}
+
+	/**
+	 * Gives a square back to the pool. It will be removed from the pane at the
+	 * next flush, unless it was never added in the first place.
+	 */
+	public void release(TetrisSquare square) {
+		_free.push(square);
+		if (!_toAdd.remove(square.getTetrisSquare())) {
+			_toRemove.add(square.getTetrisSquare());
+		}
+	}
+
+	/**
+	 * Removes all released squares from the pane with a single call, and then adds
+	 * all newly acquired squares with a single call.
+	 */
+	public void flush() {
+		if (!_toRemove.isEmpty()) {
+			_pane.getChildren().removeAll(_toRemove);
+			_toRemove.clear();
+		}
+		if (!_toAdd.isEmpty()) {
+			_pane.getChildren().addAll(_toAdd);
+			_toAdd.clear();
+		}
+	}
+
+}
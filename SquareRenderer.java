@@ -0,0 +1,287 @@
+package Tetris;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * This class draws the game with one TetrisSquare for every filled cell. It
+ * keeps a 2D array of TetrisSquares that mirrors the GameEngine's board, so
+ * that when lines are cleared the right squares can be removed and moved down.
+ * The falling piece is drawn by a Piece. Squares that are cleared or removed on
+ * a restart go back to a SquarePool to be reused by later pieces, and all of
+ * the pane changes caused by one update are made in a single batch. The ghost
+ * piece is 4 more squares that are only outlined, and they are only moved when
+ * the row the piece would land on changes. How long each clear takes is
+ * recorded in Metrics and as a GameEvents.ClearLinesEvent.
+ */
+public class SquareRenderer implements BoardRenderer {
+	private static final LatencyHistogram CLEAR_TIMES = Metrics.histogram("render.clear.nanos");
+
+	private Pane _pane;
+	private SquarePool _pool;
+	private TetrisSquare[][] _board;
+	private Piece _piece;
+	private boolean _isFalling;
+	private TetrisSquare[] _ghost;
+	private int[] _ghostRows;
+	private int[] _ghostCols;
+
+	/**
+	 * Constructor for the SquareRenderer. Takes in the pane that the squares are
+	 * added to. The border squares are created here.
+	 */
+	public SquareRenderer(Pane pane) {
+		_pane = pane;
+		_pool = new SquarePool(pane);
+		_board = new TetrisSquare[Constants.NUM_ROWS][Constants.NUM_COLS];
+		_piece = new Piece(_pool);
+		_isFalling = false;
+		this.setUpBoard();
+		this.setUpGhost();
+	}
+
+	/**
+	 * This private helper method sets up the game board, which is a 2D array of
+	 * TetrisSquares. In this setup, a border is added, filling the outer 2
+	 * rows/columns withTetrisSquares, thus creating the border. These TetrisSquares
+	 * are also added graphically.
+	 */
+	private void setUpBoard() {
+		for (int row = 0; row < Constants.NUM_ROWS; row++) {
+			for (int col = 0; col < Constants.NUM_COLS; col++) {
+				/*
+				 * Graphical placement of the TetrisSquares according to their logical locations
+				 * in the array.
+				 */
+				int xLoc = col * Constants.SQUARE_SIZE;
+				int yLoc = row * Constants.SQUARE_SIZE;
+				if (row < Constants.BOARD_LOW_CUTOFF || row >= Constants.ENDING_ROW || col < Constants.BOARD_LOW_CUTOFF
+						|| col >= Constants.ENDING_COL) {
+					TetrisSquare borderSquare = new TetrisSquare();
+					borderSquare.getTetrisSquare().setFill(Color.DARKSLATEBLUE);
+					_board[row][col] = borderSquare; // logically adding the border squares.
+					borderSquare.getTetrisSquare().setX(xLoc);
+					borderSquare.getTetrisSquare().setY(yLoc);
+					_pane.getChildren().addAll(_board[row][col].getTetrisSquare());
+				}
+			}
+		}
+	}
+
+	/**
+	 * This private helper method makes the 4 squares of the ghost piece. They are
+	 * added to the pane before any piece, so that the falling piece is drawn on top
+	 * of its ghost. They stay hidden until a piece spawns.
+	 */
+	private void setUpGhost() {
+		_ghost = new TetrisSquare[Constants.NUM_SQUARES];
+		_ghostRows = new int[Constants.NUM_SQUARES];
+		_ghostCols = new int[Constants.NUM_SQUARES];
+		if (!Constants.SHOW_GHOST_PIECE) {
+			return;
+		}
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			_ghost[i] = new TetrisSquare();
+			_ghost[i].getTetrisSquare().setFill(Color.TRANSPARENT);
+			_ghost[i].getTetrisSquare().setVisible(false);
+			_pane.getChildren().addAll(_ghost[i].getTetrisSquare());
+		}
+	}
+
+	/**
+	 * Makes 4 new squares in the color of the new piece and places them, along
+	 * with its ghost.
+	 */
+	@Override
+	public void pieceSpawned(GameEngine engine) {
+		_piece.makePiece(engine.getPieceType());
+		_piece.placePiece(engine);
+		_isFalling = true;
+		if (Constants.SHOW_GHOST_PIECE) {
+			Color color = Piece.getColor(engine.getPieceType());
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				_ghost[i].getTetrisSquare().setStroke(color);
+				_ghostRows[i] = -1; // Forces the ghost to be placed.
+			}
+			this.placeGhost(engine);
+		}
+		_pool.flush();
+	}
+
+	/**
+	 * Moves the 4 squares of the piece to wherever the GameEngine says they are,
+	 * and the ghost to wherever the piece would land.
+	 */
+	@Override
+	public void pieceMoved(GameEngine engine) {
+		_piece.placePiece(engine);
+		if (Constants.SHOW_GHOST_PIECE) {
+			this.placeGhost(engine);
+		}
+	}
+
+	/**
+	 * This private helper method moves the ghost squares to where the piece would
+	 * land, but only if that is somewhere other than where they already are. When
+	 * the piece just falls straight down, the ghost squares are left alone.
+	 */
+	private void placeGhost(GameEngine engine) {
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			int row = engine.getGhostRow(i);
+			int col = engine.getSquareCol(i);
+			if (row != _ghostRows[i] || col != _ghostCols[i]) {
+				_ghostRows[i] = row;
+				_ghostCols[i] = col;
+				_ghost[i].getTetrisSquare().setX(col * Constants.SQUARE_SIZE);
+				_ghost[i].getTetrisSquare().setY(row * Constants.SQUARE_SIZE);
+				_ghost[i].getTetrisSquare().setVisible(true);
+			}
+		}
+	}
+
+	/**
+	 * This private helper method hides the ghost squares, since there is no
+	 * falling piece.
+	 */
+	private void hideGhost() {
+		if (Constants.SHOW_GHOST_PIECE) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				_ghost[i].getTetrisSquare().setVisible(false);
+			}
+		}
+	}
+
+	/**
+	 * Adds the squares of the landed piece to the _board array, and then clears
+	 * the lines that the GameEngine cleared. The piece is still where it landed in
+	 * the GameEngine, so its squares are stored before the lines are cleared.
+	 */
+	@Override
+	public void pieceLocked(GameEngine engine) {
+		for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+			// Making the piece part of the _board array.
+			_board[engine.getSquareRow(i)][engine.getSquareCol(i)] = _piece.getPieceArray()[i];
+		}
+		_isFalling = false;
+		this.hideGhost();
+		if (engine.getNumClearedRows() > 0) {
+			long start = System.nanoTime();
+			GameEvents.ClearLinesEvent event = new GameEvents.ClearLinesEvent();
+			event.begin();
+			this.clearLines(engine);
+			_pool.flush();
+			event.rows = engine.getNumClearedRows();
+			event.commit();
+			CLEAR_TIMES.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * This private helper method graphically clears the lines that the GameEngine
+	 * cleared when the last piece landed, and moves all above squares down. The
+	 * squares of all cleared rows go back to the pool, and then the graphical
+	 * board is compacted in a single pass from the lowest cleared row up to the
+	 * top of the stack, so each remaining square is moved at most once no matter
+	 * how many lines were cleared.
+	 */
+	private void clearLines(GameEngine engine) {
+		int numCleared = engine.getNumClearedRows();
+		int oldTop = engine.getBoard().getTopRow() - numCleared;
+		for (int i = 0; i < numCleared; i++) {
+			int row = engine.getClearedRow(i);
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
+				_pool.release(_board[row][col]);
+			}
+		}
+		/*
+		 * All squares above the cleared rows are moved down graphically, by the number
+		 * of cleared rows below them.
+		 */
+		int next = numCleared - 1;
+		int write = engine.getClearedRow(next);
+		for (int read = write; read >= oldTop; read--) {
+			if (next >= 0 && read == engine.getClearedRow(next)) {
+				next--;
+				continue;
+			}
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
+				if (_board[read][col] != null) {
+					_board[read][col].getTetrisSquare().setY(write * Constants.SQUARE_SIZE);
+				}
+				_board[write][col] = _board[read][col];
+			}
+			write--;
+		}
+		for (int row = write; row >= oldTop; row--) {
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
+				_board[row][col] = null;
+			}
+		}
+	}
+
+	/**
+	 * Removes all fallen pieces and the currently falling piece graphically, and
+	 * removes all items in the board array that are not the border. Every removed
+	 * square goes back to the pool, and they all leave the pane in one batch. The
+	 * squares of the piece only go back if it is still falling, since a landed
+	 * piece's squares are already in the board array.
+	 */
+	@Override
+	public void reset(GameEngine engine) {
+		this.clear();
+		_pool.flush();
+	}
+
+	/**
+	 * Removes everything, the same way as reset, and then gives every filled cell
+	 * of the GameEngine's board a square of its piece's color, and draws the
+	 * falling piece and its ghost, unless the game is over. All of the squares
+	 * are taken from the pool and go into the pane in one batch.
+	 */
+	@Override
+	public void redraw(GameEngine engine) {
+		this.clear();
+		Board board = engine.getBoard();
+		PieceType[] types = PieceType.values();
+		for (int row = board.getTopRow(); row < Constants.ENDING_ROW; row++) {
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
+				int code = board.getCell(row, col);
+				if (code != 0) {
+					TetrisSquare square = _pool.acquire(Piece.getColor(types[code - 1]));
+					square.getTetrisSquare().setX(col * Constants.SQUARE_SIZE);
+					square.getTetrisSquare().setY(row * Constants.SQUARE_SIZE);
+					_board[row][col] = square;
+				}
+			}
+		}
+		if (engine.isGameOver()) {
+			_pool.flush();
+		} else {
+			this.pieceSpawned(engine);
+		}
+	}
+
+	/**
+	 * This private helper method gives every square on the board, and those of
+	 * the falling piece, back to the pool, and hides the ghost. The pool is not
+	 * flushed.
+	 */
+	private void clear() {
+		for (int row = Constants.BOARD_LOW_CUTOFF; row < Constants.ENDING_ROW; row++) {
+			for (int col = Constants.BOARD_LOW_CUTOFF; col < Constants.ENDING_COL; col++) {
+				if (_board[row][col] != null) {
+					_pool.release(_board[row][col]);
+					_board[row][col] = null;
+				}
+			}
+		}
+		if (_isFalling) {
+			for (int i = 0; i < Constants.NUM_SQUARES; i++) {
+				_pool.release(_piece.getPieceArray()[i]);
+			}
+			_isFalling = false;
+		}
+		this.hideGhost();
+	}
+
+}
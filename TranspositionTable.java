@@ -0,0 +1,190 @@
+package Tetris;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a fixed-size table of the results of a computer player's
+ * search, looked up by a 64 bit hash of the board and the pieces still to be
+ * placed on it (see Zobrist). Each entry holds the best score found, the
+ * rotation state and column of the placement that scored it, how many pieces
+ * the search looked at, and the number of the search that stored it. That
+ * all fits in one long, so an entry is two longs: the data, and the key
+ * exclusive-ored with the data.
+ *
+ * Any number of threads can look up and store entries at once without any
+ * locking. Two threads storing into the same slot at once, or a thread
+ * reading a slot while another writes it, can leave a key and data from
+ * different entries side by side, but then the key no longer matches when it
+ * is exclusive-ored with the data, so the slot just reads as a miss. Nothing
+ * is ever allocated after the table is made.
+ *
+ * The table is split into buckets of BUCKET_SIZE slots, and a key can only be
+ * stored in its own bucket. A new entry goes into a slot holding the same key
+ * or an empty slot if there is one, and otherwise the EvictionPolicy decides
+ * which entry it replaces. Lookups, hits, stores and evictions are counted
+ * in the Metrics registry, adding up over every table.
+ */
+public class TranspositionTable {
+	private static final int BUCKET_SIZE = 4;
+	private static final LongAdder PROBES = Metrics.counter("bot.table.probes");
+	private static final LongAdder HITS = Metrics.counter("bot.table.hits");
+	private static final LongAdder STORES = Metrics.counter("bot.table.stores");
+	private static final LongAdder EVICTIONS = Metrics.counter("bot.table.evictions");
+
+	private long[] _checks;
+	private long[] _data;
+	private int _mask;
+	private EvictionPolicy _policy;
+	private volatile int _generation;
+
+	/**
+	 * Constructor for the TranspositionTable. Takes in the number of entries,
+	 * which is rounded up to a power of 2 and to at least one bucket, and the
+	 * policy that chooses which entry to replace when a bucket is full.
+	 */
+	public TranspositionTable(int size, EvictionPolicy policy) {
+		int numSlots = Math.max(Integer.highestOneBit(Math.max(size - 1, 1)) << 1, BUCKET_SIZE);
+		_checks = new long[numSlots];
+		_data = new long[numSlots];
+		_mask = (numSlots - 1) & ~(BUCKET_SIZE - 1);
+		_policy = policy;
+		_generation = 0;
+	}
+
+	/**
+	 * Looks up the given key, and returns the data of its entry, or 0 if there
+	 * isn't one. The parts of the data can be read with getScore, getRotation,
+	 * getCol and getDepth.
+	 */
+	public long probe(long key) {
+		PROBES.increment();
+		int start = (int) key & _mask;
+		for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+			long data = _data[slot];
+			if (data != 0 && (_checks[slot] ^ data) == key) {
+				HITS.increment();
+				return data;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores a result under the given key: the best score, the rotation state and
+	 * column of the placement that scored it, and how many pieces were looked at
+	 * to find it, which must be at least 1.
+	 */
+	public void store(long key, float score, int rotation, int col, int depth) {
+		long data = (Float.floatToRawIntBits(score) & 0xffffffffL) | ((long) (col & 0xffff) << 32)
+				| ((long) (rotation & 0xf) << 48) | ((long) (depth & 0xf) << 52)
+				| ((long) (_generation & 0xff) << 56);
+		int start = (int) key & _mask;
+		int victim = start;
+		if (_policy == EvictionPolicy.ALWAYS_REPLACE) {
+			victim = start + (int) (key >>> 62); // The top bits of the key pick the slot.
+		}
+		boolean isEvicting = true;
+		for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+			long old = _data[slot];
+			if (old == 0 || (_checks[slot] ^ old) == key) {
+				victim = slot;
+				isEvicting = false;
+				break;
+			}
+			if (_policy != EvictionPolicy.ALWAYS_REPLACE && this.isWorthLess(old, _data[victim])) {
+				victim = slot;
+			}
+		}
+		STORES.increment();
+		if (isEvicting) {
+			EVICTIONS.increment();
+		}
+		_data[victim] = data;
+		_checks[victim] = key ^ data;
+	}
+
+	/**
+	 * This private helper method returns whether the first of two stored entries
+	 * is a better one to replace than the second, according to the policy.
+	 */
+	private boolean isWorthLess(long data, long other) {
+		if (_policy == EvictionPolicy.SHALLOWEST && TranspositionTable.getDepth(data) != TranspositionTable
+				.getDepth(other)) {
+			return TranspositionTable.getDepth(data) < TranspositionTable.getDepth(other);
+		}
+		return this.getAge(data) > this.getAge(other);
+	}
+
+	/**
+	 * This private helper method returns how many searches ago an entry was
+	 * stored, up to 255.
+	 */
+	private int getAge(long data) {
+		return (_generation - (int) (data >>> 56)) & 0xff;
+	}
+
+	/**
+	 * Starts a new search, so that entries stored from now on count as newer than
+	 * the ones before. This is called once for each move a computer player
+	 * makes. If more than one thread calls it at once, a count can be lost, which
+	 * only makes some entries look a little younger than they are.
+	 */
+	public void nextGeneration() {
+		_generation = _generation + 1;
+	}
+
+	/**
+	 * Empties the table.
+	 */
+	public void clear() {
+		Arrays.fill(_data, 0);
+		Arrays.fill(_checks, 0);
+	}
+
+	/**
+	 * Returns the number of entries the table can hold.
+	 */
+	public int getSize() {
+		return _data.length;
+	}
+
+	/**
+	 * Returns the score in an entry's data.
+	 */
+	public static float getScore(long data) {
+		return Float.intBitsToFloat((int) data);
+	}
+
+	/**
+	 * Returns the column in an entry's data.
+	 */
+	public static int getCol(long data) {
+		return (int) (data >>> 32) & 0xffff;
+	}
+
+	/**
+	 * Returns the rotation state in an entry's data.
+	 */
+	public static int getRotation(long data) {
+		return (int) (data >>> 48) & 0xf;
+	}
+
+	/**
+	 * Returns how many pieces were looked at to find the result in an entry's
+	 * data.
+	 */
+	public static int getDepth(long data) {
+		return (int) (data >>> 52) & 0xf;
+	}
+
+	/**
+	 * Returns the share of lookups in every table so far that found an entry, or
+	 * 0 if there have been none.
+	 */
+	public static double getHitRate() {
+		long probes = PROBES.sum();
+		return probes == 0 ? 0 : (double) HITS.sum() / probes;
+	}
+
+}
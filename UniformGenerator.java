@@ -0,0 +1,53 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class generates pieces the way the original game did: each of the 7
+ * piece types is equally likely every time, no matter what came before.
+ */
+public class UniformGenerator implements PieceGenerator {
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private SplitMix64 _random;
+
+	/**
+	 * Constructor for the UniformGenerator. The sequence starts from a seed of 0
+	 * until it is reset.
+	 */
+	public UniformGenerator() {
+		_random = new SplitMix64(0);
+	}
+
+	@Override
+	public void reset(long seed) {
+		_random.setState(seed);
+	}
+
+	@Override
+	public PieceType next() {
+		return TYPES[_random.nextInt(TYPES.length)];
+	}
+
+	/**
+	 * The state is just the state of the random number generator.
+	 */
+	@Override
+	public void save(ByteBuffer buffer) {
+		buffer.putLong(_random.getState());
+	}
+
+	@Override
+	public void load(ByteBuffer buffer) {
+		_random.setState(buffer.getLong());
+	}
+
+	/**
+	 * Every state of the random number generator is a valid one.
+	 */
+	@Override
+	public boolean isValid(ByteBuffer buffer, int start) {
+		return true;
+	}
+
+}
@@ -0,0 +1,65 @@
+package Tetris;
+
+/**
+ * This class makes the random keys that the hashes of boards and pieces are
+ * built from. A Board's hash is the exclusive or of one hashed value for each
+ * word of its row bitmasks, where each word's value is its bits mixed with a
+ * key of its own, so changing a word only means taking its old value out and
+ * putting its new one in. This is Zobrist hashing, with each word of a row
+ * standing in for a square on a chess board. A piece has a key for each place
+ * in a list of pieces still to be placed, so the pieces a computer player is
+ * looking ahead at can be added to a board's hash the same way.
+ *
+ * The keys come from seeded SplitMix64s, so every board and every run gets the
+ * same ones. Only boards of the same size can be compared by their hashes.
+ */
+public class Zobrist {
+	private static final long WORD_SEED = 0x5a0b215717e4d3c1L;
+	private static final long PIECE_SEED = 0x2f6c1e93a8d47b05L;
+	private static final int NUM_TYPES = PieceType.values().length;
+	private static final long[] PIECE_KEYS = Zobrist.makeKeys(PIECE_SEED, NUM_TYPES * Zobrist.getMaxPieces());
+
+	/**
+	 * Returns the keys for the first given number of words of a board.
+	 */
+	public static long[] makeWordKeys(int numWords) {
+		return Zobrist.makeKeys(WORD_SEED, numWords);
+	}
+
+	/**
+	 * This private helper method returns the given number of keys from a
+	 * SplitMix64 with the given seed.
+	 */
+	private static long[] makeKeys(long seed, int numKeys) {
+		SplitMix64 random = new SplitMix64(seed);
+		long[] keys = new long[numKeys];
+		for (int i = 0; i < numKeys; i++) {
+			keys[i] = random.nextLong();
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the hashed value of a word of a board with the given key.
+	 */
+	public static long hashWord(long key, long word) {
+		return SplitMix64.mix64(word ^ key);
+	}
+
+	/**
+	 * Returns the key of a piece of the given type at the given place in a list of
+	 * pieces, where 0 is the piece that is falling and 1 is the next one.
+	 */
+	public static long getPieceKey(PieceType type, int index) {
+		return PIECE_KEYS[index * NUM_TYPES + type.ordinal()];
+	}
+
+	/**
+	 * Returns how long a list of pieces can be: the falling piece and every piece
+	 * in the preview.
+	 */
+	public static int getMaxPieces() {
+		return Constants.PREVIEW_SIZE + 1;
+	}
+
+}